@@ -0,0 +1,25 @@
+#!/bin/bash
+
+# Compiles and runs the JMH benchmarks in src-bench.
+# JMH_LIB must point to a folder holding jmh-core, jmh-generator-annprocess and their
+# dependencies (jopt-simple, commons-math3). Further arguments are passed to JMH, e.g.:
+#   ./scripts/runBenchmarks.sh -p algorithm=prim -p topology=fattree:16
+# Results are saved in bench-results/<commit>.json, to be compared across commits.
+
+cd "$(dirname "$0")/.."
+
+if [ "$JMH_LIB" == "" ] || [ ! -d "$JMH_LIB" ]; then
+  echo "Please set JMH_LIB to the folder containing the JMH jars."
+  exit 1
+fi
+
+FLOODLIGHT_JAR="${FLOODLIGHT_JAR:-floodlight.jar}"
+CLASSPATH="$FLOODLIGHT_JAR:$JMH_LIB/*"
+BUILD="build/bench"
+COMMIT=$(git rev-parse --short HEAD 2>/dev/null || echo "unknown")
+
+rm -rf "$BUILD" && mkdir -p "$BUILD" bench-results
+javac -cp "$CLASSPATH" -d "$BUILD" $(find src src-bench -name "*.java") || exit 1
+cp src/nodecosts.properties "$BUILD"
+
+java -cp "$BUILD:$CLASSPATH" org.openjdk.jmh.Main -prof gc -rf json -rff "bench-results/$COMMIT.json" "$@"
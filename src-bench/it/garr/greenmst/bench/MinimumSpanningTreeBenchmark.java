@@ -0,0 +1,87 @@
+package it.garr.greenmst.bench;
+
+import it.garr.greenmst.algorithms.IMinimumSpanningTreeAlgorithm;
+import it.garr.greenmst.algorithms.KruskalAlgorithm;
+import it.garr.greenmst.algorithms.ParallelBoruvkaAlgorithm;
+import it.garr.greenmst.algorithms.PrimAlgorithm;
+import it.garr.greenmst.types.Edge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of {@link IMinimumSpanningTreeAlgorithm#perform(List)} for every algorithm
+ * on synthetic topologies.
+ *
+ * Throughput and sampled latency (with percentiles) are measured together; allocation rate
+ * is reported when running with the gc profiler (-prof gc), as scripts/runBenchmarks.sh does.
+ * Topologies and costs are seeded and the edge order is shuffled with a fixed seed, so
+ * results of different commits are comparable.
+ *
+ * @see it.garr.greenmst.bench.SyntheticTopology
+ *
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms2g", "-Xmx2g" })
+public class MinimumSpanningTreeBenchmark {
+
+	@Param({ "kruskal", "prim", "boruvka" })
+	public String algorithm;
+
+	@Param({ "fattree:4", "fattree:16", "fattree:48", "er:2000:8", "er:2000:64", "grid:100", "torus:100", "mesh:200" })
+	public String topology;
+
+	@Param({ "UNIFORM", "CONSTANT", "BIMODAL" })
+	public SyntheticTopology.Costs costs;
+
+	private IMinimumSpanningTreeAlgorithm engine;
+	private ForkJoinPool pool;
+	private List<Edge> edges;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if (algorithm.equals("kruskal")) engine = new KruskalAlgorithm();
+		else if (algorithm.equals("prim")) engine = new PrimAlgorithm();
+		else if (algorithm.equals("boruvka")) engine = new ParallelBoruvkaAlgorithm(pool = new ForkJoinPool());
+		else throw new IllegalArgumentException("Unknown algorithm " + algorithm + ".");
+
+		// Links are not reported in any particular order by the topology service
+		edges = new ArrayList<Edge>(SyntheticTopology.build(topology, costs));
+		Collections.shuffle(edges, new Random(SyntheticTopology.SEED));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (pool != null) pool.shutdown();
+	}
+
+	@Benchmark
+	public Vector<Edge> perform() throws Exception {
+		return engine.perform(edges);
+	}
+
+}
@@ -0,0 +1,125 @@
+package it.garr.greenmst.bench;
+
+import it.garr.greenmst.TopologyCostsLoader;
+import it.garr.greenmst.types.Edge;
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator of synthetic topologies for the benchmarks.
+ *
+ * A topology is described by a specification string: "fattree:k" (k-ary fat-tree, k even),
+ * "er:n:d" (Erdos-Renyi random graph with n switches and average degree d), "grid:s" and
+ * "torus:s" (s x s switches) and "mesh:n" (n fully meshed switches). Switches are numbered
+ * from 1 and ports are assigned in order on each switch. Link costs are drawn from the cost
+ * distribution and stored in the topology costs; everything is seeded, so the same
+ * specification always produces the same topology.
+ *
+ * @see it.garr.greenmst.bench.MinimumSpanningTreeBenchmark
+ *
+ */
+
+public class SyntheticTopology {
+
+	public static final long SEED = 0x6A5D39EAE116586DL;
+
+	/**
+	 * Cost distributions: uniform in [1, 1000], constant (every link ties), or bimodal
+	 * (mostly cheap links with 10% expensive ones, like a fabric with a few slow uplinks).
+	 */
+	public enum Costs { UNIFORM, CONSTANT, BIMODAL }
+
+	private final List<Edge> edges = new ArrayList<Edge>();
+	private final LinkCostMap costMap = new LinkCostMap();
+	private final Random random;
+	private final Costs costs;
+	private short[] nextPort;
+
+	private SyntheticTopology(Costs costs, long seed) {
+		this.costs = costs;
+		this.random = new Random(seed);
+	}
+
+	public static List<Edge> build(String specification, Costs costs) {
+		String[] parts = specification.split(":");
+		SyntheticTopology topology = new SyntheticTopology(costs, SEED ^ specification.hashCode());
+		String kind = parts[0];
+
+		if (kind.equals("fattree")) topology.fatTree(Integer.parseInt(parts[1]));
+		else if (kind.equals("er")) topology.erdosRenyi(Integer.parseInt(parts[1]), Double.parseDouble(parts[2]));
+		else if (kind.equals("grid")) topology.grid(Integer.parseInt(parts[1]), false);
+		else if (kind.equals("torus")) topology.grid(Integer.parseInt(parts[1]), true);
+		else if (kind.equals("mesh")) topology.mesh(Integer.parseInt(parts[1]));
+		else throw new IllegalArgumentException("Unknown topology " + specification + ".");
+		TopologyCostsLoader.getTopologyCosts().putAll(new TopologyCosts(topology.costMap));
+
+		return topology.edges;
+	}
+
+	private void fatTree(int k) {
+		if (k < 2 || k % 2 != 0) throw new IllegalArgumentException("Fat-tree arity must be even.");
+
+		int half = k / 2, cores = half * half;
+		// Cores first, then for each pod its aggregation and its edge switches
+		switches(cores + k * k);
+		for (int pod = 0; pod < k; ++pod) {
+			int aggregation = cores + pod * k + 1, edge = aggregation + half;
+			for (int a = 0; a < half; ++a) {
+				for (int e = 0; e < half; ++e) link(aggregation + a, edge + e);
+				for (int c = 0; c < half; ++c) link(aggregation + a, a * half + c + 1);
+			}
+		}
+	}
+
+	private void erdosRenyi(int n, double degree) {
+		switches(n);
+		double p = Math.min(1.0, degree / (n - 1));
+		for (int i = 1; i <= n; ++i) {
+			for (int j = i + 1; j <= n; ++j) {
+				if (random.nextDouble() < p) link(i, j);
+			}
+		}
+	}
+
+	private void grid(int side, boolean wrap) {
+		switches(side * side);
+		for (int row = 0; row < side; ++row) {
+			for (int col = 0; col < side; ++col) {
+				int id = row * side + col + 1;
+				if (col + 1 < side) link(id, id + 1);
+				else if (wrap && side > 2) link(id, row * side + 1);
+				if (row + 1 < side) link(id, id + side);
+				else if (wrap && side > 2) link(id, col + 1);
+			}
+		}
+	}
+
+	private void mesh(int n) {
+		switches(n);
+		for (int i = 1; i <= n; ++i) {
+			for (int j = i + 1; j <= n; ++j) link(i, j);
+		}
+	}
+
+	private void switches(int count) {
+		nextPort = new short[count + 1];
+	}
+
+	private void link(int src, int dst) {
+		edges.add(Edge.valueOf(src, ++nextPort[src], dst, ++nextPort[dst]));
+		costMap.put(src, dst, cost(), 1);
+	}
+
+	private int cost() {
+		switch (costs) {
+			case CONSTANT: return 1;
+			case BIMODAL: return (random.nextInt(10) == 0) ? 100 + random.nextInt(900) : 1 + random.nextInt(10);
+			default: return 1 + random.nextInt(1000);
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LDUpdate;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.UpdateOperation;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ChurnDampingTest extends GenericNetworkTest {
+
+	protected static Logger logger = LoggerFactory.getLogger(ChurnDampingTest.class);
+
+	@Test
+	public void testSmallImprovementIsNotDeployed() throws Exception {
+		greenMST.minImprovement = 2;
+
+		// 1-2 and 1-3 would cost 5 against 6
+		setCost(2L, 3L, 5);
+		assertEquals("No port mod has been sent.", 0, network.getPortModCount());
+		assertFalse("The link 1-3 is still closed.", network.isPortOpen(1L, (short) 2));
+		assertEquals("The new tree has been damped.", 1, greenMST.stats.getTreesDamped());
+
+		// 5 against 8
+		setCost(2L, 3L, 7);
+		assertEquals("Both links have been toggled.", 4, network.getPortModCount());
+		assertTrue("The link 1-3 has been opened.", network.isPortOpen(1L, (short) 2));
+		assertFalse("The link 2-3 has been closed.", network.isPortOpen(2L, (short) 2));
+		assertEquals("No other tree has been damped.", 1, greenMST.stats.getTreesDamped());
+
+		// Topology changes are never damped
+		greenMST.minImprovement = 100;
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 1L, 1, 2L, 1, UpdateOperation.LINK_REMOVED);
+		network.deliver(updates);
+		assertTrue("The link 2-3 has been opened to reach switch 2.", network.isPortOpen(2L, (short) 2));
+
+		logger.info("Ended testSmallImprovementIsNotDeployed.");
+	}
+
+	@Test
+	public void testRelativeImprovement() throws Exception {
+		greenMST.minImprovementPercent = 50;
+
+		// 5 against 9 is less than half cheaper
+		setCost(2L, 3L, 8);
+		assertFalse("The link 1-3 is still closed.", network.isPortOpen(1L, (short) 2));
+		assertEquals("The new tree has been damped.", 1, greenMST.stats.getTreesDamped());
+
+		// 5 against 11
+		setCost(2L, 3L, 10);
+		assertTrue("The link 1-3 has been opened.", network.isPortOpen(1L, (short) 2));
+		assertFalse("The link 2-3 has been closed.", network.isPortOpen(2L, (short) 2));
+
+		logger.info("Ended testRelativeImprovement.");
+	}
+
+	@Test
+	public void testToggledLinksAreHeldDown() throws Exception {
+		greenMST.holdDown = 300;
+
+		long start = System.currentTimeMillis();
+		setCost(2L, 3L, 10);
+		assertTrue("The link 1-3 has been opened.", network.isPortOpen(1L, (short) 2));
+
+		// Going back right away would toggle the same links
+		setCost(2L, 3L, 3);
+		assertTrue("The link 1-3 is still open.", network.isPortOpen(1L, (short) 2));
+		assertFalse("The link 2-3 is still closed.", network.isPortOpen(2L, (short) 2));
+		assertEquals("The new tree has been held down.", 1, greenMST.stats.getTreesHeldDown());
+		assertFalse("Without a scheduler no full computation is left pending.", greenMST.fullRecomputePending);
+
+		while (System.currentTimeMillis() - start <= greenMST.holdDown) Thread.sleep(20);
+		greenMST.updateLinks();
+		assertFalse("The link 1-3 has been closed again.", network.isPortOpen(1L, (short) 2));
+		assertTrue("The link 2-3 has been opened again.", network.isPortOpen(2L, (short) 2));
+		assertEquals("Each link has been toggled twice.", 8, network.getPortModCount());
+
+		logger.info("Ended testToggledLinksAreHeldDown.");
+	}
+
+	@Test
+	public void testHeldDownTreeIsDeployedOnExpiry() throws Exception {
+		greenMST.holdDown = 300;
+		greenMST.recomputeDelay = 10;
+		// Shut down with the module by tearDown
+		greenMST.recomputeExecutor = Executors.newSingleThreadScheduledExecutor();
+
+		long start = System.currentTimeMillis();
+		setCost(2L, 3L, 10);
+		long deadline = start + 5000;
+		while (!network.isPortOpen(1L, (short) 2) && System.currentTimeMillis() < deadline) Thread.sleep(10);
+		assertTrue("The link 1-3 has been opened.", network.isPortOpen(1L, (short) 2));
+
+		setCost(2L, 3L, 3);
+		while (network.isPortOpen(1L, (short) 2) && System.currentTimeMillis() < deadline) Thread.sleep(10);
+		assertFalse("The link 1-3 has been closed again.", network.isPortOpen(1L, (short) 2));
+		assertTrue("The tree has been deployed once the hold-down expired.", System.currentTimeMillis() - start >= greenMST.holdDown);
+		assertEquals("The new tree has been held down.", 1, greenMST.stats.getTreesHeldDown());
+
+		logger.info("Ended testHeldDownTreeIsDeployedOnExpiry.");
+	}
+
+	private void setCost(long source, long destination, int cost) {
+		LinkCostMap costs = new LinkCostMap();
+		costs.put(source, destination, cost, TopologyCosts.DEFAULT_COST);
+		greenMST.setCosts(new TopologyCosts(costs));
+	}
+
+}
@@ -0,0 +1,123 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CostFileWatcherTest extends TestCase {
+
+	protected static Logger logger = LoggerFactory.getLogger(CostFileWatcherTest.class);
+	// Switches far from the ones of nodecosts.properties, so that other tests are not affected
+	protected static final long BASE = 30000;
+
+	protected final AtomicInteger updates = new AtomicInteger();
+	protected GreenMST greenMST = null;
+	protected Path directory = null, file = null;
+	protected CostFileWatcher watcher = null;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		greenMST = new GreenMST() {
+			@Override
+			public void setCosts(TopologyCosts newCosts) {
+				updates.incrementAndGet();
+				super.setCosts(newCosts);
+			}
+		};
+		directory = Files.createTempDirectory("greenmst");
+		file = directory.resolve("costs.properties");
+		watcher = new CostFileWatcher(file, greenMST);
+		logger.info("Ended startUp.");
+	}
+
+	private void cleanUp() throws Exception {
+		watcher.stop();
+		LinkCostMap defaults = new LinkCostMap();
+		for (long i = 0; i < 3; ++i) defaults.put(BASE + i, BASE + i + 1, TopologyCosts.DEFAULT_COST, TopologyCosts.DEFAULT_COST);
+		greenMST.getCosts().putAll(new TopologyCosts(defaults));
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(directory);
+	}
+
+	@Test
+	public void testReloadAppliesOnlyChanges() throws Exception {
+		try {
+			write("# Test costs", BASE + "," + (BASE + 1) + "=5", "", BASE + 1 + "," + (BASE + 2) + " = 6", BASE + 2 + "," + (BASE + 3) + "=7");
+			assertEquals("Every link cost is applied.", 3, watcher.reload());
+			assertEquals("A single update has been applied.", 1, updates.get());
+			assertEquals("The cost of the file is effective.", 6, greenMST.getCosts().getCost(BASE + 2, BASE + 1));
+
+			write(BASE + "," + (BASE + 1) + "=5", BASE + 1 + "," + (BASE + 2) + "=9", BASE + 2 + "," + (BASE + 3) + "=7");
+			assertEquals("Only the changed link cost is applied.", 1, watcher.reload());
+			assertEquals("The new cost is effective.", 9, greenMST.getCosts().getCost(BASE + 1, BASE + 2));
+
+			assertEquals("Reading the same file changes nothing.", 0, watcher.reload());
+			assertEquals("No update is applied when costs do not change.", 2, updates.get());
+
+			write(BASE + "," + (BASE + 1) + "=5", BASE + 1 + "," + (BASE + 2) + "=9");
+			assertEquals("The dropped link cost is applied.", 1, watcher.reload());
+			assertEquals("The dropped link goes back to the default cost.", TopologyCosts.DEFAULT_COST, greenMST.getCosts().getCost(BASE + 2, BASE + 3));
+		} finally {
+			cleanUp();
+		}
+		
+		logger.info("Ended testReloadAppliesOnlyChanges.");
+	}
+
+	@Test
+	public void testInvalidFileIsNotApplied() throws Exception {
+		try {
+			write(BASE + "," + (BASE + 1) + "=5", BASE + 1 + "," + (BASE + 2) + "=six");
+			assertEquals("The file is rejected.", -1, watcher.reload());
+			assertEquals("No update has been applied.", 0, updates.get());
+			assertEquals("Costs are not changed.", TopologyCosts.DEFAULT_COST, greenMST.getCosts().getCost(BASE, BASE + 1));
+		} finally {
+			cleanUp();
+		}
+		
+		logger.info("Ended testInvalidFileIsNotApplied.");
+	}
+
+	@Test
+	public void testChangedFileIsReloaded() throws Exception {
+		try {
+			write(BASE + "," + (BASE + 1) + "=5");
+			watcher.start();
+			assertEquals("The file is applied on start.", 5, greenMST.getCosts().getCost(BASE, BASE + 1));
+
+			// Replaced atomically, as a deployment tool would
+			Path temporaryFile = directory.resolve("costs.tmp");
+			Files.write(temporaryFile, (BASE + "," + (BASE + 1) + "=8\n").getBytes(StandardCharsets.ISO_8859_1));
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+			long deadline = System.currentTimeMillis() + 10000;
+			while (greenMST.getCosts().getCost(BASE, BASE + 1) != 8 && System.currentTimeMillis() < deadline) Thread.sleep(20);
+			assertEquals("The new cost has been applied.", 8, greenMST.getCosts().getCost(BASE, BASE + 1));
+			assertEquals("Each version of the file is applied once.", 2, updates.get());
+		} finally {
+			cleanUp();
+		}
+		
+		logger.info("Ended testChangedFileIsReloaded.");
+	}
+
+	private void write(String... lines) throws Exception {
+		StringBuilder content = new StringBuilder();
+		for (String line : lines) content.append(line).append('\n');
+		Files.write(file, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+}
@@ -0,0 +1,90 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.harness.SimulatedNetwork;
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LDUpdate;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LinkType;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.UpdateOperation;
+import net.floodlightcontroller.topology.ITopologyService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.openflow.protocol.OFType;
+
+/**
+ * Base of the tests running GreenMST on a simulated triangle of three switches.
+ *
+ * The module is initialized and its listeners are added as startUp does, but without a
+ * scheduler: every change is deployed right away, by the calling thread. Costs are shared
+ * by every module, the ones of the triangle are restored after each test.
+ *
+ * @see it.garr.greenmst.harness.SimulatedNetwork
+ *
+ */
+
+public abstract class GenericNetworkTest extends TestCase {
+
+	protected SimulatedNetwork network = null;
+	protected GreenMST greenMST = null;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		network = new SimulatedNetwork(Arrays.asList(1L, 2L, 3L), 2);
+		FloodlightModuleContext context = new FloodlightModuleContext();
+		context.addService(IFloodlightProviderService.class, network.getFloodlightProvider());
+		context.addService(ITopologyService.class, network.getTopologyService());
+
+		greenMST = createModule();
+		greenMST.init(context);
+		greenMST.floodlightProvider.addOFMessageListener(OFType.BARRIER_REPLY, greenMST.portModDispatcher);
+		greenMST.floodlightProvider.addOFSwitchListener(greenMST);
+		network.getTopologyService().addListener(greenMST);
+		for (long switchId = 1; switchId <= 3; ++switchId) network.connect(switchId);
+
+		// Costs come from nodecosts.properties: 1-2 costs 1, 2-3 costs 3 and 1-3 costs 4
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 1L, 1, 2L, 1, UpdateOperation.LINK_UPDATED);
+		addLinkUpdate(updates, 2L, 2, 3L, 1, UpdateOperation.LINK_UPDATED);
+		addLinkUpdate(updates, 1L, 2, 3L, 2, UpdateOperation.LINK_UPDATED);
+		network.deliver(updates);
+
+		assertEquals("Both ports of the redundant link have been closed.", 2, network.getPortModCount());
+		assertFalse("Port 2 of switch 1 is closed.", network.isPortOpen(1L, (short) 2));
+		assertFalse("Port 2 of switch 3 is closed.", network.isPortOpen(3L, (short) 2));
+		network.resetCounters();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		greenMST.shutDown();
+
+		LinkCostMap original = new LinkCostMap();
+		original.put(1L, 2L, 1, TopologyCosts.DEFAULT_COST);
+		original.put(2L, 3L, 3, TopologyCosts.DEFAULT_COST);
+		original.put(1L, 3L, 4, TopologyCosts.DEFAULT_COST);
+		greenMST.getCosts().putAll(new TopologyCosts(original));
+		greenMST.getCosts().setTrafficCosts(new LinkCostMap());
+	}
+
+	/**
+	 * Returns the module under test, subclasses override it to observe the module.
+	 */
+	protected GreenMST createModule() {
+		return new GreenMST();
+	}
+
+	protected void addLinkUpdate(List<LDUpdate> updates, long switchFrom, int portFrom, long switchTo, int portTo, UpdateOperation operation) {
+		updates.add(new LDUpdate(switchFrom, (short) portFrom, switchTo, (short) portTo, LinkType.DIRECT_LINK, operation));
+	}
+
+}
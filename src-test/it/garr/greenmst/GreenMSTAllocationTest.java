@@ -0,0 +1,74 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.harness.SimulatedNetwork;
+import it.garr.greenmst.harness.TopologyEventGenerator;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LDUpdate;
+import net.floodlightcontroller.routing.Link;
+import net.floodlightcontroller.topology.ITopologyService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class GreenMSTAllocationTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(GreenMSTAllocationTest.class);
+	
+	// Bytes a recomputation on an unchanged fat-tree (k = 8, 256 links) may allocate: the returned tree and a few iterators
+	protected static final long BUDGET = 2048;
+	protected static final int WARMUP = 5000;
+	protected static final int ITERATIONS = 200;
+	
+	protected GreenMST greenMST = null;
+	protected com.sun.management.ThreadMXBean threads = null;
+	
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+			threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			if (!threads.isThreadAllocatedMemorySupported()) threads = null;
+		}
+		
+		List<Link> links = TopologyEventGenerator.fatTree(8);
+		SimulatedNetwork network = new SimulatedNetwork(TopologyEventGenerator.switchesOf(links), 8);
+		FloodlightModuleContext context = new FloodlightModuleContext();
+		context.addService(IFloodlightProviderService.class, network.getFloodlightProvider());
+		context.addService(ITopologyService.class, network.getTopologyService());
+		
+		// Not started: changes are deployed synchronously, by the calling thread
+		greenMST = new GreenMST();
+		greenMST.init(context);
+		for (List<LDUpdate> batch : new TopologyEventGenerator(links, 1).bringUp(links.size())) greenMST.topologyChanged(batch);
+	}
+	
+	@Test
+	public void testRecomputationWithinBudget() throws Exception {
+		if (threads == null) {
+			logger.warn("Thread allocation counters are not supported by this JVM, skipping testRecomputationWithinBudget.");
+			return;
+		}
+		
+		for (int i = 0; i < WARMUP; ++i) greenMST.updateLinks();
+		
+		long threadId = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes(threadId);
+		for (int i = 0; i < ITERATIONS; ++i) greenMST.updateLinks();
+		long perRecomputation = (threads.getThreadAllocatedBytes(threadId) - before) / ITERATIONS;
+		
+		logger.info("A recomputation allocated {} bytes.", perRecomputation);
+		assertTrue("A recomputation allocated " + perRecomputation + " bytes, over the budget of " + BUDGET + ".", perRecomputation <= BUDGET);
+		assertEquals("The tree is unchanged.", 256 - 79, greenMST.getRedundantEdges().size());
+		
+		logger.info("Ended testRecomputationWithinBudget.");
+	}
+	
+}
@@ -5,14 +5,26 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
-import it.garr.greenmst.types.LinkWithCost;
+import it.garr.greenmst.algorithms.ParallelBoruvkaAlgorithm;
+import it.garr.greenmst.types.Edge;
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+import it.garr.greenmst.types.TopologyDelta;
+import it.garr.greenmst.types.TopologyDeltaHistory;
+import it.garr.greenmst.types.TopologySnapshot;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.floodlightcontroller.core.FloodlightContext;
 import net.floodlightcontroller.core.IFloodlightProviderService;
@@ -20,14 +32,19 @@ import net.floodlightcontroller.core.IOFSwitch;
 import net.floodlightcontroller.core.ImmutablePort;
 import net.floodlightcontroller.core.internal.OFSwitchImpl;
 import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LDUpdate;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LinkType;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.UpdateOperation;
 import net.floodlightcontroller.test.FloodlightTestCase;
 
 import org.easymock.Capture;
+import org.easymock.CaptureType;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
 import org.junit.Before;
 import org.junit.Test;
 import org.openflow.protocol.OFMatch;
+import org.openflow.protocol.OFMessage;
 import org.openflow.protocol.OFPhysicalPort.OFPortConfig;
 import org.openflow.protocol.OFPortMod;
 import org.openflow.util.HexString;
@@ -56,10 +73,10 @@ public class GreenMSTTest extends FloodlightTestCase {
 	public void testUpdateLinks() throws Exception {
 		Map<Long, IOFSwitch> switches = new HashMap<Long, IOFSwitch>();
 		Map<Long, Vector<byte[]>> hwAddrsSw = new HashMap<Long, Vector<byte[]>>();
-		Map<Long, Capture<OFPortMod>> msgCaptures = new HashMap<Long, Capture<OFPortMod>>();
+		Map<Long, Capture<List<OFMessage>>> msgCaptures = new HashMap<Long, Capture<List<OFMessage>>>();
 		
 		for (Long swId = 1L; swId <= 4L; ++swId) {
-			Capture<OFPortMod> msgCapture = new Capture<OFPortMod>();
+			Capture<List<OFMessage>> msgCapture = new Capture<List<OFMessage>>(CaptureType.ALL);
 			Vector<byte[]> hwAddrs = new Vector<byte[]>();
 			Vector<Short> portNums = new Vector<Short>();
 			
@@ -89,27 +106,21 @@ public class GreenMSTTest extends FloodlightTestCase {
 		greenMST.updateLinks();
 		for (Long swId = 1L; swId <= 4L; ++swId) verify(switches.get(swId));
 		
-		HashSet<LinkWithCost> expectedRedundantEdges = new HashSet<LinkWithCost>();
+		HashSet<Edge> expectedRedundantEdges = new HashSet<Edge>();
 		addLinkToCollection(expectedRedundantEdges, 1L, 2, 3L, 1, 4);
 		addLinkToCollection(expectedRedundantEdges, 2L, 3, 4L, 2, 4);
 		addLinkToCollection(expectedRedundantEdges, 2L, 2, 3L, 2, 3);
 			
 		assertEquals("Redundant edges computed are right in number.", expectedRedundantEdges.size(), greenMST.redundantEdges.size());
 		
-		for (LinkWithCost expectedLink : expectedRedundantEdges) {
+		for (Edge expectedLink : expectedRedundantEdges) {
 			assertTrue("Redundant edges computed contains the expected link " + expectedLink + ".", greenMST.redundantEdges.contains(expectedLink));
-			
-			for (LinkWithCost curLink : greenMST.redundantEdges) {
-				if (curLink.equals(expectedLink)) {
-					assertEquals("The cost for the rendundant edge link is correct.", expectedLink.getCost(), curLink.getCost());
-				}
-			}
 		}
 		
-		verifyPortMod(msgCaptures.get(1L).getValue(), hwAddrsSw.get(1L).get(1), (short) 2, 63);
-		verifyPortMod(msgCaptures.get(2L).getValue(), hwAddrsSw.get(2L).get(2), (short) 3, 63);
-		verifyPortMod(msgCaptures.get(3L).getValue(), hwAddrsSw.get(3L).get(0), (short) 1, 63);
-		verifyPortMod(msgCaptures.get(4L).getValue(), hwAddrsSw.get(4L).get(1), (short) 2, 63);
+		verifyPortMod(findPortMod(msgCaptures.get(1L), (short) 2), hwAddrsSw.get(1L).get(1), (short) 2, 63);
+		verifyPortMod(findPortMod(msgCaptures.get(2L), (short) 3), hwAddrsSw.get(2L).get(2), (short) 3, 63);
+		verifyPortMod(findPortMod(msgCaptures.get(3L), (short) 1), hwAddrsSw.get(3L).get(0), (short) 1, 63);
+		verifyPortMod(findPortMod(msgCaptures.get(4L), (short) 2), hwAddrsSw.get(4L).get(1), (short) 2, 63);
 		
 		logger.info("Ended testUpdateLinks.");
 	}
@@ -123,33 +134,494 @@ public class GreenMSTTest extends FloodlightTestCase {
 		addLinkToCollection(greenMST.topoEdges, 2L, 3, 4L, 2, 4);
 		addLinkToCollection(greenMST.topoEdges, 3L, 3, 4L, 3, 1);
 		
-		Vector<LinkWithCost> mstEdges = new Vector<LinkWithCost>();
+		Vector<Edge> mstEdges = new Vector<Edge>();
 		addLinkToCollection(mstEdges, 1L, 1, 2L, 1, 1);
 		addLinkToCollection(mstEdges, 1L, 3, 4L, 1, 2);
 		addLinkToCollection(mstEdges, 3L, 3, 4L, 3, 1);
 		
-		HashSet<LinkWithCost> redundantEdges = greenMST.findRedundantEdges(mstEdges);
+		HashSet<Edge> redundantEdges = greenMST.findRedundantEdges(mstEdges);
 		
-		HashSet<LinkWithCost> expectedRedundantEdges = new HashSet<LinkWithCost>();
+		HashSet<Edge> expectedRedundantEdges = new HashSet<Edge>();
 		addLinkToCollection(expectedRedundantEdges, 1L, 2, 3L, 1, 4);
 		addLinkToCollection(expectedRedundantEdges, 2L, 3, 4L, 2, 4);
 		addLinkToCollection(expectedRedundantEdges, 2L, 2, 3L, 2, 3);
 			
 		assertEquals("Redundant edges computed are right in number.", expectedRedundantEdges.size(), redundantEdges.size());
 		
-		for (LinkWithCost expectedLink : expectedRedundantEdges) {
+		for (Edge expectedLink : expectedRedundantEdges) {
 			assertTrue("Redundant edges computed contains the expected link " + expectedLink + ".", redundantEdges.contains(expectedLink));
+		}
+		
+		logger.info("Ended testFindRedundantEdges.");
+	}
+	
+	@Test
+	public void testTopologyChangedCoalescesBatch() throws Exception {
+		final AtomicInteger recomputations = new AtomicInteger(), portMods = new AtomicInteger();
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void recompute() {
+				recomputations.incrementAndGet();
+				super.recompute();
+			}
 			
-			for (LinkWithCost curLink : redundantEdges) {
-				if (curLink.equals(expectedLink)) {
-					assertEquals("The cost for the rendundant edge link is correct.", expectedLink.getCost(), curLink.getCost());
-				}
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
+				portMods.incrementAndGet();
+			}
+		};
+		module.recomputeDelay = 50;
+		module.recomputeExecutor = Executors.newSingleThreadScheduledExecutor();
+		
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 1L, 1, 2L, 1);
+		addLinkUpdate(updates, 1L, 2, 3L, 1);
+		addLinkUpdate(updates, 1L, 3, 4L, 1);
+		addLinkUpdate(updates, 2L, 2, 3L, 2);
+		addLinkUpdate(updates, 2L, 3, 4L, 2);
+		addLinkUpdate(updates, 3L, 3, 4L, 3);
+		
+		module.topologyChanged(updates.subList(0, 3));
+		module.topologyChanged(updates.subList(3, 6));
+		
+		// Delayed tasks still run after shutdown
+		module.recomputeExecutor.shutdown();
+		assertTrue("Recomputation completed.", module.recomputeExecutor.awaitTermination(5, TimeUnit.SECONDS));
+		
+		assertEquals("Both batches have been deployed at once.", 1, recomputations.get());
+		assertEquals("Redundant edges computed are right in number.", 3, module.redundantEdges.size());
+		assertEquals("Both ports of each redundant edge have been closed.", 6, portMods.get());
+		
+		logger.info("Ended testTopologyChangedCoalescesBatch.");
+	}
+	
+	@Test
+	public void testUpdateLinksOnlyModsChangedEdges() throws Exception {
+		final Vector<Short> portMods = new Vector<Short>();
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
+				portMods.add(portNum);
+			}
+		};
+		
+		module.topoEdges.add(Edge.valueOf(1L, 1, 2L, 1));
+		module.topoEdges.add(Edge.valueOf(1L, 2, 3L, 1));
+		module.topoEdges.add(Edge.valueOf(1L, 3, 4L, 1));
+		module.topoEdges.add(Edge.valueOf(2L, 2, 3L, 2));
+		module.topoEdges.add(Edge.valueOf(3L, 3, 4L, 3));
+		module.updateLinks();
+		assertEquals("Both ports of the redundant edges have been closed.", 4, portMods.size());
+		
+		portMods.clear();
+		module.updateLinks();
+		assertEquals("No port is touched when the tree does not change.", 0, portMods.size());
+		
+		module.topoEdges.add(Edge.valueOf(2L, 3, 4L, 2));
+		module.updateLinks();
+		assertEquals("Only the ports of the new redundant edge have been closed.", 2, portMods.size());
+		assertTrue("The new redundant edge is closed on both sides.", portMods.contains((short) 3) && portMods.contains((short) 2));
+		
+		logger.info("Ended testUpdateLinksOnlyModsChangedEdges.");
+	}
+	
+	@Test
+	public void testSnapshotPublishedAfterRecomputation() throws Exception {
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
 			}
+		};
+
+		TopologySnapshot empty = module.getSnapshot();
+		assertEquals("No edge is published before the first computation.", 0, empty.getTopoEdges().size());
+
+		addLinkToCollection(module.topoEdges, 1L, 1, 2L, 1, 1);
+		addLinkToCollection(module.topoEdges, 1L, 2, 3L, 1, 4);
+		addLinkToCollection(module.topoEdges, 1L, 3, 4L, 1, 2);
+		addLinkToCollection(module.topoEdges, 2L, 2, 3L, 2, 3);
+		module.updateLinks();
+
+		TopologySnapshot first = module.getSnapshot();
+		assertTrue("A new version has been published.", first.getVersion() > empty.getVersion());
+		assertEquals("Topology edges are published.", 4, first.getTopoEdges().size());
+		assertEquals("MST edges are published.", 3, first.getMSTEdges().size());
+		assertEquals("Redundant edges are published.", 1, first.getRedundantEdges().size());
+		assertSame("The service getters read the snapshot.", first.getMSTEdges(), module.getMSTEdges());
+
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 3L, 3, 4L, 3);
+		module.topologyChanged(updates);
+
+		TopologySnapshot second = module.getSnapshot();
+		assertTrue("Versions are increasing.", second.getVersion() > first.getVersion());
+		assertEquals("The previous snapshot is unchanged.", 4, first.getTopoEdges().size());
+		assertEquals("The new edge is published.", 5, second.getTopoEdges().size());
+
+		try {
+			second.getTopoEdges().clear();
+			fail("Snapshots cannot be modified.");
+		} catch (UnsupportedOperationException e) {
+			// Expected
 		}
+
+		logger.info("Ended testSnapshotPublishedAfterRecomputation.");
+	}
+	
+	@Test
+	public void testSetCostsSkipsInsensitiveChanges() throws Exception {
+		final AtomicInteger portMods = new AtomicInteger();
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
+				portMods.incrementAndGet();
+			}
+		};
 		
-		logger.info("Ended testFindRedundantEdges.");
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 1L, 1, 2L, 1);
+		addLinkUpdate(updates, 1L, 2, 3L, 1);
+		addLinkUpdate(updates, 1L, 3, 4L, 1);
+		addLinkUpdate(updates, 2L, 2, 3L, 2);
+		module.topologyChanged(updates);
+		assertEquals("Both ports of the redundant edge 1-3 have been closed.", 2, portMods.get());
+		
+		TopologyCosts costs = module.getCosts();
+		int previousCost = costs.getCost(1L, 3L);
+		try {
+			// 1-3 is redundant, a higher cost cannot bring it back into the tree
+			portMods.set(0);
+			costs.setCost(1L, 3L, previousCost + 5);
+			module.setCosts(costs);
+			
+			GreenMSTStats stats = module.getStats();
+			assertEquals("The change has been counted.", 1, stats.getCostChanges());
+			assertEquals("The change cannot alter the tree.", 0, stats.getSensitiveCostChanges());
+			assertEquals("No full computation has been run.", 0, stats.getRecomputations());
+			assertEquals("No port has been touched.", 0, portMods.get());
+			assertEquals("The new cost is published.", previousCost + 5, module.getRedundantEdges().iterator().next().getCost());
+			
+			// Posting the same costs again changes nothing
+			module.setCosts(costs);
+			assertEquals("Unchanged costs are not counted.", 1, stats.getCostChanges());
+		} finally {
+			costs.setCost(1L, 3L, previousCost);
+		}
+		
+		logger.info("Ended testSetCostsSkipsInsensitiveChanges.");
+	}
+	
+	@Test
+	public void testUpdateLinksRecomputesChangedIslands() throws Exception {
+		final Vector<Short> portMods = new Vector<Short>();
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
+				portMods.add(portNum);
+			}
+		};
+		
+		// Costs of the first island come from nodecosts.properties, the second one has default costs
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 1L, 1, 2L, 1);
+		addLinkUpdate(updates, 2L, 2, 3L, 1);
+		addLinkUpdate(updates, 1L, 2, 3L, 2);
+		addLinkUpdate(updates, 40001L, 1, 40002L, 1);
+		addLinkUpdate(updates, 40002L, 2, 40003L, 1);
+		addLinkUpdate(updates, 40001L, 2, 40003L, 2);
+		module.topologyChanged(updates);
+		assertEquals("One link of each island is redundant.", 2, module.getRedundantEdges().size());
+		
+		TopologyCosts costs = module.getCosts();
+		int previousCost = costs.getCost(1L, 2L);
+		try {
+			costs.setCost(1L, 2L, 10);
+			portMods.clear();
+			module.updateLinks();
+			
+			assertEquals("Only the island whose costs changed is recomputed.", 1, module.stats.getIslandsRecomputed());
+			assertEquals("The other island keeps its tree.", 1, module.stats.getIslandsKept());
+			assertTrue("The expensive link is closed.", module.redundantEdges.contains(Edge.valueOf(1L, 1, 2L, 1)));
+			assertFalse("The cheaper link is opened.", module.redundantEdges.contains(Edge.valueOf(1L, 2, 3L, 2)));
+			assertEquals("Only the ports of the swapped links are touched.", 4, portMods.size());
+		} finally {
+			costs.setCost(1L, 2L, previousCost);
+		}
+		
+		logger.info("Ended testUpdateLinksRecomputesChangedIslands.");
+	}
+	
+	@Test
+	public void testStaleTreeFallsBackToFullComputation() throws Exception {
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
+			}
+		};
+		
+		// Costs come from nodecosts.properties: the tree is made of 1-2, 3-4 and 1-4
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 1L, 1, 2L, 1);
+		addLinkUpdate(updates, 1L, 2, 3L, 1);
+		addLinkUpdate(updates, 1L, 3, 4L, 1);
+		addLinkUpdate(updates, 2L, 2, 3L, 2);
+		addLinkUpdate(updates, 2L, 3, 4L, 2);
+		addLinkUpdate(updates, 3L, 3, 4L, 3);
+		module.topologyChanged(updates);
+		assertEquals("Redundant edges computed are right in number.", 3, module.redundantEdges.size());
+		
+		// The incremental replacement search gives up at once
+		module.dynamicTree.setScanLimit(0);
+		updates.clear();
+		updates.add(new LDUpdate(1L, (short) 3, 4L, (short) 1, LinkType.DIRECT_LINK, UpdateOperation.LINK_REMOVED));
+		module.topologyChanged(updates);
+		
+		assertFalse("The full computation has run.", module.fullRecomputePending);
+		assertFalse("The tree is consistent again.", module.dynamicTree.isStale());
+		assertFalse("The replacement link has been opened.", module.redundantEdges.contains(Edge.valueOf(2L, 2, 3L, 2)));
+		assertEquals("Redundant edges computed are right in number.", 2, module.redundantEdges.size());
+		
+		logger.info("Ended testStaleTreeFallsBackToFullComputation.");
+	}
+	
+	@Test
+	public void testBoruvkaPoolFollowsModule() throws Exception {
+		GreenMST module = new GreenMST();
+		FloodlightModuleContext context = new FloodlightModuleContext();
+		context.addService(IFloodlightProviderService.class, mockFloodlightProvider);
+		context.addConfigParam(module, "algorithm", "boruvka");
+		context.addConfigParam(module, "parallelThreads", "2");
+		module.init(context);
+		try {
+			assertEquals("The pool is sized from the configuration.", 2, module.parallelPool.getParallelism());
+			assertSame("Island algorithms share the pool.", module.parallelPool, ((ParallelBoruvkaAlgorithm) module.newAlgorithm()).getPool());
+		} finally {
+			module.shutDown();
+		}
+		assertTrue("The pool is shut down with the module.", module.parallelPool.isShutdown());
+		
+		logger.info("Ended testBoruvkaPoolFollowsModule.");
+	}
+	
+	@Test
+	public void testUpdateLinksComputesIslandsInParallel() throws Exception {
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
+			}
+		};
+		module.islandExecutor = Executors.newFixedThreadPool(2);
+		try {
+			// Links unknown to the incremental tree, every island is computed
+			for (long island = 0; island < 4; ++island) {
+				long base = 41000 + 10 * island;
+				module.topoEdges.add(Edge.valueOf(base, 1, base + 1, 1));
+				module.topoEdges.add(Edge.valueOf(base + 1, 2, base + 2, 1));
+				module.topoEdges.add(Edge.valueOf(base, 2, base + 2, 2));
+			}
+			module.updateLinks();
+			
+			assertEquals("Every island has been computed.", 4, module.stats.getIslandsRecomputed());
+			assertEquals("The forest has a tree per island.", 8, module.getMSTEdges().size());
+			assertEquals("One link of each island is redundant.", 4, module.getRedundantEdges().size());
+		} finally {
+			module.islandExecutor.shutdownNow();
+		}
+		
+		logger.info("Ended testUpdateLinksComputesIslandsInParallel.");
+	}
+	
+	@Test
+	public void testSetCostsAppliesUpdateOnce() throws Exception {
+		final AtomicInteger recomputations = new AtomicInteger();
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
+			}
+			
+			@Override
+			protected void updateLinks() {
+				recomputations.incrementAndGet();
+				super.updateLinks();
+			}
+		};
+		
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 1L, 1, 2L, 1);
+		addLinkUpdate(updates, 1L, 2, 3L, 1);
+		addLinkUpdate(updates, 1L, 3, 4L, 1);
+		addLinkUpdate(updates, 2L, 2, 3L, 2);
+		module.topologyChanged(updates);
+		
+		TopologyCosts costs = module.getCosts();
+		HashMap<String, Integer> previousCosts = costs.getCosts();
+		try {
+			// A detached update leaves the module costs untouched until it is set
+			TopologyCosts update = new TopologyCosts(new LinkCostMap());
+			HashMap<String, Integer> values = new HashMap<String, Integer>();
+			values.put("1,2", 40);
+			values.put("1,3", 30);
+			values.put("1,4", 20);
+			values.put("2,3", 10);
+			update.setCostsValues(values);
+			assertEquals("The update is not applied yet.", previousCosts.get("1,2").intValue(), costs.getCost(1L, 2L));
+			
+			recomputations.set(0);
+			module.setCosts(update);
+			
+			assertEquals("The whole update is applied.", 40, costs.getCost(1L, 2L));
+			assertEquals("The whole update is applied.", 10, costs.getCost(2L, 3L));
+			assertEquals("The update is counted once.", 1, module.getStats().getCostUpdates());
+			assertEquals("A single computation has been run.", 1, recomputations.get());
+			assertEquals("The tree reflects the new costs.", 40, module.getRedundantEdges().iterator().next().getCost());
+		} finally {
+			TopologyCosts restore = new TopologyCosts(new LinkCostMap());
+			restore.setCostsValues(previousCosts);
+			costs.putAll(restore);
+		}
+		
+		logger.info("Ended testSetCostsAppliesUpdateOnce.");
 	}
 	
+	@Test
+	public void testDeltasFollowSnapshots() throws Exception {
+		GreenMST module = new GreenMST() {
+			@Override
+			protected void modPort(long switchId, short portNum, boolean open) {
+			}
+		};
+		
+		List<LDUpdate> updates = new ArrayList<LDUpdate>();
+		addLinkUpdate(updates, 1L, 1, 2L, 1);
+		addLinkUpdate(updates, 1L, 2, 3L, 1);
+		addLinkUpdate(updates, 1L, 3, 4L, 1);
+		addLinkUpdate(updates, 2L, 2, 3L, 2);
+		module.topologyChanged(updates);
+		
+		TopologyDeltaHistory history = module.getDeltaHistory();
+		long version = module.getSnapshot().getVersion();
+		assertEquals("A delta is recorded for each snapshot.", version, history.getLatestVersion());
+		
+		TopologyCosts costs = module.getCosts();
+		int previousCost = costs.getCost(1L, 3L);
+		try {
+			costs.setCost(1L, 3L, previousCost + 5);
+			module.setCosts(costs);
+			
+			List<TopologyDelta> deltas = history.since(version);
+			assertEquals("The cost change is a new delta.", 1, deltas.size());
+			TopologyDelta delta = deltas.get(0);
+			assertEquals("The delta has the version of the new snapshot.", module.getSnapshot().getVersion(), delta.getVersion());
+			assertTrue("No link is opened.", delta.getOpened().isEmpty());
+			assertTrue("No link is closed.", delta.getClosed().isEmpty());
+			assertEquals("The cost change is reported.", 1, delta.getCostChanges().size());
+			assertEquals("The new cost is reported.", previousCost + 5, delta.getCostChanges().get(0).getCost());
+		} finally {
+			costs.setCost(1L, 3L, previousCost);
+		}
+		
+		logger.info("Ended testDeltasFollowSnapshots.");
+	}
+	
+	@Test
+	public void testWarmStartRestoresState() throws Exception {
+		final AtomicInteger portMods = new AtomicInteger();
+		Path directory = Files.createTempDirectory("greenmst");
+		Path file = directory.resolve("snapshot.bin");
+		try {
+			GreenMST previous = new GreenMST() {
+				@Override
+				protected void modPort(long switchId, short portNum, boolean open) {
+				}
+			};
+			previous.snapshotStore = new SnapshotStore(file);
+			
+			List<LDUpdate> updates = new ArrayList<LDUpdate>();
+			addLinkUpdate(updates, 1L, 1, 2L, 1);
+			addLinkUpdate(updates, 1L, 2, 3L, 1);
+			addLinkUpdate(updates, 1L, 3, 4L, 1);
+			addLinkUpdate(updates, 2L, 2, 3L, 2);
+			previous.topologyChanged(updates);
+			assertTrue("The snapshot has been written.", Files.exists(file));
+			
+			GreenMST module = new GreenMST() {
+				@Override
+				protected void modPort(long switchId, short portNum, boolean open) {
+					portMods.incrementAndGet();
+				}
+			};
+			module.snapshotStore = new SnapshotStore(file);
+			assertTrue("The snapshot has been restored.", module.restoreSnapshot());
+			
+			assertEquals("Links are restored.", previous.getTopoEdges(), module.getTopoEdges());
+			assertEquals("Redundant links are restored.", previous.getRedundantEdges(), module.getRedundantEdges());
+			assertEquals("Tree and redundant links wait to be rediscovered.", 4, module.restoredEdges.size());
+			
+			// Rediscovering the links changes nothing, but 1-2 is never seen again
+			updates.remove(0);
+			module.topologyChanged(updates);
+			assertEquals("Rediscovered links touch no port.", 0, portMods.get());
+			assertEquals("Rediscovered links are confirmed.", 1, module.restoredEdges.size());
+			
+			module.expireRestoredEdges();
+			assertEquals("The missing link is removed.", 3, module.getTopoEdges().size());
+			assertTrue("The redundant link replaces it.", module.getRedundantEdges().isEmpty());
+			assertEquals("Both ports of the redundant link have been opened.", 2, portMods.get());
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(directory);
+		}
+		
+		logger.info("Ended testWarmStartRestoresState.");
+	}
+	
+	@Test
+	public void testWarmStartExpiresRedundantLinks() throws Exception {
+		final Vector<Short> openedPorts = new Vector<Short>();
+		Path directory = Files.createTempDirectory("greenmst");
+		Path file = directory.resolve("snapshot.bin");
+		try {
+			GreenMST previous = new GreenMST() {
+				@Override
+				protected void modPort(long switchId, short portNum, boolean open) {
+				}
+			};
+			previous.snapshotStore = new SnapshotStore(file);
+			
+			List<LDUpdate> updates = new ArrayList<LDUpdate>();
+			addLinkUpdate(updates, 1L, 1, 2L, 1);
+			addLinkUpdate(updates, 1L, 2, 3L, 1);
+			addLinkUpdate(updates, 1L, 3, 4L, 1);
+			addLinkUpdate(updates, 2L, 2, 3L, 2);
+			previous.topologyChanged(updates);
+			
+			GreenMST module = new GreenMST() {
+				@Override
+				protected void modPort(long switchId, short portNum, boolean open) {
+					if (open) openedPorts.add(portNum);
+				}
+			};
+			module.snapshotStore = new SnapshotStore(file);
+			assertTrue("The snapshot has been restored.", module.restoreSnapshot());
+			assertTrue("The link 1-3 is redundant.", module.redundantEdges.contains(Edge.valueOf(1L, 2, 3L, 1)));
+			
+			// The tree links are rediscovered, the redundant 1-3 is not
+			updates.remove(1);
+			module.topologyChanged(updates);
+			module.expireRestoredEdges();
+			
+			assertEquals("The missing redundant link is removed.", 3, module.getTopoEdges().size());
+			assertTrue("No link is redundant any more.", module.getRedundantEdges().isEmpty());
+			assertEquals("Both ports of the removed link have been opened.", 2, openedPorts.size());
+			assertTrue("The ports of 1-3 have been opened.", openedPorts.contains((short) 2) && openedPorts.contains((short) 1));
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(directory);
+		}
+		
+		logger.info("Ended testWarmStartExpiresRedundantLinks.");
+	}
+
 	@Test
 	public void testModPortOpen() throws Exception {
 		testModPort(true);
@@ -164,7 +636,7 @@ public class GreenMSTTest extends FloodlightTestCase {
 	
 	private void testModPort(boolean open) throws Exception {
 		Map<Long, IOFSwitch> switches = new HashMap<Long, IOFSwitch>();
-		Capture<OFPortMod> msgCapture = new Capture<OFPortMod>();
+		Capture<List<OFMessage>> msgCapture = new Capture<List<OFMessage>>(CaptureType.ALL);
 		
 		Vector<byte[]> hwAddrs = new Vector<byte[]>();
 		byte[] hwAddr = new byte[6];
@@ -180,8 +652,19 @@ public class GreenMSTTest extends FloodlightTestCase {
         
         replay(sw);
 		greenMST.modPort(1L, (short) 2, open);
+		greenMST.flushPortMods();
 		verify(sw);
-		verifyPortMod(msgCapture.getValue(), hwAddr, (short) 2, (open == true) ? 0 : 63);
+		verifyPortMod(findPortMod(msgCapture, (short) 2), hwAddr, (short) 2, (open == true) ? 0 : 63);
+	}
+	
+	private OFPortMod findPortMod(Capture<List<OFMessage>> msgCapture, short portNum) {
+		for (List<OFMessage> batch : msgCapture.getValues()) {
+			for (OFMessage msg : batch) {
+				if (msg instanceof OFPortMod && ((OFPortMod) msg).getPortNumber() == portNum) return (OFPortMod) msg;
+			}
+		}
+		fail("No port mod has been sent for port " + portNum + ".");
+		return null;
 	}
 	
 	private void verifyPortMod(OFPortMod msg, byte[] hwAddr, short portNum, int config) {
@@ -191,17 +674,20 @@ public class GreenMSTTest extends FloodlightTestCase {
         assertEquals("The message does not have the right config value.", config, msg.getConfig());
 	}
 	
-	private void addLinkToCollection(Collection<LinkWithCost> topoEdges, long switchFrom, int portFrom, long switchTo, int portTo, int cost) {
-		LinkWithCost link = new LinkWithCost(switchFrom, portFrom, switchTo, portTo, cost);
+	private void addLinkToCollection(Collection<Edge> topoEdges, long switchFrom, int portFrom, long switchTo, int portTo, int cost) {
+		Edge edge = Edge.valueOf(switchFrom, portFrom, switchTo, portTo);
 		
-		logger.debug("Link added: {}.", new Object[] { link });
-        topoEdges.add(link);
-        
-        logger.debug("Link added: {}.", new Object[] { link.getInverse() });
-        topoEdges.add(link.getInverse());
+		assertEquals("The cost of the edge is the configured one.", cost, edge.getCost());
+		
+		logger.debug("Edge added: {}.", new Object[] { edge });
+        topoEdges.add(edge);
+	}
+	
+	private void addLinkUpdate(List<LDUpdate> updates, long switchFrom, int portFrom, long switchTo, int portTo) {
+		updates.add(new LDUpdate(switchFrom, (short) portFrom, switchTo, (short) portTo, LinkType.DIRECT_LINK, UpdateOperation.LINK_UPDATED));
 	}
 	
-	private IOFSwitch createSwitch(long switchId, List<Short> portNums, List<byte[]> hwAddrs, Capture<OFPortMod> msgCapture) throws Exception {
+	private IOFSwitch createSwitch(long switchId, List<Short> portNums, List<byte[]> hwAddrs, Capture<List<OFMessage>> msgCapture) throws Exception {
         final List<ImmutablePort> ports = new Vector<ImmutablePort>();
         
         for (int i = 0; i < portNums.size(); ++i) {
@@ -232,6 +718,9 @@ public class GreenMSTTest extends FloodlightTestCase {
         Capture<FloodlightContext> context = new Capture<FloodlightContext>();
         sw.write(capture(msgCapture), capture(context));
         expectLastCall().anyTimes();
+        sw.flush();
+        expectLastCall().anyTimes();
+        expect(sw.getNextTransactionId()).andReturn(1).anyTimes();
         
         int fastWildcards = 
                 OFMatch.OFPFW_IN_PORT | 
@@ -0,0 +1,119 @@
+package it.garr.greenmst;
+
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.ImmutablePort;
+import net.floodlightcontroller.core.internal.OFSwitchImpl;
+import net.floodlightcontroller.test.FloodlightTestCase;
+
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.easymock.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+import org.openflow.protocol.OFBarrierRequest;
+import org.openflow.protocol.OFMessage;
+import org.openflow.protocol.OFPortMod;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PortModDispatcherTest extends FloodlightTestCase {
+
+	protected static Logger logger = LoggerFactory.getLogger(PortModDispatcherTest.class);
+	protected PortModDispatcher dispatcher = null;
+	protected Capture<List<OFMessage>> msgCapture = null;
+	protected IOFSwitch sw = null;
+
+	@Before
+    public void setUp() throws Exception {
+		super.setUp();
+		mockFloodlightProvider = getMockFloodlightProvider();
+		msgCapture = new Capture<List<OFMessage>>(CaptureType.ALL);
+		sw = createSwitch(1L, msgCapture);
+
+		Map<Long, IOFSwitch> switches = new HashMap<Long, IOFSwitch>();
+		switches.put(1L, sw);
+		mockFloodlightProvider.setSwitches(switches);
+
+		dispatcher = new PortModDispatcher(mockFloodlightProvider);
+	}
+
+	@Test
+	public void testFlushSendsOneBatch() throws Exception {
+		replay(sw);
+		dispatcher.queue(1L, (short) 1, false);
+		dispatcher.queue(1L, (short) 2, false);
+		dispatcher.queue(1L, (short) 1, true);
+		dispatcher.flush();
+		verify(sw);
+
+		assertEquals("A single write has been issued.", 1, msgCapture.getValues().size());
+		List<OFMessage> batch = msgCapture.getValue();
+		assertEquals("Each port is modified once, followed by a barrier.", 3, batch.size());
+		assertEquals("The last state queued for a port is sent.", 0, ((OFPortMod) batch.get(0)).getConfig());
+		assertEquals("Ports keep their queueing order.", (short) 2, ((OFPortMod) batch.get(1)).getPortNumber());
+		assertTrue("The batch is closed by a barrier.", batch.get(2) instanceof OFBarrierRequest);
+		assertEquals("The batch waits for its barrier reply.", 1, dispatcher.getUnconfirmedBatches(1L));
+
+		dispatcher.flush();
+		assertEquals("Nothing is sent when no mod is queued.", 1, msgCapture.getValues().size());
+
+		logger.info("Ended testFlushSendsOneBatch.");
+	}
+
+	@Test
+	public void testFlushIsPaced() throws Exception {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		dispatcher.setExecutor(executor);
+		dispatcher.setRate(100, 2);
+
+		replay(sw);
+		for (short port = 1; port <= 3; ++port) dispatcher.queue(1L, port, false);
+		dispatcher.flush();
+
+		assertEquals("The first batch is limited by the burst size.", 3, msgCapture.getValues().get(0).size());
+
+		// Delayed tasks still run after shutdown
+		executor.shutdown();
+		assertTrue("Deferred port mods have been sent.", executor.awaitTermination(5, TimeUnit.SECONDS));
+		verify(sw);
+
+		assertEquals("The remaining port mod is sent in a second batch.", 2, msgCapture.getValues().size());
+		assertEquals("The second batch holds the remaining port mod.", (short) 3, ((OFPortMod) msgCapture.getValues().get(1).get(0)).getPortNumber());
+
+		logger.info("Ended testFlushIsPaced.");
+	}
+
+	private IOFSwitch createSwitch(long switchId, Capture<List<OFMessage>> msgCapture) throws Exception {
+		ImmutablePort port = EasyMock.createMock(ImmutablePort.class);
+		expect(port.getHardwareAddress()).andReturn(new byte[6]).anyTimes();
+		replay(port);
+
+		IOFSwitch sw = EasyMock.createMock(OFSwitchImpl.class);
+		expect(sw.getId()).andReturn(switchId).anyTimes();
+		expect(sw.getStringId()).andReturn(Long.toString(switchId)).anyTimes();
+		expect(sw.getPort(EasyMock.anyShort())).andReturn(port).anyTimes();
+		expect(sw.getNextTransactionId()).andReturn(1).anyTimes();
+
+		sw.write(capture(msgCapture), EasyMock.<FloodlightContext>anyObject());
+		expectLastCall().anyTimes();
+		sw.flush();
+		expectLastCall().anyTimes();
+
+		return sw;
+	}
+
+}
@@ -0,0 +1,83 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.GreenMSTStats.SwitchStats;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PortReconciliationTest extends GenericNetworkTest {
+
+	protected static Logger logger = LoggerFactory.getLogger(PortReconciliationTest.class);
+
+	@Test
+	public void testReconnectSendsNoPortMods() throws Exception {
+		network.disconnect(3L);
+		network.connect(3L);
+
+		assertEquals("Ports already in the right state are not touched.", 0, network.getPortModCount());
+		assertFalse("The redundant port is still closed.", network.isPortOpen(3L, (short) 2));
+
+		logger.info("Ended testReconnectSendsNoPortMods.");
+	}
+
+	@Test
+	public void testStaleClosedPortIsReopened() throws Exception {
+		network.disconnect(2L);
+		// Closed while the switch was not connected, no port-status message is received
+		network.setPortOpen(2L, (short) 1, false);
+		network.connect(2L);
+
+		assertEquals("Only the stale port has been modified.", 1, network.getPortModCount());
+		assertTrue("The tree port has been opened again.", network.isPortOpen(2L, (short) 1));
+
+		logger.info("Ended testStaleClosedPortIsReopened.");
+	}
+
+	@Test
+	public void testPortStatusReclosesRedundantPort() throws Exception {
+		network.setPortOpen(1L, (short) 2, true);
+
+		assertEquals("A single port mod has been sent.", 1, network.getPortModCount());
+		assertFalse("The redundant port has been closed again.", network.isPortOpen(1L, (short) 2));
+
+		// Queueing the state the port already has sends nothing
+		greenMST.modPort(1L, (short) 2, false);
+		greenMST.flushPortMods();
+		assertEquals("No port mod has been sent.", 1, network.getPortModCount());
+		assertEquals("The port mod has been skipped.", 1, greenMST.stats.getSwitches().get(1L).getPortModsSkipped());
+
+		logger.info("Ended testPortStatusReclosesRedundantPort.");
+	}
+
+	@Test
+	public void testFailedWriteIsRetried() throws Exception {
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		greenMST.portModDispatcher.setExecutor(executor);
+		try {
+			network.failWrites(1L, 2);
+			long start = System.currentTimeMillis();
+			network.setPortOpen(1L, (short) 2, true);
+
+			long deadline = start + 5000;
+			while (network.isPortOpen(1L, (short) 2) && System.currentTimeMillis() < deadline) Thread.sleep(10);
+			long elapsed = System.currentTimeMillis() - start;
+
+			assertFalse("The redundant port has been closed again.", network.isPortOpen(1L, (short) 2));
+			assertTrue("Retries have been delayed with a growing backoff.", elapsed >= PortModDispatcher.INITIAL_RETRY_DELAY * 3);
+
+			SwitchStats stats = greenMST.stats.getSwitches().get(1L);
+			assertEquals("Both failed writes have been counted.", 2, stats.getPortModsFailed());
+			assertEquals("The port mod has been retried after each failure.", 2, stats.getPortModsRetried());
+			assertEquals("The port mod has been sent once.", 1, network.getPortModCount());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		logger.info("Ended testFailedWriteIsRetried.");
+	}
+
+}
@@ -0,0 +1,99 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.types.Edge;
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologySnapshot;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SnapshotStoreTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(SnapshotStoreTest.class);
+	
+	protected Path directory = null;
+	protected SnapshotStore store = null;
+	
+	@Before
+	public void setUp() throws Exception {
+		directory = Files.createTempDirectory("greenmst");
+		store = new SnapshotStore(directory.resolve("snapshot.bin"));
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(directory.resolve("snapshot.bin"));
+		Files.deleteIfExists(directory.resolve("snapshot.bin.tmp"));
+		Files.deleteIfExists(directory);
+	}
+	
+	@Test
+	public void testWriteAndRead() throws Exception {
+		assertNull("There is no snapshot before the first write.", store.read());
+		
+		HashSet<Edge> topoEdges = new HashSet<Edge>(), redundantEdges = new HashSet<Edge>();
+		topoEdges.add(Edge.valueOf(1L, 1, 2L, 1));
+		topoEdges.add(Edge.valueOf(1L, 2, 3L, 1));
+		topoEdges.add(Edge.valueOf(2L, 2, 3L, 2));
+		redundantEdges.add(Edge.valueOf(1L, 2, 3L, 1));
+		LinkCostMap costs = new LinkCostMap();
+		costs.put(1L, 2L, 5, 0);
+		costs.put(3L, 1L, 7, 0);
+		
+		TopologySnapshot snapshot = TopologySnapshot.build(TopologySnapshot.EMPTY, 0, topoEdges, redundantEdges);
+		store.write(snapshot, costs);
+		assertFalse("The temporary file has been moved.", Files.exists(directory.resolve("snapshot.bin.tmp")));
+		
+		SnapshotStore.Contents contents = store.read();
+		assertEquals("The version is restored.", snapshot.getVersion(), contents.getVersion());
+		assertEquals("Costs are restored.", 2, contents.getCosts().size());
+		assertEquals("Costs are restored.", 7, contents.getCosts().get(1L, 3L, -1));
+		assertEquals("Links are restored.", topoEdges, new HashSet<Edge>(contents.getTopoEdges()));
+		assertEquals("Redundant links are restored.", redundantEdges, new HashSet<Edge>(contents.getRedundantEdges()));
+		
+		// A new write replaces the previous snapshot
+		redundantEdges.clear();
+		store.write(TopologySnapshot.build(snapshot, 0, topoEdges, redundantEdges), new LinkCostMap());
+		contents = store.read();
+		assertEquals("The latest snapshot is read.", snapshot.getVersion() + 1, contents.getVersion());
+		assertEquals("The latest snapshot has no redundant link.", 0, contents.getRedundantEdges().size());
+		
+		logger.info("Ended testWriteAndRead.");
+	}
+	
+	@Test
+	public void testCorruptedSnapshot() throws Exception {
+		HashSet<Edge> topoEdges = new HashSet<Edge>();
+		topoEdges.add(Edge.valueOf(1L, 1, 2L, 1));
+		store.write(TopologySnapshot.build(TopologySnapshot.EMPTY, 0, topoEdges, new HashSet<Edge>()), new LinkCostMap());
+		
+		RandomAccessFile file = new RandomAccessFile(store.getFile().toFile(), "rw");
+		try {
+			file.seek(20);
+			file.write(file.read() ^ 0xFF);
+		} finally {
+			file.close();
+		}
+		
+		try {
+			store.read();
+			fail("A corrupted snapshot is not read.");
+		} catch (IOException e) {
+			// Expected
+		}
+		
+		logger.info("Ended testCorruptedSnapshot.");
+	}
+	
+}
@@ -0,0 +1,114 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TrafficCostProviderTest extends GenericNetworkTest {
+
+	protected static Logger logger = LoggerFactory.getLogger(TrafficCostProviderTest.class);
+	protected static final long SECOND = 1000000000L;
+
+	protected final AtomicInteger updates = new AtomicInteger();
+	protected TrafficCostProvider provider = null;
+
+	@Override
+	protected GreenMST createModule() {
+		return new GreenMST() {
+			@Override
+			public void setTrafficCosts(LinkCostMap trafficCosts) {
+				updates.incrementAndGet();
+				super.setTrafficCosts(trafficCosts);
+			}
+		};
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+
+		// 1 Gbit/s links, the moving average follows the last sample
+		provider = new TrafficCostProvider(greenMST.floodlightProvider, greenMST);
+		provider.setLinkCapacity(1000);
+		provider.setSmoothing(100, 5);
+		provider.setCostWeight(10);
+		logger.info("Ended startUp.");
+	}
+
+	@Test
+	public void testBusyLinkIsReplaced() throws Exception {
+		assertEquals("The first poll only reads the counters.", 0, provider.poll(0));
+
+		// 900 Mbit/s sent from switch 2 to switch 3 during one second
+		network.addTraffic(2L, (short) 2, 900000000L / 8);
+		assertEquals("The cost of the busy link has changed.", 1, provider.poll(SECOND));
+		assertEquals("The busy link costs its configured cost plus its load level.", 3 + 8, greenMST.getCosts().getEffectiveCost(2L, 3L));
+		assertEquals("The configured cost is not changed.", 3, greenMST.getCosts().getCost(2L, 3L));
+		assertEquals("The idle links keep their cost.", 4, greenMST.getCosts().getEffectiveCost(1L, 3L));
+
+		assertTrue("The link 1-3 has been opened.", network.isPortOpen(1L, (short) 2));
+		assertTrue("The link 1-3 has been opened.", network.isPortOpen(3L, (short) 2));
+		assertFalse("The busy link has been closed.", network.isPortOpen(2L, (short) 2));
+
+		// Once idle the link goes back to its base cost
+		assertEquals("The cost of the idle link has changed.", 1, provider.poll(2 * SECOND));
+		assertEquals("The idle link costs its configured cost again.", 3, greenMST.getCosts().getEffectiveCost(2L, 3L));
+		assertEquals("No traffic cost is left.", 0, greenMST.getCosts().getTrafficCostMap().size());
+		assertTrue("The link 2-3 has been opened again.", network.isPortOpen(2L, (short) 2));
+
+		logger.info("Ended testBusyLinkIsReplaced.");
+	}
+
+	@Test
+	public void testSmallChangesAreIgnored() throws Exception {
+		provider.poll(0);
+
+		// 16% moves the link to the first level
+		network.addTraffic(2L, (short) 2, 160000000L / 8);
+		assertEquals("The link has reached the first level.", 1, provider.poll(SECOND));
+		assertEquals("The cost of the first level is applied.", 4, greenMST.getCosts().getEffectiveCost(2L, 3L));
+		int applied = updates.get();
+
+		// 9% is within the hysteresis margin of the first level
+		network.addTraffic(2L, (short) 2, 90000000L / 8);
+		assertEquals("No cost has changed.", 0, provider.poll(2 * SECOND));
+		assertEquals("No update has been applied.", applied, updates.get());
+		assertEquals("The cost of the first level is kept.", 4, greenMST.getCosts().getEffectiveCost(2L, 3L));
+
+		// 4% is past the margin
+		network.addTraffic(2L, (short) 2, 40000000L / 8);
+		assertEquals("The link has left the first level.", 1, provider.poll(3 * SECOND));
+		assertEquals("The configured cost is applied again.", 3, greenMST.getCosts().getEffectiveCost(2L, 3L));
+
+		logger.info("Ended testSmallChangesAreIgnored.");
+	}
+
+	@Test
+	public void testConfiguredCostsAreNotChanged() throws Exception {
+		provider.poll(0);
+		network.addTraffic(2L, (short) 2, 300000000L / 8);
+		provider.poll(SECOND);
+		assertEquals("The load level is added to the configured cost.", 3 + 2, greenMST.getCosts().getEffectiveCost(2L, 3L));
+		assertEquals("The configured costs only hold the configured cost.", 3, greenMST.getCosts().getCostMap().get(2L, 3L, -1));
+
+		// Set by the operator while the link is busy
+		LinkCostMap manual = new LinkCostMap();
+		manual.put(2L, 3L, 6, TopologyCosts.DEFAULT_COST);
+		greenMST.setCosts(new TopologyCosts(manual));
+		assertEquals("The load level is added to the new configured cost.", 6 + 2, greenMST.getCosts().getEffectiveCost(2L, 3L));
+
+		network.addTraffic(2L, (short) 2, 300000000L / 8);
+		assertEquals("The level has not changed.", 0, provider.poll(2 * SECOND));
+		assertEquals("The traffic cost is not added twice.", 6 + 2, greenMST.getCosts().getEffectiveCost(2L, 3L));
+		assertEquals("The configured cost is the operator's.", 6, greenMST.getCosts().getCost(2L, 3L));
+
+		logger.info("Ended testConfiguredCostsAreNotChanged.");
+	}
+
+}
@@ -0,0 +1,44 @@
+package it.garr.greenmst.algorithms;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class DisjointSetTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(DisjointSetTest.class);
+	
+	@Test
+	public void testUnion() throws Exception {
+		DisjointSet set = new DisjointSet(5);
+		assertEquals("Every element starts in its own set.", 5, set.getComponentCount());
+		
+		assertTrue("Union of disjoint elements succeeds.", set.union(0, 1));
+		assertTrue("Union of disjoint elements succeeds.", set.union(2, 3));
+		assertTrue("Union of disjoint elements succeeds.", set.union(1, 3));
+		assertFalse("Union of already joined elements fails.", set.union(0, 2));
+		
+		assertTrue("Elements joined transitively are connected.", set.connected(0, 3));
+		assertFalse("Element never joined is not connected.", set.connected(0, 4));
+		assertEquals("Components are right in number.", 2, set.getComponentCount());
+		
+		logger.info("Ended testUnion.");
+	}
+	
+	@Test
+	public void testFindCompressesPath() throws Exception {
+		DisjointSet set = new DisjointSet(1000);
+		for (int i = 1; i < 1000; ++i) set.union(i - 1, i);
+		
+		int root = set.find(999);
+		for (int i = 0; i < 1000; ++i) {
+			assertEquals("All elements share the same root.", root, set.find(i));
+		}
+		assertEquals("A single component is left.", 1, set.getComponentCount());
+		
+		logger.info("Ended testFindCompressesPath.");
+	}
+	
+}
@@ -0,0 +1,257 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.TopologyCostsLoader;
+import it.garr.greenmst.types.Edge;
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class DynamicMinimumSpanningTreeTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(DynamicMinimumSpanningTreeTest.class);
+	
+	DynamicMinimumSpanningTree tree = null;
+	
+	@Before
+	public void setUp() throws Exception {
+		tree = new DynamicMinimumSpanningTree();
+		logger.info("Ended startUp.");
+	}
+	
+	@Test
+	public void testInsert() throws Exception {
+		// Costs come from nodecosts.properties: the heavier 1-3 link is inserted before the 3-4 one
+		tree.insert(Edge.valueOf(1L, 1, 2L, 1));
+		tree.insert(Edge.valueOf(1L, 2, 3L, 1));
+		tree.insert(Edge.valueOf(1L, 3, 4L, 1));
+		tree.insert(Edge.valueOf(2L, 2, 3L, 2));
+		tree.insert(Edge.valueOf(2L, 3, 4L, 2));
+		tree.insert(Edge.valueOf(4L, 3, 3L, 3));
+		
+		Vector<Edge> closed = new Vector<Edge>(), opened = new Vector<Edge>();
+		tree.drainChanges(closed, opened);
+		
+		assertEquals("Tree edges are right in number.", 3, tree.getTreeEdges().size());
+		assertTrue("Link 1-2 is in the tree.", tree.isTreeEdge(Edge.valueOf(2L, 1, 1L, 1)));
+		assertTrue("Link 1-4 is in the tree.", tree.isTreeEdge(Edge.valueOf(1L, 3, 4L, 1)));
+		assertTrue("Link 3-4 is in the tree.", tree.isTreeEdge(Edge.valueOf(3L, 3, 4L, 3)));
+		
+		assertEquals("Redundant edges are right in number.", 3, closed.size());
+		assertEquals("No edge has been opened.", 0, opened.size());
+		
+		logger.info("Ended testInsert.");
+	}
+	
+	@Test
+	public void testRemoveTreeEdge() throws Exception {
+		ArrayList<Edge> topoEdges = new ArrayList<Edge>();
+		topoEdges.add(Edge.valueOf(1L, 1, 2L, 1));
+		topoEdges.add(Edge.valueOf(1L, 2, 3L, 1));
+		topoEdges.add(Edge.valueOf(1L, 3, 4L, 1));
+		topoEdges.add(Edge.valueOf(2L, 2, 3L, 2));
+		topoEdges.add(Edge.valueOf(2L, 3, 4L, 2));
+		topoEdges.add(Edge.valueOf(3L, 3, 4L, 3));
+		tree.reset(topoEdges, new KruskalAlgorithm().perform(new ArrayList<Edge>(topoEdges)));
+		
+		// Removing 1-2 (cost 1) leaves switch 2 reachable through 2-3 (cost 3) or 2-4 (cost 4)
+		assertTrue("Known link is removed.", tree.remove(Edge.valueOf(2L, 1, 1L, 1)));
+		
+		Vector<Edge> closed = new Vector<Edge>(), opened = new Vector<Edge>();
+		tree.drainChanges(closed, opened);
+		
+		assertEquals("No edge has been closed.", 0, closed.size());
+		assertEquals("A single edge has been opened.", 1, opened.size());
+		assertEquals("The cheapest reconnecting edge has been opened.", Edge.valueOf(2L, 2, 3L, 2), opened.get(0));
+		assertFalse("Unknown link is not removed.", tree.remove(Edge.valueOf(2L, 1, 1L, 1)));
+		
+		logger.info("Ended testRemoveTreeEdge.");
+	}
+	
+	@Test
+	public void testInsertCheaperEdge() throws Exception {
+		ArrayList<Edge> topoEdges = new ArrayList<Edge>();
+		topoEdges.add(Edge.valueOf(1L, 2, 3L, 1));
+		topoEdges.add(Edge.valueOf(1L, 3, 4L, 1));
+		topoEdges.add(Edge.valueOf(2L, 2, 3L, 2));
+		tree.reset(topoEdges, new KruskalAlgorithm().perform(new ArrayList<Edge>(topoEdges)));
+		
+		// 3-4 (cost 1) closes a cycle whose heaviest edge is 1-3 (cost 4)
+		tree.insert(Edge.valueOf(3L, 3, 4L, 3));
+		
+		Vector<Edge> closed = new Vector<Edge>(), opened = new Vector<Edge>();
+		tree.drainChanges(closed, opened);
+		
+		HashSet<Edge> expected = new HashSet<Edge>();
+		expected.add(Edge.valueOf(1L, 2, 3L, 1));
+		assertEquals("The heaviest edge on the cycle has been closed.", expected, new HashSet<Edge>(closed));
+		assertEquals("No edge has been opened.", 0, opened.size());
+		
+		logger.info("Ended testInsertCheaperEdge.");
+	}
+	
+	@Test
+	public void testResetRefreshesCosts() throws Exception {
+		ArrayList<Edge> topoEdges = new ArrayList<Edge>();
+		topoEdges.add(Edge.valueOf(1L, 1, 2L, 1));
+		topoEdges.add(Edge.valueOf(2L, 2, 3L, 2));
+		tree.reset(topoEdges, new KruskalAlgorithm().perform(new ArrayList<Edge>(topoEdges)));
+		
+		TopologyCosts costs = TopologyCostsLoader.getTopologyCosts();
+		int previousCost = costs.getCost(2L, 3L);
+		try {
+			// The tree is the same, only the cost of 2-3 changes and is refreshed in place
+			costs.setCost(2L, 3L, 10);
+			tree.reset(topoEdges, new KruskalAlgorithm().perform(new ArrayList<Edge>(topoEdges)));
+			
+			// 1-3 (cost 4) is now cheaper than 2-3 and replaces it
+			tree.insert(Edge.valueOf(1L, 2, 3L, 1));
+			
+			Vector<Edge> closed = new Vector<Edge>(), opened = new Vector<Edge>();
+			tree.drainChanges(closed, opened);
+			
+			assertEquals("A single edge has been closed.", 1, closed.size());
+			assertEquals("The edge whose cost grew has been closed.", Edge.valueOf(2L, 2, 3L, 2), closed.get(0));
+			assertTrue("Link 1-3 is in the tree.", tree.isTreeEdge(Edge.valueOf(1L, 2, 3L, 1)));
+		} finally {
+			costs.setCost(2L, 3L, previousCost);
+		}
+		
+		logger.info("Ended testResetRefreshesCosts.");
+	}
+	
+	@Test
+	public void testUpdateCostsMatchesKruskal() throws Exception {
+		// Switches far from the ones of nodecosts.properties, so that other tests are not affected
+		final long base = 10000;
+		final int switches = 40, links = 200;
+		TopologyCosts sharedCosts = TopologyCostsLoader.getTopologyCosts();
+		LinkCostMap costs = new LinkCostMap();
+		Random random = new Random(16);
+		
+		ArrayList<Edge> topoEdges = new ArrayList<Edge>();
+		for (int i = 0; i < links; ++i) {
+			long src = base + ((i < switches - 1) ? i : random.nextInt(switches)), dst = base + ((i < switches - 1) ? i + 1 : random.nextInt(switches));
+			topoEdges.add(Edge.valueOf(src, i + 1, dst, i + 1));
+			costs.put(src, dst, 1 + random.nextInt(20), TopologyCosts.DEFAULT_COST);
+		}
+		sharedCosts.putAll(new TopologyCosts(costs));
+		tree.reset(topoEdges, new KruskalAlgorithm().perform(topoEdges));
+		
+		HashSet<Edge> redundant = new HashSet<Edge>(topoEdges);
+		redundant.removeAll(tree.getTreeEdges());
+		
+		for (int round = 0; round < 50; ++round) {
+			LinkCostMap changes = new LinkCostMap();
+			for (int i = 0; i < 5; ++i) {
+				Edge edge = topoEdges.get(random.nextInt(links));
+				changes.put(edge.getSrc(), edge.getDst(), 1 + random.nextInt(20), TopologyCosts.DEFAULT_COST);
+			}
+			sharedCosts.putAll(new TopologyCosts(changes));
+			int changed = tree.countCostChanges(false), sensitive = tree.countCostChanges(true);
+			int swaps = tree.updateCosts();
+			assertTrue("Each change swaps at most one edge.", swaps <= changed);
+			if (sensitive == 0) assertEquals("Changes that cannot alter the tree swap nothing.", 0, swaps);
+			assertEquals("Every cost has been applied.", 0, tree.countCostChanges(false));
+			
+			Vector<Edge> closed = new Vector<Edge>(), opened = new Vector<Edge>();
+			tree.drainChanges(closed, opened);
+			redundant.addAll(closed);
+			redundant.removeAll(opened);
+			
+			Vector<Edge> treeEdges = tree.getTreeEdges();
+			assertEquals("The tree has the cost of a minimum spanning tree.", totalCost(new KruskalAlgorithm().perform(topoEdges)), totalCost(treeEdges));
+			HashSet<Edge> expected = new HashSet<Edge>(topoEdges);
+			expected.removeAll(treeEdges);
+			assertEquals("Reported changes track the redundant edges.", expected, redundant);
+		}
+		
+		logger.info("Ended testUpdateCostsMatchesKruskal.");
+	}
+	
+	@Test
+	public void testTiesMatchKruskal() throws Exception {
+		// Switches far from the ones of nodecosts.properties, so that other tests are not affected
+		final long base = 20000;
+		final int switches = 30, links = 120;
+		TopologyCosts sharedCosts = TopologyCostsLoader.getTopologyCosts();
+		LinkCostMap costs = new LinkCostMap();
+		Random random = new Random(4);
+		
+		// Few distinct costs, so that most choices are ties
+		ArrayList<Edge> allEdges = new ArrayList<Edge>();
+		for (int i = 0; i < links; ++i) {
+			long src = base + ((i < switches - 1) ? i : random.nextInt(switches)), dst = base + ((i < switches - 1) ? i + 1 : random.nextInt(switches));
+			allEdges.add(Edge.valueOf(src, i + 1, dst, i + 1));
+			costs.put(src, dst, 1 + random.nextInt(2), TopologyCosts.DEFAULT_COST);
+		}
+		sharedCosts.putAll(new TopologyCosts(costs));
+		
+		// Full computations get the links by increasing id
+		TreeSet<Edge> topoEdges = new TreeSet<Edge>(new Comparator<Edge>() {
+			@Override
+			public int compare(Edge first, Edge second) {
+				return first.getId() - second.getId();
+			}
+		});
+		topoEdges.addAll(allEdges);
+		tree.reset(topoEdges, new KruskalAlgorithm().perform(new ArrayList<Edge>(topoEdges)));
+		
+		for (int round = 0; round < 200; ++round) {
+			Edge edge = allEdges.get(random.nextInt(links));
+			if (topoEdges.remove(edge)) tree.remove(edge);
+			else if (topoEdges.add(edge)) tree.insert(edge);
+			
+			HashSet<Edge> expected = new HashSet<Edge>(new KruskalAlgorithm().perform(new ArrayList<Edge>(topoEdges)));
+			assertEquals("The tree is the one of Kruskal.", expected, new HashSet<Edge>(tree.getTreeEdges()));
+		}
+		assertFalse("No replacement search gave up.", tree.isStale());
+		
+		logger.info("Ended testTiesMatchKruskal.");
+	}
+	
+	@Test
+	public void testScanLimitMarksStale() throws Exception {
+		// Costs come from nodecosts.properties: the tree is made of 1-2, 3-4 (cost 1) and 1-4 (cost 2)
+		ArrayList<Edge> topoEdges = new ArrayList<Edge>();
+		topoEdges.add(Edge.valueOf(1L, 1, 2L, 1));
+		topoEdges.add(Edge.valueOf(1L, 2, 3L, 1));
+		topoEdges.add(Edge.valueOf(1L, 3, 4L, 1));
+		topoEdges.add(Edge.valueOf(2L, 2, 3L, 2));
+		topoEdges.add(Edge.valueOf(2L, 3, 4L, 2));
+		topoEdges.add(Edge.valueOf(3L, 3, 4L, 3));
+		tree.reset(topoEdges, new KruskalAlgorithm().perform(new ArrayList<Edge>(topoEdges)));
+		tree.setScanLimit(0);
+		
+		// 2-3 would replace 1-4, but the search gives up before looking at it
+		tree.remove(Edge.valueOf(1L, 3, 4L, 1));
+		assertTrue("The replacement search gave up.", tree.isStale());
+		assertEquals("No edge has replaced the removed one.", 2, tree.getTreeEdges().size());
+		
+		topoEdges.remove(Edge.valueOf(1L, 3, 4L, 1));
+		tree.reset(topoEdges, new KruskalAlgorithm().perform(new ArrayList<Edge>(topoEdges)));
+		assertFalse("A reset clears the stale state.", tree.isStale());
+		assertEquals("The tree spans the switches again.", 3, tree.getTreeEdges().size());
+		
+		logger.info("Ended testScanLimitMarksStale.");
+	}
+	
+	private static long totalCost(Vector<Edge> edges) {
+		long total = 0;
+		for (Edge edge : edges) total += edge.getCost();
+		return total;
+	}
+	
+}
@@ -0,0 +1,60 @@
+package it.garr.greenmst.algorithms;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class EdgeCostSorterTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(EdgeCostSorterTest.class);
+	
+	@Test
+	public void testSmallCostRange() throws Exception {
+		int[] costs = randomCosts(2000, 0, 10);
+		verifyOrder(costs, EdgeCostSorter.sort(costs, false), false);
+		verifyOrder(costs, EdgeCostSorter.sort(costs, true), true);
+		
+		logger.info("Ended testSmallCostRange.");
+	}
+	
+	@Test
+	public void testWideCostRange() throws Exception {
+		int[] costs = randomCosts(2000, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		costs[0] = Integer.MIN_VALUE;
+		costs[1] = Integer.MAX_VALUE;
+		costs[2] = costs[3];
+		verifyOrder(costs, EdgeCostSorter.sort(costs, false), false);
+		verifyOrder(costs, EdgeCostSorter.sort(costs, true), true);
+		
+		logger.info("Ended testWideCostRange.");
+	}
+	
+	private int[] randomCosts(int size, int min, int max) {
+		Random random = new Random(size);
+		int[] costs = new int[size];
+		for (int i = 0; i < size; ++i) {
+			costs[i] = (int) (min + (long) (random.nextDouble() * ((long) max - min)));
+		}
+		return costs;
+	}
+	
+	private void verifyOrder(int[] costs, int[] order, boolean reverse) {
+		assertEquals("All edges are sorted.", costs.length, order.length);
+		
+		boolean[] seen = new boolean[costs.length];
+		for (int i = 0; i < order.length; ++i) {
+			assertFalse("Each edge appears once.", seen[order[i]]);
+			seen[order[i]] = true;
+			
+			if (i == 0) continue;
+			int previous = costs[order[i - 1]], current = costs[order[i]];
+			assertTrue("Edges are sorted by cost.", reverse ? previous >= current : previous <= current);
+			if (previous == current) assertTrue("Sort is stable.", order[i - 1] < order[i]);
+		}
+	}
+	
+}
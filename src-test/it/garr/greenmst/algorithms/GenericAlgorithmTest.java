@@ -1,6 +1,6 @@
 package it.garr.greenmst.algorithms;
 
-import it.garr.greenmst.types.LinkWithCost;
+import it.garr.greenmst.types.Edge;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -25,7 +25,7 @@ public abstract class GenericAlgorithmTest extends TestCase {
 	
 	@Test
 	public void testPerform() throws Exception {
-		ArrayList<LinkWithCost> allTopology = new ArrayList<LinkWithCost>();
+		ArrayList<Edge> allTopology = new ArrayList<Edge>();
 		
 		addLinkToCollection(allTopology, 1L, 1, 2L, 1, 1);
 		addLinkToCollection(allTopology, 1L, 2, 3L, 1, 4);
@@ -34,28 +34,17 @@ public abstract class GenericAlgorithmTest extends TestCase {
 		addLinkToCollection(allTopology, 2L, 3, 4L, 2, 4);
 		addLinkToCollection(allTopology, 3L, 3, 4L, 3, 1);
 		
-		Vector<LinkWithCost> mstEdges = algorithm.perform(allTopology, false);
-		Vector<LinkWithCost> reverseEdges = new Vector<LinkWithCost>();
-		for (LinkWithCost link : mstEdges) {
-			reverseEdges.add(link.getInverse());
-		}
-		mstEdges.addAll(reverseEdges);
+		Vector<Edge> mstEdges = algorithm.perform(allTopology, false);
 		
-		HashSet<LinkWithCost> expectedMSTEdges = new HashSet<LinkWithCost>();
+		HashSet<Edge> expectedMSTEdges = new HashSet<Edge>();
 		addLinkToCollection(expectedMSTEdges, 1L, 1, 2L, 1, 1);
 		addLinkToCollection(expectedMSTEdges, 1L, 3, 4L, 1, 2);
 		addLinkToCollection(expectedMSTEdges, 3L, 3, 4L, 3, 1);
 			
 		assertEquals("MST edges computed are right in number.", expectedMSTEdges.size(), mstEdges.size());
 		
-		for (LinkWithCost expectedLink : expectedMSTEdges) {
+		for (Edge expectedLink : expectedMSTEdges) {
 			assertTrue("MST edges computed contains the expected link " + expectedLink + ".", mstEdges.contains(expectedLink));
-			
-			for (LinkWithCost curLink : mstEdges) {
-				if (curLink.equals(expectedLink)) {
-					assertEquals("The cost for the rendundant edge link is correct.", expectedLink.getCost(), curLink.getCost());
-				}
-			}
 		}
 		
 		logger.info("Ended testPerform.");
@@ -63,7 +52,7 @@ public abstract class GenericAlgorithmTest extends TestCase {
 	
 	@Test
 	public void testPerformReverse() throws Exception {
-		ArrayList<LinkWithCost> allTopology = new ArrayList<LinkWithCost>();
+		ArrayList<Edge> allTopology = new ArrayList<Edge>();
 		
 		addLinkToCollection(allTopology, 1L, 1, 2L, 1, 1);
 		addLinkToCollection(allTopology, 1L, 2, 3L, 1, 4);
@@ -72,40 +61,28 @@ public abstract class GenericAlgorithmTest extends TestCase {
 		addLinkToCollection(allTopology, 2L, 3, 4L, 2, 4);
 		addLinkToCollection(allTopology, 3L, 3, 4L, 3, 1);
 		
-		Vector<LinkWithCost> mstEdges = algorithm.perform(allTopology, true);
-		Vector<LinkWithCost> reverseEdges = new Vector<LinkWithCost>();
-		for (LinkWithCost link : mstEdges) {
-			reverseEdges.add(link.getInverse());
-		}
-		mstEdges.addAll(reverseEdges);
+		Vector<Edge> mstEdges = algorithm.perform(allTopology, true);
 		
-		HashSet<LinkWithCost> expectedMSTEdges = new HashSet<LinkWithCost>();
+		HashSet<Edge> expectedMSTEdges = new HashSet<Edge>();
 		addLinkToCollection(expectedMSTEdges, 1L, 2, 3L, 1, 4);
 		addLinkToCollection(expectedMSTEdges, 2L, 3, 4L, 2, 4);
 		addLinkToCollection(expectedMSTEdges, 2L, 2, 3L, 2, 3);
 			
 		assertEquals("MST edges computed are right in number.", expectedMSTEdges.size(), mstEdges.size());
 		
-		for (LinkWithCost expectedLink : expectedMSTEdges) {
+		for (Edge expectedLink : expectedMSTEdges) {
 			assertTrue("MST edges computed contains the expected link " + expectedLink + ".", mstEdges.contains(expectedLink));
-			
-			for (LinkWithCost curLink : mstEdges) {
-				if (curLink.equals(expectedLink)) {
-					assertEquals("The cost for the rendundant edge link is correct.", expectedLink.getCost(), curLink.getCost());
-				}
-			}
 		}
 		
 		logger.info("Ended testPerform.");
 	}
 	
-	protected void addLinkToCollection(Collection<LinkWithCost> topoEdges, long switchFrom, int portFrom, long switchTo, int portTo, int cost) {
-		LinkWithCost link = new LinkWithCost(switchFrom, portFrom, switchTo, portTo, cost);
+	protected void addLinkToCollection(Collection<Edge> topoEdges, long switchFrom, int portFrom, long switchTo, int portTo, int cost) {
+		Edge edge = Edge.valueOf(switchFrom, portFrom, switchTo, portTo);
+		
+		assertEquals("The cost of the edge is the configured one.", cost, edge.getCost());
 		
-		logger.debug("Link added: {}.", new Object[] { link });
-        topoEdges.add(link);
-        
-        logger.debug("Link added: {}.", new Object[] { link.getInverse() });
-        topoEdges.add(link.getInverse());
+		logger.debug("Edge added: {}.", new Object[] { edge });
+        topoEdges.add(edge);
 	}
 }
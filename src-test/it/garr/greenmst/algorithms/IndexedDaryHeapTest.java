@@ -0,0 +1,46 @@
+package it.garr.greenmst.algorithms;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class IndexedDaryHeapTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(IndexedDaryHeapTest.class);
+	
+	@Test
+	public void testPollOrder() throws Exception {
+		IndexedDaryHeap heap = new IndexedDaryHeap(10, 3);
+		long[] keys = { 7, 3, 9, 1, 8, 2, 6, 0, 5, 4 };
+		for (int i = 0; i < keys.length; ++i) heap.insert(i, keys[i]);
+		
+		long last = Long.MIN_VALUE;
+		while (!heap.isEmpty()) {
+			int item = heap.poll();
+			assertTrue("Items are polled by increasing key.", keys[item] >= last);
+			assertFalse("Polled items leave the heap.", heap.contains(item));
+			last = keys[item];
+		}
+		
+		logger.info("Ended testPollOrder.");
+	}
+	
+	@Test
+	public void testDecreaseKey() throws Exception {
+		IndexedDaryHeap heap = new IndexedDaryHeap(4);
+		heap.insert(0, 10);
+		heap.insert(1, 20);
+		heap.insert(2, 30);
+		
+		assertTrue("A lower key is applied.", heap.decreaseKey(2, 5));
+		assertFalse("A higher key is ignored.", heap.decreaseKey(1, 25));
+		assertEquals("The item with the decreased key comes first.", 2, heap.poll());
+		assertEquals("Then the others by key.", 0, heap.poll());
+		assertEquals("Keys not decreased are kept.", 20L, heap.getKey(1));
+		
+		logger.info("Ended testDecreaseKey.");
+	}
+	
+}
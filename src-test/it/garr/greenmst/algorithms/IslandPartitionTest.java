@@ -0,0 +1,65 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.types.Edge;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class IslandPartitionTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(IslandPartitionTest.class);
+	
+	@Test
+	public void testPartition() throws Exception {
+		List<Edge> edges = new ArrayList<Edge>();
+		edges.add(Edge.valueOf(1L, 1, 2L, 1));
+		edges.add(Edge.valueOf(5L, 1, 6L, 1));
+		edges.add(Edge.valueOf(2L, 2, 3L, 1));
+		edges.add(Edge.valueOf(3L, 2, 1L, 2));
+		edges.add(Edge.valueOf(7L, 1, 8L, 1));
+		edges.add(Edge.valueOf(6L, 2, 7L, 2));
+		
+		IslandPartition partition = new IslandPartition();
+		partition.partition(edges);
+		
+		assertEquals("Two islands are found.", 2, partition.getIslandCount());
+		assertEquals("The first island holds the links of switches 1, 2 and 3.", 3, partition.getIsland(0).size());
+		assertEquals("Islands keep the order of their links.", Edge.valueOf(2L, 2, 3L, 1), partition.getIsland(0).get(1));
+		assertEquals("The second island holds the links of switches 5 to 8.", 3, partition.getIsland(1).size());
+		assertTrue("Links joining two islands are in the second one.", partition.getIsland(1).contains(Edge.valueOf(6L, 2, 7L, 2)));
+		
+		logger.info("Ended testPartition.");
+	}
+	
+	@Test
+	public void testPartitionReplacesIslands() throws Exception {
+		List<Edge> edges = new ArrayList<Edge>();
+		edges.add(Edge.valueOf(1L, 1, 2L, 1));
+		edges.add(Edge.valueOf(3L, 1, 4L, 1));
+		
+		IslandPartition partition = new IslandPartition();
+		partition.partition(edges);
+		assertEquals("Each link is an island.", 2, partition.getIslandCount());
+		
+		edges.add(Edge.valueOf(2L, 2, 3L, 2));
+		partition.partition(edges);
+		assertEquals("The new link joins the islands.", 1, partition.getIslandCount());
+		assertEquals("Every link is in the island.", 3, partition.getIsland(0).size());
+		
+		try {
+			partition.getIsland(1);
+			fail("Islands of the previous partition are not returned.");
+		} catch (IndexOutOfBoundsException e) {
+			// Expected
+		}
+		
+		logger.info("Ended testPartitionReplacesIslands.");
+	}
+	
+}
@@ -0,0 +1,57 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.TopologyCostsLoader;
+import it.garr.greenmst.types.Edge;
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ParallelBoruvkaAlgorithmTest extends GenericAlgorithmTest {
+	
+	protected static Logger logger = LoggerFactory.getLogger(ParallelBoruvkaAlgorithmTest.class);
+
+	@Before
+    public void setUp() throws Exception { 
+		// Every topology takes the parallel path, the pool stops its workers once idle
+		algorithm = new ParallelBoruvkaAlgorithm(0, new ForkJoinPool(4));
+        logger.info("Ended startUp.");
+    }
+	
+	@Test
+	public void testSameResultAsKruskal() throws Exception {
+		Random random = new Random(42);
+		TopologyCosts sharedCosts = TopologyCostsLoader.getTopologyCosts();
+		LinkCostMap costs = new LinkCostMap(), previousCosts = new LinkCostMap();
+		ArrayList<Edge> allTopology = new ArrayList<Edge>();
+		
+		// Two islands of random links, with few distinct costs so that ties are frequent
+		for (int i = 0; i < 20000; ++i) {
+			long base = (i % 2 == 0) ? 1000 : 5000;
+			long src = base + random.nextInt(2000), dst = base + random.nextInt(2000);
+			allTopology.add(Edge.valueOf(src, random.nextInt(4), dst, random.nextInt(4)));
+			costs.put(src, dst, random.nextInt(5), 1);
+			if (!previousCosts.containsKey(src, dst)) previousCosts.put(src, dst, sharedCosts.getCost(src, dst), TopologyCosts.DEFAULT_COST);
+		}
+		
+		try {
+			sharedCosts.putAll(new TopologyCosts(costs));
+			
+			assertEquals("Forward result is the same as Kruskal's.", new KruskalAlgorithm().perform(allTopology, false), algorithm.perform(allTopology, false));
+			assertEquals("Reverse result is the same as Kruskal's.", new KruskalAlgorithm().perform(allTopology, true), algorithm.perform(allTopology, true));
+		} finally {
+			// Links missing before get the default cost, as they had
+			sharedCosts.putAll(new TopologyCosts(previousCosts));
+		}
+		
+		logger.info("Ended testSameResultAsKruskal.");
+	}
+	
+}
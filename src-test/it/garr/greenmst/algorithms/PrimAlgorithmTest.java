@@ -0,0 +1,42 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.types.Edge;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Vector;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PrimAlgorithmTest extends GenericAlgorithmTest {
+	
+	protected static Logger logger = LoggerFactory.getLogger(PrimAlgorithmTest.class);
+
+	@Before
+    public void setUp() throws Exception { 
+		algorithm = new PrimAlgorithm();
+        logger.info("Ended startUp.");
+    }
+	
+	@Test
+	public void testPerformForest() throws Exception {
+		ArrayList<Edge> allTopology = new ArrayList<Edge>();
+		
+		addLinkToCollection(allTopology, 1L, 1, 2L, 1, 1);
+		addLinkToCollection(allTopology, 1L, 2, 3L, 1, 4);
+		addLinkToCollection(allTopology, 2L, 2, 3L, 2, 3);
+		addLinkToCollection(allTopology, 5L, 1, 6L, 1, 1);
+		addLinkToCollection(allTopology, 5L, 2, 6L, 2, 1);
+		
+		Vector<Edge> mstEdges = algorithm.perform(allTopology, false);
+		
+		assertEquals("A tree is computed for each island.", 3, mstEdges.size());
+		assertEquals("The result is the same as Kruskal's.", new HashSet<Edge>(new KruskalAlgorithm().perform(allTopology, false)), new HashSet<Edge>(mstEdges));
+		
+		logger.info("Ended testPerformForest.");
+	}
+	
+}
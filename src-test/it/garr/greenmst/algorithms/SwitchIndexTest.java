@@ -0,0 +1,38 @@
+package it.garr.greenmst.algorithms;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class SwitchIndexTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(SwitchIndexTest.class);
+	
+	@Test
+	public void testIndexOf() throws Exception {
+		SwitchIndex index = new SwitchIndex();
+		
+		assertEquals("First switch gets index 0.", 0, index.indexOf(0x00000000000000ffL));
+		assertEquals("Second switch gets index 1.", 1, index.indexOf(-1L));
+		assertEquals("Known switch keeps its index.", 0, index.indexOf(0x00000000000000ffL));
+		assertEquals("Two switches are indexed.", 2, index.size());
+		
+		logger.info("Ended testIndexOf.");
+	}
+	
+	@Test
+	public void testGrowAndClear() throws Exception {
+		SwitchIndex index = new SwitchIndex();
+		for (long dpid = 1; dpid <= 5000; ++dpid) assertEquals("Indices are dense.", (int) dpid - 1, index.indexOf(dpid << 16));
+		for (long dpid = 1; dpid <= 5000; ++dpid) assertEquals("Index survives rehashing.", (int) dpid - 1, index.indexOf(dpid << 16));
+		
+		index.clear();
+		assertEquals("Cleared index is empty.", 0, index.size());
+		assertEquals("Indices restart from 0.", 0, index.indexOf(5000L << 16));
+		
+		logger.info("Ended testGrowAndClear.");
+	}
+	
+}
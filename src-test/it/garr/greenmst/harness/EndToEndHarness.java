@@ -0,0 +1,206 @@
+package it.garr.greenmst.harness;
+
+import it.garr.greenmst.GreenMST;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.module.FloodlightModuleContext;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LDUpdate;
+import net.floodlightcontroller.routing.Link;
+import net.floodlightcontroller.topology.ITopologyService;
+
+/**
+ * End-to-end harness running GreenMST on a {@link SimulatedNetwork}, without Mininet.
+ *
+ * Each scenario starts a new module on a fat-tree, replays a stream of link updates from
+ * {@link TopologyEventGenerator} through the topology listener, and waits until every
+ * recomputation and port mod has been carried out. It reports the latency from the last
+ * event to the last port mod received by a switch, the number of recomputations and the
+ * number of port mods issued. Scenarios other than the bring-up start from a network
+ * already brought up, which is not accounted for.
+ *
+ * Run with: java it.garr.greenmst.harness.EndToEndHarness [k] [recomputeDelay] [recomputeMaxDelay]
+ *
+ * @see it.garr.greenmst.harness.SimulatedNetwork
+ * @see it.garr.greenmst.harness.TopologyEventGenerator
+ *
+ */
+
+public class EndToEndHarness {
+
+	public static final long SEED = 0x5DEECE66DL;
+	private static final long IDLE_POLL_MILLIS = 5;
+	private static final long TIMEOUT_MILLIS = 60000;
+
+	public static class ScenarioResult {
+		public final String name;
+		public final int events, recomputations, portMods, writes;
+		// From the last event to the last port mod, -1 if no port mod has been issued
+		public final double latencyMillis;
+
+		ScenarioResult(String name, int events, int recomputations, int portMods, int writes, double latencyMillis) {
+			this.name = name;
+			this.events = events;
+			this.recomputations = recomputations;
+			this.portMods = portMods;
+			this.writes = writes;
+			this.latencyMillis = latencyMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%-16s %8d %10d %10d %8d %14.1f", name, events, recomputations, portMods, writes, latencyMillis);
+		}
+	}
+
+	/**
+	 * GreenMST counting its recomputations and telling when all pending work is done.
+	 */
+	protected static class InstrumentedGreenMST extends GreenMST {
+		final AtomicInteger recomputations = new AtomicInteger();
+
+		@Override
+		protected void recompute() {
+			recomputations.incrementAndGet();
+			super.recompute();
+		}
+
+		boolean isIdle() {
+			synchronized (topologyLock) {
+				if (pendingRecompute != null && !pendingRecompute.isDone()) return false;
+			}
+			return portModDispatcher.getQueuedCount() == 0;
+		}
+
+		void shutdown() {
+			recomputeExecutor.shutdownNow();
+		}
+	}
+
+	private final List<Link> links;
+	private final long recomputeDelay, recomputeMaxDelay;
+	// Pause between consecutive batches of a stream
+	private long eventInterval = 1;
+
+	public EndToEndHarness(List<Link> links, long recomputeDelay, long recomputeMaxDelay) {
+		this.links = links;
+		this.recomputeDelay = recomputeDelay;
+		this.recomputeMaxDelay = recomputeMaxDelay;
+	}
+
+	public void setEventInterval(long eventInterval) {
+		this.eventInterval = eventInterval;
+	}
+
+	public ScenarioResult runBringUp(int batchSize) throws Exception {
+		return run("bring-up", null, generator().bringUp(batchSize), null);
+	}
+
+	public ScenarioResult runFlaps(int count) throws Exception {
+		TopologyEventGenerator generator = generator();
+		return run("flaps", generator.bringUp(links.size()), generator.flaps(count), null);
+	}
+
+	public ScenarioResult runSwitchLoss(long switchId) throws Exception {
+		TopologyEventGenerator generator = generator();
+		return run("switch-loss", generator.bringUp(links.size()), generator.switchLoss(switchId), switchId);
+	}
+
+	private TopologyEventGenerator generator() {
+		return new TopologyEventGenerator(links, SEED);
+	}
+
+	private ScenarioResult run(String name, List<List<LDUpdate>> setUp, List<List<LDUpdate>> stream, Long lostSwitch) throws Exception {
+		SimulatedNetwork network = new SimulatedNetwork(TopologyEventGenerator.switchesOf(links), portsPerSwitch());
+		InstrumentedGreenMST module = start(network);
+
+		try {
+			if (setUp != null) {
+				deliver(network, setUp);
+				awaitIdle(module);
+				network.resetCounters();
+				module.recomputations.set(0);
+			}
+
+			if (lostSwitch != null) network.disconnect(lostSwitch);
+			int events = 0;
+			for (List<LDUpdate> batch : stream) events += batch.size();
+			long lastEvent = deliver(network, stream);
+			awaitIdle(module);
+
+			long lastPortMod = network.getLastPortModTime();
+			double latency = (lastPortMod == 0) ? -1 : Math.max(0, lastPortMod - lastEvent) / 1e6;
+			return new ScenarioResult(name, events, module.recomputations.get(), network.getPortModCount(), network.getWriteCount(), latency);
+		} finally {
+			module.shutdown();
+		}
+	}
+
+	private InstrumentedGreenMST start(SimulatedNetwork network) throws Exception {
+		InstrumentedGreenMST module = new InstrumentedGreenMST();
+		FloodlightModuleContext context = new FloodlightModuleContext();
+		context.addService(IFloodlightProviderService.class, network.getFloodlightProvider());
+		context.addService(ITopologyService.class, network.getTopologyService());
+		context.addConfigParam(module, "recomputeDelay", Long.toString(recomputeDelay));
+		context.addConfigParam(module, "recomputeMaxDelay", Long.toString(recomputeMaxDelay));
+		// Pacing is not what is measured here
+		context.addConfigParam(module, "portModBurst", Integer.toString(Integer.MAX_VALUE));
+
+		module.init(context);
+		module.startUp(context);
+		return module;
+	}
+
+	/**
+	 * Delivers the batches and returns the System.nanoTime() of the last one.
+	 */
+	private long deliver(SimulatedNetwork network, List<List<LDUpdate>> batches) throws InterruptedException {
+		long last = System.nanoTime();
+		for (int i = 0; i < batches.size(); ++i) {
+			if (i > 0 && eventInterval > 0) Thread.sleep(eventInterval);
+			last = System.nanoTime();
+			network.deliver(batches.get(i));
+		}
+		return last;
+	}
+
+	private void awaitIdle(InstrumentedGreenMST module) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		// Two consecutive idle polls, so that a recomputation being rescheduled is not missed
+		int idlePolls = 0;
+		while (idlePolls < 2) {
+			if (System.currentTimeMillis() > deadline) throw new IllegalStateException("GreenMST did not settle within " + TIMEOUT_MILLIS + " ms.");
+			Thread.sleep(IDLE_POLL_MILLIS);
+			idlePolls = module.isIdle() ? idlePolls + 1 : 0;
+		}
+	}
+
+	private int portsPerSwitch() {
+		int max = 0;
+		for (Link link : links) max = Math.max(max, Math.max(link.getSrcPort(), link.getDstPort()));
+		return max;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int k = (args.length > 0) ? Integer.parseInt(args[0]) : 8;
+		long delay = (args.length > 1) ? Long.parseLong(args[1]) : GreenMST.DEFAULT_RECOMPUTE_DELAY;
+		long maxDelay = (args.length > 2) ? Long.parseLong(args[2]) : GreenMST.DEFAULT_RECOMPUTE_MAX_DELAY;
+
+		List<Link> links = TopologyEventGenerator.fatTree(k);
+		EndToEndHarness harness = new EndToEndHarness(links, delay, maxDelay);
+		List<ScenarioResult> results = new ArrayList<ScenarioResult>();
+		results.add(harness.runBringUp(Math.max(1, links.size() / 16)));
+		results.add(harness.runFlaps(20));
+		// The first aggregation switch of the first pod
+		results.add(harness.runSwitchLoss(k * k / 4 + 1));
+
+		System.out.println(String.format("Fat-tree k=%d: %d switches, %d links, recomputeDelay %d ms, recomputeMaxDelay %d ms",
+				k, TopologyEventGenerator.switchesOf(links).size(), links.size(), delay, maxDelay));
+		System.out.println(String.format("%-16s %8s %10s %10s %8s %14s", "scenario", "events", "recomputes", "port mods", "writes", "latency (ms)"));
+		for (ScenarioResult result : results) System.out.println(result);
+	}
+
+}
@@ -0,0 +1,67 @@
+package it.garr.greenmst.harness;
+
+import it.garr.greenmst.harness.EndToEndHarness.ScenarioResult;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import net.floodlightcontroller.routing.Link;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class EndToEndHarnessTest extends TestCase {
+
+	protected static Logger logger = LoggerFactory.getLogger(EndToEndHarnessTest.class);
+	protected static final int K = 4;
+	protected List<Link> links = null;
+	protected EndToEndHarness harness = null;
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		links = TopologyEventGenerator.fatTree(K);
+		harness = new EndToEndHarness(links, 20, 200);
+	}
+
+	@Test
+	public void testBringUp() throws Exception {
+		ScenarioResult result = harness.runBringUp(4);
+		logger.info("{}", result);
+
+		int switches = TopologyEventGenerator.switchesOf(links).size();
+		assertEquals(links.size(), result.events);
+		// The whole bring-up is coalesced in a single recomputation
+		assertEquals(1, result.recomputations);
+		// Both ends of every redundant link are closed, and nothing else
+		assertEquals(2 * (links.size() - (switches - 1)), result.portMods);
+		assertTrue(result.latencyMillis >= 0);
+
+		logger.info("Ended testBringUp.");
+	}
+
+	@Test
+	public void testFlaps() throws Exception {
+		ScenarioResult result = harness.runFlaps(5);
+		logger.info("{}", result);
+
+		assertEquals(10, result.events);
+		assertTrue(result.recomputations >= 1 && result.recomputations <= 10);
+
+		logger.info("Ended testFlaps.");
+	}
+
+	@Test
+	public void testSwitchLoss() throws Exception {
+		ScenarioResult result = harness.runSwitchLoss(K * K / 4 + 1);
+		logger.info("{}", result);
+
+		assertEquals(1, result.recomputations);
+		assertTrue(result.portMods > 0);
+
+		logger.info("Ended testSwitchLoss.");
+	}
+
+}
@@ -0,0 +1,284 @@
+package it.garr.greenmst.harness;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFMessageListener;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.IOFSwitchListener;
+import net.floodlightcontroller.core.ImmutablePort;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LDUpdate;
+import net.floodlightcontroller.topology.ITopologyListener;
+import net.floodlightcontroller.topology.ITopologyService;
+
+import org.openflow.protocol.OFBarrierReply;
+import org.openflow.protocol.OFBarrierRequest;
+import org.openflow.protocol.OFMessage;
+import org.openflow.protocol.OFPhysicalPort.OFPortConfig;
+import org.openflow.protocol.OFPortMod;
+import org.openflow.protocol.OFType;
+import org.openflow.protocol.statistics.OFPortStatisticsReply;
+import org.openflow.protocol.statistics.OFStatistics;
+
+/**
+ * In-JVM stand-in for the Floodlight services used by GreenMST.
+ *
+ * Switches, the floodlight provider and the topology service are dynamic proxies: the
+ * few methods GreenMST relies on are implemented, every other method returns a default
+ * value. Switches record the time of every port mod they receive and answer barrier
+ * requests right away, as a switch on an idle control channel would. Port mods change
+ * the config of the port, which is reported to the switch listeners as a port-status
+ * message would. Statistics requests are answered with the transmit counters of every
+ * port, which tests advance with {@link #addTraffic(long, short, long)}.
+ *
+ * @see it.garr.greenmst.harness.EndToEndHarness
+ *
+ */
+
+public class SimulatedNetwork {
+
+	private final Map<Long, IOFSwitch> switches = new ConcurrentHashMap<Long, IOFSwitch>();
+	// Switches by dpid, connected or not, and their ports
+	private final Map<Long, IOFSwitch> allSwitches = new ConcurrentHashMap<Long, IOFSwitch>();
+	private final Map<Long, Map<Short, ImmutablePort>> switchPorts = new ConcurrentHashMap<Long, Map<Short, ImmutablePort>>();
+	private final Map<Long, Map<Short, AtomicLong>> transmitBytes = new ConcurrentHashMap<Long, Map<Short, AtomicLong>>();
+	private final Map<Long, AtomicInteger> failingWrites = new ConcurrentHashMap<Long, AtomicInteger>();
+	private final List<IOFSwitchListener> switchListeners = new CopyOnWriteArrayList<IOFSwitchListener>();
+	private final List<IOFMessageListener> barrierListeners = new CopyOnWriteArrayList<IOFMessageListener>();
+	private final List<ITopologyListener> topologyListeners = new CopyOnWriteArrayList<ITopologyListener>();
+
+	private final AtomicInteger portMods = new AtomicInteger();
+	private final AtomicInteger writes = new AtomicInteger();
+	private final AtomicLong lastPortModTime = new AtomicLong();
+
+	private final IFloodlightProviderService floodlightProvider;
+	private final ITopologyService topologyService;
+
+	public SimulatedNetwork(Collection<Long> switchIds, int portsPerSwitch) {
+		for (long switchId : switchIds) allSwitches.put(switchId, createSwitch(switchId, portsPerSwitch));
+		switches.putAll(allSwitches);
+
+		floodlightProvider = proxy(IFloodlightProviderService.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.equals("getAllSwitchMap")) return Collections.unmodifiableMap(switches);
+				if (name.equals("getSwitch")) return switches.get(args[0]);
+				if (name.equals("addOFMessageListener") && args[0] == OFType.BARRIER_REPLY) barrierListeners.add((IOFMessageListener) args[1]);
+				if (name.equals("addOFSwitchListener")) switchListeners.add((IOFSwitchListener) args[0]);
+				return defaultValue(method);
+			}
+		});
+
+		topologyService = proxy(ITopologyService.class, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getName().equals("addListener")) topologyListeners.add((ITopologyListener) args[0]);
+				return defaultValue(method);
+			}
+		});
+	}
+
+	public IFloodlightProviderService getFloodlightProvider() {
+		return floodlightProvider;
+	}
+
+	public ITopologyService getTopologyService() {
+		return topologyService;
+	}
+
+	/**
+	 * Delivers a batch of link updates to the topology listeners, as the topology service does.
+	 */
+	public void deliver(List<LDUpdate> updates) {
+		for (ITopologyListener listener : topologyListeners) listener.topologyChanged(updates);
+	}
+
+	public void disconnect(long switchId) {
+		if (switches.remove(switchId) == null) return;
+		for (IOFSwitchListener listener : switchListeners) listener.switchRemoved(switchId);
+	}
+
+	/**
+	 * Connects the switch again, with the port configs it had, and notifies the switch listeners.
+	 */
+	public void connect(long switchId) {
+		switches.put(switchId, allSwitches.get(switchId));
+		for (IOFSwitchListener listener : switchListeners) listener.switchActivated(switchId);
+	}
+
+	/**
+	 * Returns true if the port floods, false if it has been closed by a port mod.
+	 */
+	public boolean isPortOpen(long switchId, short portNum) {
+		return !switchPorts.get(switchId).get(portNum).getConfig().contains(OFPortConfig.OFPPC_NO_FLOOD);
+	}
+
+	/**
+	 * Changes the config of a port as an operator on the switch would, reporting it with a port-status
+	 * message if the switch is connected.
+	 */
+	public void setPortOpen(long switchId, short portNum, boolean open) {
+		ImmutablePort port = setPortConfig(switchId, portNum, open);
+		if (!switches.containsKey(switchId)) return;
+		for (IOFSwitchListener listener : switchListeners) listener.switchPortChanged(switchId, port, IOFSwitch.PortChangeType.OTHER_UPDATE);
+	}
+
+	/**
+	 * Adds bytes to the transmit counter of the port.
+	 */
+	public void addTraffic(long switchId, short portNum, long bytes) {
+		transmitBytes.get(switchId).get(portNum).addAndGet(bytes);
+	}
+
+	/**
+	 * Makes the next count writes to the switch fail.
+	 */
+	public void failWrites(long switchId, int count) {
+		failingWrites.put(switchId, new AtomicInteger(count));
+	}
+
+	public int getPortModCount() {
+		return portMods.get();
+	}
+
+	public int getWriteCount() {
+		return writes.get();
+	}
+
+	/**
+	 * Returns the System.nanoTime() of the last port mod received, 0 if none.
+	 */
+	public long getLastPortModTime() {
+		return lastPortModTime.get();
+	}
+
+	public void resetCounters() {
+		portMods.set(0);
+		writes.set(0);
+		lastPortModTime.set(0);
+	}
+
+	private IOFSwitch createSwitch(final long switchId, int portsPerSwitch) {
+		final Map<Short, ImmutablePort> ports = new ConcurrentHashMap<Short, ImmutablePort>();
+		for (short portNum = 1; portNum <= portsPerSwitch; ++portNum) {
+			ports.put(portNum, new ImmutablePort.Builder().setPortNumber(portNum).setName("eth" + portNum).setHardwareAddress(new byte[6]).build());
+		}
+		switchPorts.put(switchId, ports);
+		final Map<Short, AtomicLong> counters = new ConcurrentHashMap<Short, AtomicLong>();
+		for (short portNum = 1; portNum <= portsPerSwitch; ++portNum) counters.put(portNum, new AtomicLong());
+		transmitBytes.put(switchId, counters);
+		final AtomicInteger transactionIds = new AtomicInteger();
+
+		return proxy(IOFSwitch.class, new InvocationHandler() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if (name.equals("getId")) return switchId;
+				if (name.equals("getStringId")) return Long.toHexString(switchId);
+				if (name.equals("getPort") && args[0] instanceof Short) return ports.get(args[0]);
+				if (name.equals("getPorts")) return new ArrayList<ImmutablePort>(ports.values());
+				if (name.equals("getNextTransactionId")) return transactionIds.incrementAndGet();
+				if (name.equals("isConnected") || name.equals("isActive")) return switches.containsKey(switchId);
+				if (name.equals("write")) {
+					AtomicInteger failing = failingWrites.get(switchId);
+					if (failing != null && failing.getAndDecrement() > 0) throw new IOException("Simulated write failure.");
+					List<OFMessage> messages = (args[0] instanceof List) ? (List<OFMessage>) args[0] : Collections.singletonList((OFMessage) args[0]);
+					received((IOFSwitch) proxy, messages);
+				}
+				if (name.equals("queryStatistics")) {
+					FutureTask<List<OFStatistics>> reply = new FutureTask<List<OFStatistics>>(new Callable<List<OFStatistics>>() {
+						@Override
+						public List<OFStatistics> call() {
+							List<OFStatistics> statistics = new ArrayList<OFStatistics>();
+							for (Map.Entry<Short, AtomicLong> counter : counters.entrySet()) {
+								OFPortStatisticsReply portReply = new OFPortStatisticsReply();
+								portReply.setPortNumber(counter.getKey());
+								portReply.setTransmitBytes(counter.getValue().get());
+								statistics.add(portReply);
+							}
+							return statistics;
+						}
+					});
+					reply.run();
+					return reply;
+				}
+				return defaultValue(method);
+			}
+		});
+	}
+
+	private void received(IOFSwitch sw, List<OFMessage> messages) {
+		writes.incrementAndGet();
+		for (OFMessage message : messages) {
+			if (message instanceof OFPortMod) {
+				portMods.incrementAndGet();
+				lastPortModTime.set(System.nanoTime());
+				OFPortMod portMod = (OFPortMod) message;
+				if ((portMod.getMask() & OFPortConfig.OFPPC_NO_FLOOD.getValue()) != 0) {
+					setPortOpen(sw.getId(), portMod.getPortNumber(), (portMod.getConfig() & OFPortConfig.OFPPC_NO_FLOOD.getValue()) == 0);
+				}
+			} else if (message instanceof OFBarrierRequest) {
+				OFBarrierReply reply = new OFBarrierReply();
+				reply.setXid(message.getXid());
+				for (IOFMessageListener listener : barrierListeners) listener.receive(sw, reply, null);
+			}
+		}
+	}
+
+	private ImmutablePort setPortConfig(long switchId, short portNum, boolean open) {
+		Map<Short, ImmutablePort> ports = switchPorts.get(switchId);
+		ImmutablePort.Builder builder = new ImmutablePort.Builder(ports.get(portNum));
+		Set<OFPortConfig> config = EnumSet.noneOf(OFPortConfig.class);
+		if (!open) config.add(OFPortConfig.OFPPC_NO_FLOOD);
+		ImmutablePort port = builder.setConfig(config).build();
+		ports.put(portNum, port);
+		return port;
+	}
+
+	private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+		return type.cast(Proxy.newProxyInstance(SimulatedNetwork.class.getClassLoader(), new Class<?>[] { type }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				// Proxies are only equal to themselves
+				if (method.getDeclaringClass() == Object.class) {
+					if (method.getName().equals("equals")) return proxy == args[0];
+					if (method.getName().equals("hashCode")) return System.identityHashCode(proxy);
+					return "Simulated " + type.getSimpleName();
+				}
+				return handler.invoke(proxy, method, args);
+			}
+		}));
+	}
+
+	private static Object defaultValue(Method method) {
+		Class<?> type = method.getReturnType();
+		if (!type.isPrimitive() || type == void.class) return null;
+		if (type == boolean.class) return false;
+		if (type == char.class) return (char) 0;
+		if (type == byte.class) return (byte) 0;
+		if (type == short.class) return (short) 0;
+		if (type == int.class) return 0;
+		if (type == long.class) return 0L;
+		if (type == float.class) return 0f;
+		return 0d;
+	}
+
+}
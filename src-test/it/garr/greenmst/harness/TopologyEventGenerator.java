@@ -0,0 +1,112 @@
+package it.garr.greenmst.harness;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LDUpdate;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.LinkType;
+import net.floodlightcontroller.linkdiscovery.ILinkDiscovery.UpdateOperation;
+import net.floodlightcontroller.routing.Link;
+
+/**
+ * Generates streams of link discovery updates over a topology.
+ *
+ * Each stream is a list of batches, delivered one at a time as the topology service
+ * would: a mass bring-up of every link, random link flaps (removal followed by the
+ * link coming back) and the loss of a switch with all of its links. Streams are
+ * seeded, so that every run replays the same events.
+ *
+ * @see it.garr.greenmst.harness.EndToEndHarness
+ *
+ */
+
+public class TopologyEventGenerator {
+
+	private final List<Link> links;
+	private final Random random;
+
+	public TopologyEventGenerator(List<Link> links, long seed) {
+		this.links = links;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Builds the links of a k-ary fat-tree (k even), with switches numbered from 1 and ports assigned in order.
+	 */
+	public static List<Link> fatTree(int k) {
+		int half = k / 2, cores = half * half;
+		short[] nextPort = new short[cores + k * k + 1];
+		List<Link> links = new ArrayList<Link>();
+
+		for (int pod = 0; pod < k; ++pod) {
+			int aggregation = cores + pod * k + 1, edge = aggregation + half;
+			for (int a = 0; a < half; ++a) {
+				for (int e = 0; e < half; ++e) links.add(link(nextPort, aggregation + a, edge + e));
+				for (int c = 0; c < half; ++c) links.add(link(nextPort, aggregation + a, a * half + c + 1));
+			}
+		}
+		return links;
+	}
+
+	public static TreeSet<Long> switchesOf(List<Link> links) {
+		TreeSet<Long> switches = new TreeSet<Long>();
+		for (Link link : links) {
+			switches.add(link.getSrc());
+			switches.add(link.getDst());
+		}
+		return switches;
+	}
+
+	/**
+	 * Every link comes up, in random order and in batches of batchSize updates.
+	 */
+	public List<List<LDUpdate>> bringUp(int batchSize) {
+		List<Link> shuffled = new ArrayList<Link>(links);
+		Collections.shuffle(shuffled, random);
+
+		List<List<LDUpdate>> batches = new ArrayList<List<LDUpdate>>();
+		for (int i = 0; i < shuffled.size(); i += batchSize) {
+			List<LDUpdate> batch = new ArrayList<LDUpdate>();
+			for (Link link : shuffled.subList(i, Math.min(i + batchSize, shuffled.size()))) batch.add(update(link, UpdateOperation.LINK_UPDATED));
+			batches.add(batch);
+		}
+		return batches;
+	}
+
+	/**
+	 * Random links go down and come back up, one update per batch.
+	 */
+	public List<List<LDUpdate>> flaps(int count) {
+		List<List<LDUpdate>> batches = new ArrayList<List<LDUpdate>>();
+		for (int i = 0; i < count; ++i) {
+			Link link = links.get(random.nextInt(links.size()));
+			batches.add(Collections.singletonList(update(link, UpdateOperation.LINK_REMOVED)));
+			batches.add(Collections.singletonList(update(link, UpdateOperation.LINK_UPDATED)));
+		}
+		return batches;
+	}
+
+	/**
+	 * The switch disappears: a single batch removing each of its links, then the switch itself.
+	 */
+	public List<List<LDUpdate>> switchLoss(long switchId) {
+		List<LDUpdate> batch = new ArrayList<LDUpdate>();
+		for (Link link : links) {
+			if (link.getSrc() == switchId || link.getDst() == switchId) batch.add(update(link, UpdateOperation.LINK_REMOVED));
+		}
+		batch.add(new LDUpdate(switchId, UpdateOperation.SWITCH_REMOVED));
+		return Collections.singletonList(batch);
+	}
+
+	private static LDUpdate update(Link link, UpdateOperation operation) {
+		return new LDUpdate(link.getSrc(), link.getSrcPort(), link.getDst(), link.getDstPort(), LinkType.DIRECT_LINK, operation);
+	}
+
+	private static Link link(short[] nextPort, int src, int dst) {
+		return new Link(src, ++nextPort[src], dst, ++nextPort[dst]);
+	}
+
+}
@@ -1,6 +1,14 @@
 package it.garr.greenmst.tests;
 
+import it.garr.greenmst.algorithms.DisjointSetTest;
+import it.garr.greenmst.algorithms.DynamicMinimumSpanningTreeTest;
+import it.garr.greenmst.algorithms.EdgeCostSorterTest;
+import it.garr.greenmst.algorithms.IndexedDaryHeapTest;
+import it.garr.greenmst.algorithms.IslandPartitionTest;
 import it.garr.greenmst.algorithms.KruskalAlgorithmTest;
+import it.garr.greenmst.algorithms.ParallelBoruvkaAlgorithmTest;
+import it.garr.greenmst.algorithms.PrimAlgorithmTest;
+import it.garr.greenmst.algorithms.SwitchIndexTest;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -11,7 +19,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @RunWith(Suite.class)
-@SuiteClasses({ KruskalAlgorithmTest.class })
+@SuiteClasses({ KruskalAlgorithmTest.class, DisjointSetTest.class, EdgeCostSorterTest.class, DynamicMinimumSpanningTreeTest.class, PrimAlgorithmTest.class, IndexedDaryHeapTest.class, ParallelBoruvkaAlgorithmTest.class, SwitchIndexTest.class, IslandPartitionTest.class })
 public class GreenMSTAlgorithmSuite {
 	protected static Logger logger = LoggerFactory.getLogger(GreenMSTTestSuite.class);
 
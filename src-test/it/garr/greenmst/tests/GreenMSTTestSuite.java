@@ -1,6 +1,19 @@
 package it.garr.greenmst.tests;
 
+import it.garr.greenmst.ChurnDampingTest;
+import it.garr.greenmst.CostFileWatcherTest;
+import it.garr.greenmst.GreenMSTAllocationTest;
 import it.garr.greenmst.GreenMSTTest;
+import it.garr.greenmst.PortModDispatcherTest;
+import it.garr.greenmst.PortReconciliationTest;
+import it.garr.greenmst.SnapshotStoreTest;
+import it.garr.greenmst.TrafficCostProviderTest;
+import it.garr.greenmst.harness.EndToEndHarnessTest;
+import it.garr.greenmst.types.LatencyHistogramTest;
+import it.garr.greenmst.types.LinkCostMapTest;
+import it.garr.greenmst.types.TopologyCostsTest;
+import it.garr.greenmst.types.TopologyDeltaHistoryTest;
+import it.garr.greenmst.web.serializers.TopologyCostsJSONDeserializerTest;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -11,7 +24,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 @RunWith(Suite.class)
-@SuiteClasses({ GreenMSTTest.class, GreenMSTAlgorithmSuite.class })
+@SuiteClasses({ GreenMSTTest.class, GreenMSTAllocationTest.class, PortModDispatcherTest.class, PortReconciliationTest.class, ChurnDampingTest.class, SnapshotStoreTest.class, CostFileWatcherTest.class, TrafficCostProviderTest.class, LinkCostMapTest.class, TopologyCostsTest.class, TopologyDeltaHistoryTest.class, TopologyCostsJSONDeserializerTest.class, LatencyHistogramTest.class, EndToEndHarnessTest.class, GreenMSTAlgorithmSuite.class })
 public class GreenMSTTestSuite {
 	protected static Logger logger = LoggerFactory.getLogger(GreenMSTTestSuite.class);
 
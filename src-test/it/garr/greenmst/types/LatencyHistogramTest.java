@@ -0,0 +1,48 @@
+package it.garr.greenmst.types;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LatencyHistogramTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(LatencyHistogramTest.class);
+	
+	@Test
+	public void testBuckets() throws Exception {
+		long previous = -1;
+		for (long value = 0; value < 1000000; value += 1 + value / 100) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			assertTrue("Value does not exceed the highest value of its bucket.", value <= LatencyHistogram.highestValueOf(bucket));
+			assertTrue("Value exceeds the highest value of the previous bucket.", bucket == 0 || value > LatencyHistogram.highestValueOf(bucket - 1));
+			assertTrue("Buckets follow the order of values.", bucket >= previous);
+			previous = bucket;
+		}
+		assertTrue("The largest value has a bucket.", LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)) == Long.MAX_VALUE);
+		
+		logger.info("Ended testBuckets.");
+	}
+	
+	@Test
+	public void testPercentiles() throws Exception {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals("Empty histogram has no percentiles.", 0, histogram.getValueAtPercentile(50));
+		
+		for (long value = 1; value <= 10000; ++value) histogram.record(value * 1000);
+		
+		assertEquals("Every value is counted.", 10000, histogram.getCount());
+		assertEquals("Maximum is exact.", 10000000, histogram.getMax());
+		assertEquals("Mean is exact.", 5000500.0, histogram.getMean(), 0.001);
+		for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+			double expected = percentile * 100000;
+			double relativeError = Math.abs(histogram.getValueAtPercentile(percentile) - expected) / expected;
+			assertTrue("Percentile " + percentile + " is within the bucket precision.", relativeError <= 1.0 / 16);
+		}
+		assertEquals("The 100th percentile is the maximum.", histogram.getMax(), histogram.getValueAtPercentile(100));
+		
+		logger.info("Ended testPercentiles.");
+	}
+	
+}
@@ -0,0 +1,59 @@
+package it.garr.greenmst.types;
+
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class LinkCostMapTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(LinkCostMapTest.class);
+	
+	@Test
+	public void testPutAndGet() throws Exception {
+		LinkCostMap map = new LinkCostMap();
+		
+		assertEquals("Missing link returns the default value.", 7, map.get(1L, 2L, 7));
+		assertEquals("New link returns the default value as previous.", -1, map.put(2L, 1L, 5, -1));
+		assertEquals("Link cost is the same in both directions.", 5, map.get(1L, 2L, 7));
+		assertEquals("Link cost is the same in both directions.", 5, map.get(2L, 1L, 7));
+		assertEquals("Overwritten link returns the previous value.", 5, map.put(1L, 2L, 3, -1));
+		assertEquals("Map holds a single link.", 1, map.size());
+		
+		int slot = map.nextSlot(-1);
+		assertEquals("Key is rendered with normalized switch order.", "1,2", map.keyAt(slot));
+		assertEquals("There are no more slots.", -1, map.nextSlot(slot));
+		
+		logger.info("Ended testPutAndGet.");
+	}
+	
+	@Test
+	public void testGrow() throws Exception {
+		LinkCostMap map = new LinkCostMap();
+		for (long i = 0; i < 5000; ++i) map.put(i, i + 1, (int) i, 0);
+		
+		assertEquals("All links are stored.", 5000, map.size());
+		for (long i = 0; i < 5000; ++i) {
+			assertEquals("Link cost survives rehashing.", (int) i, map.get(i + 1, i, -1));
+		}
+		
+		logger.info("Ended testGrow.");
+	}
+	
+	@Test
+	public void testStringKeys() throws Exception {
+		TopologyCosts costs = new TopologyCosts();
+		HashMap<String, Integer> values = new HashMap<String, Integer>();
+		values.put("20,10", 42);
+		costs.setCostsValues(values);
+		
+		assertEquals("Cost loaded from string key is found.", 42, costs.getCost(10L, 20L));
+		assertEquals("Cost is exported with normalized key.", Integer.valueOf(42), costs.getCosts().get("10,20"));
+		
+		logger.info("Ended testStringKeys.");
+	}
+	
+}
@@ -0,0 +1,108 @@
+package it.garr.greenmst.types;
+
+import it.garr.greenmst.TopologyCostsLoader;
+
+import java.util.HashMap;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TopologyCostsTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(TopologyCostsTest.class);
+	
+	@Test
+	public void testUpdateIsDetached() throws Exception {
+		TopologyCosts shared = TopologyCostsLoader.getTopologyCosts();
+		long version = shared.getVersion();
+		
+		TopologyCosts update = new TopologyCosts(new LinkCostMap());
+		HashMap<String, Integer> values = new HashMap<String, Integer>();
+		values.put(" 20010 , 20020 ", 42);
+		update.setCostsValues(values);
+		
+		assertTrue("The update is detached.", update.isUpdate());
+		assertFalse("The shared costs are not an update.", shared.isUpdate());
+		assertEquals("The update holds the cost.", 42, update.getCost(20020L, 20010L));
+		assertFalse("The shared costs are unchanged.", shared.getCostMap().containsKey(20010L, 20020L));
+		assertEquals("The version is unchanged.", version, shared.getVersion());
+		
+		logger.info("Ended testUpdateIsDetached.");
+	}
+	
+	@Test
+	public void testPutAllPublishesNewMap() throws Exception {
+		TopologyCosts shared = TopologyCostsLoader.getTopologyCosts();
+		LinkCostMap previous = shared.getCostMap();
+		long version = shared.getVersion();
+		int previousCost = shared.getCost(1L, 2L);
+		
+		LinkCostMap costs = new LinkCostMap();
+		costs.put(1L, 2L, previousCost + 10, TopologyCosts.DEFAULT_COST);
+		for (long i = 0; i < 100; ++i) costs.put(20100L + i, 20200L + i, (int) i + 1, TopologyCosts.DEFAULT_COST);
+		
+		try {
+			shared.putAll(new TopologyCosts(costs));
+			
+			assertEquals("The update has been applied.", previousCost + 10, shared.getCost(2L, 1L));
+			assertEquals("New links are added.", 100, shared.getCost(20299L, 20199L));
+			assertEquals("The version has been incremented once.", version + 1, shared.getVersion());
+			assertEquals("The previous map is left untouched for its readers.", previousCost, previous.get(1L, 2L, -1));
+			assertFalse("The previous map does not see new links.", previous.containsKey(20100L, 20200L));
+			
+			shared.putAll(new TopologyCosts(new LinkCostMap()));
+			assertEquals("An empty update changes nothing.", version + 1, shared.getVersion());
+		} finally {
+			shared.setCost(1L, 2L, previousCost);
+		}
+		
+		logger.info("Ended testPutAllPublishesNewMap.");
+	}
+	
+	@Test
+	public void testSharedCostsAreReadOnly() throws Exception {
+		TopologyCosts shared = TopologyCostsLoader.getTopologyCosts();
+		LinkCostMap previous = shared.getCostMap();
+		long version = shared.getVersion();
+		int previousCost = shared.getCost(1L, 2L);
+		
+		try {
+			previous.put(1L, 2L, previousCost + 1, TopologyCosts.DEFAULT_COST);
+			fail("The shared map cannot be changed in place.");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+		
+		try {
+			shared.setCost(1L, 2L, previousCost + 1);
+			assertEquals("The cost has been changed.", previousCost + 1, shared.getCost(1L, 2L));
+			assertEquals("The version has been incremented.", version + 1, shared.getVersion());
+			assertEquals("The previous map is left untouched for its readers.", previousCost, previous.get(1L, 2L, -1));
+		} finally {
+			shared.setCost(1L, 2L, previousCost);
+		}
+		
+		logger.info("Ended testSharedCostsAreReadOnly.");
+	}
+	
+	@Test
+	public void testInvalidKeys() throws Exception {
+		LinkCostMap costs = new LinkCostMap();
+		String[] keys = { "10", "10,", ",10", "10,2x", "-1,2" };
+		for (String key : keys) {
+			try {
+				TopologyCosts.putCost(costs, key, 1);
+				fail("Key \"" + key + "\" is not valid.");
+			} catch (IllegalArgumentException e) {
+				// Expected, NumberFormatException included
+			}
+		}
+		assertEquals("Invalid keys add no cost.", 0, costs.size());
+		
+		logger.info("Ended testInvalidKeys.");
+	}
+	
+}
@@ -0,0 +1,128 @@
+package it.garr.greenmst.types;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class TopologyDeltaHistoryTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(TopologyDeltaHistoryTest.class);
+	
+	private TopologySnapshot snapshot = TopologySnapshot.EMPTY;
+	
+	@Test
+	public void testBetween() throws Exception {
+		HashSet<Edge> topoEdges = new HashSet<Edge>(), redundantEdges = new HashSet<Edge>();
+		topoEdges.add(Edge.valueOf(1L, 1, 2L, 1));
+		topoEdges.add(Edge.valueOf(1L, 2, 3L, 1));
+		topoEdges.add(Edge.valueOf(2L, 2, 3L, 2));
+		redundantEdges.add(Edge.valueOf(1L, 2, 3L, 1));
+		TopologySnapshot first = TopologySnapshot.build(TopologySnapshot.EMPTY, 1, topoEdges, redundantEdges);
+		
+		TopologyDelta delta = TopologyDelta.between(TopologySnapshot.EMPTY, first);
+		assertEquals("The delta is tagged with the new version.", first.getVersion(), delta.getVersion());
+		assertEquals("Tree links are opened.", 2, delta.getOpened().size());
+		assertEquals("Redundant links are closed.", Collections.singletonList(Edge.valueOf(1L, 2, 3L, 1).toLink()), delta.getClosed());
+		assertTrue("Nothing is removed.", delta.getRemoved().isEmpty());
+		
+		// 2-3 disappears and 1-3 takes its place in the tree
+		topoEdges.remove(Edge.valueOf(2L, 2, 3L, 2));
+		redundantEdges.clear();
+		TopologySnapshot second = TopologySnapshot.build(first, 1, topoEdges, redundantEdges);
+		
+		delta = TopologyDelta.between(first, second);
+		assertEquals("The redundant link is opened.", Collections.singletonList(Edge.valueOf(1L, 2, 3L, 1).toLink()), delta.getOpened());
+		assertTrue("Nothing is closed.", delta.getClosed().isEmpty());
+		assertEquals("The lost link is removed.", Collections.singletonList(Edge.valueOf(2L, 2, 3L, 2).toLink()), delta.getRemoved());
+		assertTrue("Costs are not compared within the same cost version.", delta.getCostChanges().isEmpty());
+		
+		assertTrue("Unchanged snapshots give an empty delta.", TopologyDelta.between(second, TopologySnapshot.build(second, 1, topoEdges, redundantEdges)).isEmpty());
+		
+		logger.info("Ended testBetween.");
+	}
+	
+	@Test
+	public void testSinceAndEviction() throws Exception {
+		TopologyDeltaHistory history = new TopologyDeltaHistory(4);
+		assertEquals("An empty history has no deltas to return.", 0, history.since(0).size());
+		
+		for (int i = 0; i < 6; ++i) history.add(nextDelta());
+		
+		assertEquals("The latest version is the one of the last delta.", 6, history.getLatestVersion());
+		assertEquals("Only the last deltas are retained.", 3, history.getOldestVersion());
+		
+		List<TopologyDelta> deltas = history.since(3);
+		assertEquals("Deltas following the version are returned.", 3, deltas.size());
+		assertEquals("Deltas are returned oldest first.", 4, deltas.get(0).getVersion());
+		assertEquals("Deltas are returned oldest first.", 6, deltas.get(2).getVersion());
+		assertEquals("A reader can resume from just before the oldest delta.", 4, history.since(2).size());
+		assertEquals("An up to date reader gets no delta.", 0, history.since(6).size());
+		assertNull("A reader behind the history has to read the snapshot again.", history.since(1));
+		assertNull("A version from the future is unknown.", history.since(7));
+		
+		try {
+			history.add(TopologyDelta.between(TopologySnapshot.EMPTY, TopologySnapshot.EMPTY));
+			fail("Versions cannot go back.");
+		} catch (IllegalArgumentException e) {
+			// Expected
+		}
+		
+		logger.info("Ended testSinceAndEviction.");
+	}
+	
+	@Test
+	public void testGapDropsOlderDeltas() throws Exception {
+		TopologyDeltaHistory history = new TopologyDeltaHistory(8);
+		history.add(nextDelta());
+		history.add(nextDelta());
+		nextDelta();
+		history.add(nextDelta());
+		
+		assertEquals("Deltas before the gap are dropped.", 4, history.getOldestVersion());
+		assertNull("Readers before the gap have to read the snapshot again.", history.since(2));
+		assertEquals("Readers after the gap resume.", 1, history.since(3).size());
+		
+		logger.info("Ended testGapDropsOlderDeltas.");
+	}
+	
+	@Test
+	public void testAwaitAfter() throws Exception {
+		final TopologyDeltaHistory history = new TopologyDeltaHistory(4);
+		final TopologyDelta delta = nextDelta();
+		
+		assertEquals("Waiting times out when nothing is added.", 0, history.awaitAfter(0, 10));
+		
+		Thread writer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				} catch (InterruptedException e) {
+					return;
+				}
+				history.add(delta);
+			}
+		};
+		writer.start();
+		
+		long start = System.currentTimeMillis();
+		assertEquals("The waiting reader is woken up by the new delta.", 1, history.awaitAfter(0, 10000));
+		assertTrue("The reader did not wait for the whole timeout.", System.currentTimeMillis() - start < 5000);
+		writer.join();
+		
+		logger.info("Ended testAwaitAfter.");
+	}
+	
+	private TopologyDelta nextDelta() {
+		TopologySnapshot previous = snapshot;
+		snapshot = TopologySnapshot.build(previous, 0, Collections.<Edge>emptySet(), Collections.<Edge>emptySet());
+		return TopologyDelta.between(previous, snapshot);
+	}
+	
+}
@@ -0,0 +1,80 @@
+package it.garr.greenmst.web.serializers;
+
+import it.garr.greenmst.types.LinkCostMap;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+
+public class TopologyCostsJSONDeserializerTest extends TestCase {
+	
+	protected static Logger logger = LoggerFactory.getLogger(TopologyCostsJSONDeserializerTest.class);
+	
+	private static final JsonFactory factory = new JsonFactory();
+	
+	@Test
+	public void testReadObject() throws Exception {
+		LinkCostMap costs = new LinkCostMap();
+		int count = read("{\"1,2\": 5, \"3,1\": \"7\", \"2,3\": \"\"}", costs);
+		
+		assertEquals("Empty costs are skipped.", 2, count);
+		assertEquals("Numeric cost is read.", 5, costs.get(2L, 1L, -1));
+		assertEquals("Textual cost is read.", 7, costs.get(1L, 3L, -1));
+		assertFalse("Empty cost is not set.", costs.containsKey(2L, 3L));
+		
+		logger.info("Ended testReadObject.");
+	}
+	
+	@Test
+	public void testReadNDJSON() throws Exception {
+		LinkCostMap costs = new LinkCostMap();
+		int count = read("{\"1,2\": 5}\n{\"2,3\": 6, \"1,2\": 8}\n\n{}\n", costs);
+		
+		assertEquals("Costs of every line are read.", 3, count);
+		assertEquals("Later lines override earlier ones.", 8, costs.get(1L, 2L, -1));
+		assertEquals("Costs of following lines are read.", 6, costs.get(2L, 3L, -1));
+		
+		logger.info("Ended testReadNDJSON.");
+	}
+	
+	@Test
+	public void testReadArray() throws Exception {
+		LinkCostMap costs = new LinkCostMap();
+		int count = read("[{\"1,2\": 10, \"1,3\": 40}, {\"2,3\": 30}]", costs);
+		
+		assertEquals("Costs of every object of the array are read.", 3, count);
+		assertEquals("Costs of following objects are read.", 30, costs.get(2L, 3L, -1));
+		
+		logger.info("Ended testReadArray.");
+	}
+	
+	@Test
+	public void testInvalidCost() throws Exception {
+		try {
+			read("{\"1,2\": 5}\n{\"2,3\": true}", new LinkCostMap());
+			fail("A boolean cost is not valid.");
+		} catch (IOException e) {
+			// Expected
+		}
+		
+		logger.info("Ended testInvalidCost.");
+	}
+	
+	private static int read(String json, LinkCostMap costs) throws IOException {
+		JsonParser jParser = factory.createParser(new StringReader(json));
+		try {
+			return TopologyCostsJSONDeserializer.read(jParser, costs);
+		} finally {
+			jParser.close();
+		}
+	}
+	
+}
@@ -0,0 +1,187 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.TopologyCosts;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the link costs in sync with an external file in the nodecosts.properties format.
+ *
+ * The directory of the file is watched with a WatchService. Every time the file is created
+ * or modified it is read line by line into a LinkCostMap, and only the links whose cost
+ * differs from the effective one are applied, as a single detached update, through
+ * {@link IGreenMSTService#setCosts(TopologyCosts)}. Links dropped from the file go back to
+ * the default cost. A file that cannot be parsed is not applied at all.
+ *
+ * @see it.garr.greenmst.GreenMST
+ * @see it.garr.greenmst.types.TopologyCosts
+ *
+ */
+
+public class CostFileWatcher implements Runnable {
+
+	protected static Logger logger = LoggerFactory.getLogger(CostFileWatcher.class);
+
+	// Events are coalesced until none arrived for SETTLE_DELAY milliseconds, so that a file written in several steps is read once
+	public static final long SETTLE_DELAY = 100;
+
+	private final Path file;
+	private final IGreenMSTService service;
+	// Costs read from the file the last time it has been applied
+	private LinkCostMap fileCosts = new LinkCostMap();
+	private WatchService watchService = null;
+	private Thread thread = null;
+
+	public CostFileWatcher(Path file, IGreenMSTService service) {
+		this.file = file.toAbsolutePath();
+		this.service = service;
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Applies the current content of the file and starts watching it.
+	 *
+	 * @throws IOException if the directory of the file cannot be watched.
+	 */
+	public synchronized void start() throws IOException {
+		watchService = file.getFileSystem().newWatchService();
+		file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+		reload();
+
+		thread = new Thread(this, "GreenMST-costs");
+		thread.setDaemon(true);
+		thread.start();
+		logger.info("Watching {} for link cost changes.", file);
+	}
+
+	public synchronized void stop() {
+		if (thread == null) return;
+		thread.interrupt();
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			logger.error("Error closing the watch service of " + file + ".", e);
+		}
+		thread = null;
+	}
+
+	@Override
+	public void run() {
+		try {
+			while (true) {
+				if (!drain(watchService.take())) continue;
+
+				// Wait for the writer to be done
+				WatchKey key;
+				while ((key = watchService.poll(SETTLE_DELAY, TimeUnit.MILLISECONDS)) != null) drain(key);
+				reload();
+			}
+		} catch (InterruptedException e) {
+			logger.debug("Stopped watching {}.", file);
+		} catch (ClosedWatchServiceException e) {
+			logger.debug("Stopped watching {}.", file);
+		}
+	}
+
+	/**
+	 * Consumes the events of the key, returning true if one of them concerns the file.
+	 */
+	private boolean drain(WatchKey key) {
+		boolean touched = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) touched = true;
+		}
+		if (!key.reset()) logger.error("Directory of {} is not accessible any more, link costs will not be reloaded.", file);
+		return touched;
+	}
+
+	/**
+	 * Reads the file and applies the link costs that differ from the effective ones.
+	 *
+	 * @return the number of link costs changed, or -1 if the file could not be read.
+	 */
+	public synchronized int reload() {
+		LinkCostMap read = null;
+		try {
+			read = read(file);
+		} catch (NoSuchFileException e) {
+			logger.warn("Link cost file {} does not exist.", file);
+			return -1;
+		} catch (IOException e) {
+			logger.error("Error reading link cost file " + file + ", costs not changed.", e);
+			return -1;
+		} catch (IllegalArgumentException e) {
+			logger.error("Invalid link cost file " + file + ", costs not changed.", e);
+			return -1;
+		}
+
+		LinkCostMap current = service.getCosts().getCostMap();
+		LinkCostMap changes = new LinkCostMap();
+		for (int slot = read.nextSlot(-1); slot >= 0; slot = read.nextSlot(slot)) {
+			long source = read.firstAt(slot), destination = read.secondAt(slot);
+			int cost = read.valueAt(slot);
+			if (current.get(source, destination, TopologyCosts.DEFAULT_COST) != cost) changes.put(source, destination, cost, TopologyCosts.DEFAULT_COST);
+		}
+		for (int slot = fileCosts.nextSlot(-1); slot >= 0; slot = fileCosts.nextSlot(slot)) {
+			long source = fileCosts.firstAt(slot), destination = fileCosts.secondAt(slot);
+			if (!read.containsKey(source, destination) && current.get(source, destination, TopologyCosts.DEFAULT_COST) != TopologyCosts.DEFAULT_COST) {
+				changes.put(source, destination, TopologyCosts.DEFAULT_COST, TopologyCosts.DEFAULT_COST);
+			}
+		}
+		fileCosts = read;
+
+		logger.info("Read {} link costs from {}, {} changed.", new Object[] { read.size(), file, changes.size() });
+		if (changes.size() > 0) service.setCosts(new TopologyCosts(changes));
+		return changes.size();
+	}
+
+	/**
+	 * Parses a file of "source,destination=cost" lines, skipping blank lines and comments.
+	 *
+	 * @throws IllegalArgumentException if a line is not a valid link cost.
+	 */
+	public static LinkCostMap read(Path file) throws IOException {
+		LinkCostMap costs = new LinkCostMap();
+		BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1);
+		try {
+			String line;
+			for (int lineNumber = 1; (line = reader.readLine()) != null; ++lineNumber) {
+				int start = 0;
+				while (start < line.length() && line.charAt(start) <= ' ') ++start;
+				if (start == line.length() || line.charAt(start) == '#' || line.charAt(start) == '!') continue;
+
+				int separator = line.indexOf('=', start);
+				if (separator < 0) separator = line.indexOf(':', start);
+				if (separator < 0) throw new IllegalArgumentException("Line " + lineNumber + " is not in the form source,destination=cost.");
+
+				try {
+					TopologyCosts.putCost(costs, line.substring(start, separator), Integer.parseInt(line.substring(separator + 1).trim()));
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return costs;
+	}
+
+}
@@ -1,12 +1,28 @@
 package it.garr.greenmst;
 
+import it.garr.greenmst.algorithms.DisjointSet;
+import it.garr.greenmst.algorithms.DynamicMinimumSpanningTree;
 import it.garr.greenmst.algorithms.IMinimumSpanningTreeAlgorithm;
+import it.garr.greenmst.algorithms.IslandPartition;
 import it.garr.greenmst.algorithms.KruskalAlgorithm;
+import it.garr.greenmst.algorithms.MinimumSpanningTree;
+import it.garr.greenmst.algorithms.ParallelBoruvkaAlgorithm;
+import it.garr.greenmst.algorithms.PrimAlgorithm;
+import it.garr.greenmst.algorithms.SwitchIndex;
+import it.garr.greenmst.types.Edge;
+import it.garr.greenmst.types.LinkCostMap;
 import it.garr.greenmst.types.LinkWithCost;
 import it.garr.greenmst.types.TopologyCosts;
+import it.garr.greenmst.types.TopologyDelta;
+import it.garr.greenmst.types.TopologyDeltaHistory;
+import it.garr.greenmst.types.TopologySnapshot;
 import it.garr.greenmst.web.GreenMSTWebRoutable;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -14,9 +30,22 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import net.floodlightcontroller.core.IFloodlightProviderService;
 import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.IOFSwitchListener;
+import net.floodlightcontroller.core.ImmutablePort;
 import net.floodlightcontroller.core.module.FloodlightModuleContext;
 import net.floodlightcontroller.core.module.FloodlightModuleException;
 import net.floodlightcontroller.core.module.IFloodlightModule;
@@ -27,9 +56,7 @@ import net.floodlightcontroller.restserver.IRestApiService;
 import net.floodlightcontroller.topology.ITopologyListener;
 import net.floodlightcontroller.topology.ITopologyService;
 
-import org.openflow.protocol.OFPhysicalPort.OFPortConfig;
-import org.openflow.protocol.OFPortMod;
-import org.openflow.util.HexString;
+import org.openflow.protocol.OFType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,12 +70,13 @@ import org.slf4j.LoggerFactory;
  * @version 0.8
  * @see net.floodlightcontroller.core.module.IFloodlightModule
  * @see net.floodlightcontroller.topology.ITopologyListener
+ * @see net.floodlightcontroller.core.IOFSwitchListener
  * @see it.garr.greenmst.types.LinkWithCost
  * @see it.garr.greenmst.IGreenMSTService
  *
  */
 
-public class GreenMST implements IFloodlightModule, IGreenMSTService, ITopologyListener {
+public class GreenMST implements IFloodlightModule, IGreenMSTService, ITopologyListener, IOFSwitchListener {
 	
 	protected static Logger logger = LoggerFactory.getLogger(GreenMST.class);
 	
@@ -58,141 +86,683 @@ public class GreenMST implements IFloodlightModule, IGreenMSTService, ITopologyL
 	protected ITopologyService topology = null;
 	
 	// Data structures for caching algorithm results
-	protected HashSet<LinkWithCost> topoEdges = new HashSet<LinkWithCost>();
-	protected HashSet<LinkWithCost> redundantEdges = new HashSet<LinkWithCost>();
+	protected HashSet<Edge> topoEdges = new HashSet<Edge>();
+	protected HashSet<Edge> redundantEdges = new HashSet<Edge>();
+	// Ids of the edges currently closed
+	protected BitSet redundantIds = new BitSet();
+	// State published after each recomputation, read without locking
+	protected volatile TopologySnapshot snapshot = TopologySnapshot.EMPTY;
+	protected long publishedGeneration = -1;
 	
-	private IMinimumSpanningTreeAlgorithm algorithm = new KruskalAlgorithm();
+	// Buffers of the recomputations, reused so that a recomputation changing nothing does not allocate.
+	// topologyCopy is read outside topologyLock, only by updateLinks() on the recompute thread.
+	// It lists the links by increasing id, the tie-break between equal costs shared with dynamicTree.
+	protected final ArrayList<Edge> topologyCopy = new ArrayList<Edge>();
+	protected final BitSet topologyIds = new BitSet();
+	protected BitSet newRedundantIds = new BitSet();
+	protected final BitSet changedIds = new BitSet();
+	protected final ArrayList<Edge> closedEdges = new ArrayList<Edge>(), openedEdges = new ArrayList<Edge>();
+	
+	// A full computation only runs the algorithm on the islands (connected components) whose links changed,
+	// the others keep the forest of dynamicTree. Like topologyCopy, these are only used by updateLinks().
+	protected final IslandPartition islands = new IslandPartition();
+	protected final ArrayList<List<Edge>> changedIslands = new ArrayList<List<Edge>>();
+	protected final ArrayList<Edge> keptTreeEdges = new ArrayList<Edge>();
+	// Changed islands beyond the first are computed on islandThreads workers, each with its own algorithm instance
+	public static final int DEFAULT_ISLAND_THREADS = Runtime.getRuntime().availableProcessors();
+	protected int islandThreads = DEFAULT_ISLAND_THREADS;
+	protected ExecutorService islandExecutor = null;
+	protected final ThreadLocal<IMinimumSpanningTreeAlgorithm> islandAlgorithm = new ThreadLocal<IMinimumSpanningTreeAlgorithm>() {
+		@Override
+		protected IMinimumSpanningTreeAlgorithm initialValue() {
+			return newAlgorithm();
+		}
+	};
+	
+	// Port mods are sent in per-switch batches, paced at portModRate mods per second with bursts of portModBurst
+	protected PortModDispatcher portModDispatcher = null;
+	// Switches that connected and links that appeared since the last recomputation, whose ports are reconciled with the tree
+	protected final HashSet<Long> reconcileSwitches = new HashSet<Long>();
+	protected final HashSet<Edge> reconcileEdges = new HashSet<Edge>();
+	
+	// Counters and latencies exposed by the stats REST resources
+	protected final GreenMSTStats stats = new GreenMSTStats();
+	
+	// Latest changes of the published snapshots, streamed by the deltas REST resource
+	protected TopologyDeltaHistory deltaHistory = new TopologyDeltaHistory();
+	
+	// Algorithm used for full computations, selected with the algorithm option (kruskal, prim or boruvka)
+	protected IMinimumSpanningTreeAlgorithm algorithm = new KruskalAlgorithm();
+	// Pool of the boruvka algorithm, with parallelThreads workers, created by init and stopped by shutDown()
+	public static final int DEFAULT_PARALLEL_THREADS = Runtime.getRuntime().availableProcessors();
+	protected ForkJoinPool parallelPool = null;
+	protected DynamicMinimumSpanningTree dynamicTree = new DynamicMinimumSpanningTree();
+	
+	// Topology events are coalesced and applied after a quiescence window (milliseconds)
+	public static final long DEFAULT_RECOMPUTE_DELAY = 200;
+	public static final long DEFAULT_RECOMPUTE_MAX_DELAY = 2000;
+	protected long recomputeDelay = DEFAULT_RECOMPUTE_DELAY;
+	protected long recomputeMaxDelay = DEFAULT_RECOMPUTE_MAX_DELAY;
+	
+	// Cost updates that may alter more than 1/FULL_RECOMPUTE_RATIO of the links are applied by a full computation
+	protected static final int FULL_RECOMPUTE_RATIO = 8;
+	
+	protected final Object topologyLock = new Object();
+	protected final AtomicLong generation = new AtomicLong();
+	protected ScheduledExecutorService recomputeExecutor = null;
+	protected ScheduledFuture<?> pendingRecompute = null;
+	protected long firstPendingChange = 0;
+	protected boolean fullRecomputePending = false;
+	
+	// The deployed state is persisted to snapshotFile and restored by startUp. Restored links
+	// that are not rediscovered within warmStartTimeout milliseconds are removed.
+	public static final long DEFAULT_WARM_START_TIMEOUT = 60000;
+	protected SnapshotStore snapshotStore = null;
+	protected long warmStartTimeout = DEFAULT_WARM_START_TIMEOUT;
+	protected final HashSet<Edge> restoredEdges = new HashSet<Edge>();
+	protected final AtomicReference<PersistedState> pendingPersist = new AtomicReference<PersistedState>();
+	
+	// Link costs are reloaded from costsFile whenever it changes, if set
+	protected CostFileWatcher costFileWatcher = null;
+	
+	// Link costs follow the traffic measured every trafficPollInterval milliseconds, if set
+	protected TrafficCostProvider trafficCostProvider = null;
+	protected long trafficPollInterval = 0;
+	
+	// A tree computed after cost changes only replaces the deployed one if it is cheaper by minImprovement
+	// cost units or by minImprovementPercent of its cost, and if none of the links it toggles has been toggled
+	// in the last holdDown milliseconds. Zero disables each check; topology changes are always deployed.
+	protected long minImprovement = 0;
+	protected long minImprovementPercent = 0;
+	protected long holdDown = 0;
+	// System.currentTimeMillis() of the last toggle of each link, by id
+	protected long[] toggleTimes = new long[0];
+	protected final ArrayList<Edge> deployedEdges = new ArrayList<Edge>();
+	protected final SwitchIndex deployedSwitches = new SwitchIndex();
+	protected final DisjointSet deployedComponents = new DisjointSet(0);
 	
 	@Override
 	public void topologyChanged(List<LDUpdate> linkUpdates) {
-		for (LDUpdate update : linkUpdates) {
-			logger.trace("Received topology update event {}.", update);
-			
-			if (update.getOperation().equals(ILinkDiscovery.UpdateOperation.LINK_REMOVED) || update.getOperation().equals(ILinkDiscovery.UpdateOperation.LINK_UPDATED)) {
-				LinkWithCost link = new LinkWithCost(update.getSrc(), update.getSrcPort(), update.getDst(), update.getDstPort());
-				logger.trace("Considering link {}.", link);
-				
-				logger.trace("topoEdges = {}.", new Object[] { printEdges(topoEdges) });
-				logger.trace("redundantEdges = {}.", new Object[] { printEdges(redundantEdges) });
+		boolean changed = false;
+		int applied = 0;
+		
+		synchronized (topologyLock) {
+			for (LDUpdate update : linkUpdates) {
+				logger.trace("Received topology update event {}.", update);
 				
-				if (update.getOperation().equals(ILinkDiscovery.UpdateOperation.LINK_REMOVED)) {
-		            if ((topoEdges.contains(link) || topoEdges.contains(link.getInverse())) && 
-		            		!redundantEdges.contains(link) && !redundantEdges.contains(link.getInverse())) {	
-		            	logger.debug("Link removed: {}.", new Object[] { link });
-		            	topoEdges.remove(link);
-		            	updateLinks();
-		            }
-				} else if(update.getOperation().equals(ILinkDiscovery.UpdateOperation.LINK_UPDATED)) {
-					if (!topoEdges.contains(link) && !topoEdges.contains(link.getInverse())) {
-						logger.debug("Link added: {}.", new Object[] { link });
-		                topoEdges.add(link);
-		                updateLinks();
-		            }
+				if (update.getOperation().equals(ILinkDiscovery.UpdateOperation.LINK_REMOVED) || update.getOperation().equals(ILinkDiscovery.UpdateOperation.LINK_UPDATED)) {
+					Edge edge = Edge.valueOf(update.getSrc(), update.getSrcPort(), update.getDst(), update.getDstPort());
+					logger.trace("Considering edge {}.", edge);
+					
+					if (logger.isTraceEnabled()) {
+						logger.trace("topoEdges = {}.", printEdges(topoEdges));
+						logger.trace("redundantEdges = {}.", printEdges(redundantEdges));
+					}
+					
+					if (update.getOperation().equals(ILinkDiscovery.UpdateOperation.LINK_REMOVED)) {
+			            if (topoEdges.contains(edge) && !redundantIds.get(edge.getId())) {	
+			            	logger.debug("Link removed: {}.", edge);
+			            	topoEdges.remove(edge);
+			            	restoredEdges.remove(edge);
+			            	dynamicTree.remove(edge);
+			            	// The replacement search gave up, the tree may have lost a link
+			            	if (dynamicTree.isStale()) fullRecomputePending = true;
+			            	changed = true;
+			            	++applied;
+			            }
+					} else if(update.getOperation().equals(ILinkDiscovery.UpdateOperation.LINK_UPDATED)) {
+						if (!topoEdges.contains(edge)) {
+							logger.debug("Link added: {}.", edge);
+			                topoEdges.add(edge);
+			                reconcileEdges.add(edge);
+			                dynamicTree.insert(edge);
+			                changed = true;
+			                ++applied;
+			            } else {
+			            	// A link restored from the snapshot has been rediscovered
+			            	restoredEdges.remove(edge);
+			            }
+					}
 				}
 			}
+			
+			if (changed) generation.incrementAndGet();
+		}
+		
+		stats.eventsReceived(linkUpdates.size(), linkUpdates.size() - applied);
+		
+		if (changed) scheduleRecompute();
+	}
+	
+	/**
+	 * Schedules the deployment of pending changes once no new change arrived for
+	 * recomputeDelay milliseconds, but never later than recomputeMaxDelay after the
+	 * first pending change. Without a scheduler (module not started) changes are
+	 * deployed right away.
+	 */
+	protected void scheduleRecompute() {
+		if (recomputeExecutor == null) {
+			recompute();
+			return;
+		}
+		
+		synchronized (topologyLock) {
+			long now = System.currentTimeMillis();
+			if (firstPendingChange == 0) firstPendingChange = now;
+			long delay = Math.min(recomputeDelay, Math.max(0, firstPendingChange + recomputeMaxDelay - now));
+			
+			if (pendingRecompute != null) pendingRecompute.cancel(false);
+			pendingRecompute = recomputeExecutor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					recompute();
+				}
+			}, delay, TimeUnit.MILLISECONDS);
 		}
 	}
 	
+	protected void recompute() {
+		boolean full;
+		synchronized (topologyLock) {
+			firstPendingChange = 0;
+			full = fullRecomputePending;
+			// Incremental changes are deployed right away, a full computation runs outside the lock
+			if (!full) applyTreeChanges();
+		}
+		
+		if (full) updateLinks();
+	}
+	
+	/**
+	 * Closes and opens the ports of the links whose redundancy changed in the
+	 * incrementally maintained MST, without recomputing the whole tree.
+	 */
+	protected void applyTreeChanges() {
+		long start = System.nanoTime();
+		closedEdges.clear();
+		openedEdges.clear();
+		dynamicTree.drainChanges(closedEdges, openedEdges);
+		long now = System.currentTimeMillis();
+		
+		for (int i = 0; i < closedEdges.size(); ++i) {
+			Edge s = closedEdges.get(i);
+			logger.trace("Closing edge {}.", s);
+			
+			modPort(s.getSrc(), s.getSrcPort(), false);
+			modPort(s.getDst(), s.getDstPort(), false);
+			redundantEdges.add(s);
+			redundantIds.set(s.getId());
+			toggled(s.getId(), now);
+		}
+		
+		for (int i = 0; i < openedEdges.size(); ++i) {
+			Edge s = openedEdges.get(i);
+			logger.trace("Opening edge {}.", s);
+			
+			modPort(s.getSrc(), s.getSrcPort(), true);
+			modPort(s.getDst(), s.getDstPort(), true);
+			redundantEdges.remove(s);
+			redundantIds.clear(s.getId());
+			toggled(s.getId(), now);
+		}
+		
+		reconcilePorts();
+		flushPortMods();
+		stats.incrementalUpdate(System.nanoTime() - start);
+		publishSnapshot();
+	}
+	
 	protected void updateLinks() {
 		logger.debug("Updating MST because of topology change...");
-		HashSet<LinkWithCost> oldRedundantEdges = this.redundantEdges,
-							  newRedundantEdges = null;
+		long startGeneration = 0;
 		
+		synchronized (topologyLock) {
+			topologyCopy.clear();
+			topologyIds.clear();
+			for (Edge edge : topoEdges) topologyIds.set(edge.getId());
+			for (int id = topologyIds.nextSetBit(0); id >= 0; id = topologyIds.nextSetBit(id + 1)) topologyCopy.add(Edge.get(id));
+			startGeneration = generation.get();
+			findChangedIslands();
+		}
+		
+		Vector<Edge> mstEdges = null;
+		long start = System.nanoTime(), algorithmTime = 0;
         try {
-        	ArrayList<LinkWithCost> allTopology = new ArrayList<LinkWithCost>(topoEdges);
-        	//allTopology.addAll(oldRedundantEdges);
-        	Vector<LinkWithCost> mstEdges = algorithm.perform(allTopology);
-        	logger.trace("mstEdges = {}.", new Object[] { printEdges(mstEdges) });
-            // In mstEdges we now have all edges of the MST
-            // topoEdges still contains a list of all edges of the known physical network   
-        	newRedundantEdges = findRedundantEdges(mstEdges);
-        	logger.trace("newRedundantEdges = {}.", new Object[] { printEdges(newRedundantEdges) });
-            // redundantEdges contains edges to be closed according to Kruskal
-            // (ie edges in topoEdges but not present in mstEdges, edges not in MSP and not already closed)
+        	mstEdges = computeForest();
+        	algorithmTime = System.nanoTime() - start;
+        	if (logger.isTraceEnabled()) logger.trace("mstEdges = {}.", printEdges(mstEdges));
         } catch (Exception e) {
-            logger.error("Error calculating MST with Kruskal ", e);
+            logger.error("Error calculating MST with " + algorithm.getClass().getSimpleName() + " ", e);
+            stats.recomputationFailed();
+            return;
         }
         
-        if (newRedundantEdges != null && newRedundantEdges.size() > 0) {
-            // Close edges in redundantEdges
-            for (LinkWithCost s : newRedundantEdges) {
-                if (!oldRedundantEdges.contains(s)) {
-                	logger.trace("Closing edge {}.", new Object[] { s });
-
+        synchronized (topologyLock) {
+        	if (generation.get() != startGeneration) {
+        		// Newer changes arrived meanwhile and have already rescheduled a computation
+        		logger.debug("MST computation superseded by newer changes, discarding it.");
+        		stats.recomputationSuperseded(algorithmTime);
+        		return;
+        	}
+        	fullRecomputePending = false;
+        	long diffStart = System.nanoTime();
+        	
+            // Redundant edges are the edges of the topology not in mstEdges
+        	newRedundantIds.clear();
+        	for (int i = 0; i < topologyCopy.size(); ++i) newRedundantIds.set(topologyCopy.get(i).getId());
+        	for (int i = 0; i < mstEdges.size(); ++i) newRedundantIds.clear(mstEdges.get(i).getId());
+        	
+        	// Only the links whose state differs between the previous and the current execution are touched
+        	changedIds.clear();
+        	changedIds.or(redundantIds);
+        	changedIds.xor(newRedundantIds);
+        	
+        	if (!changedIds.isEmpty() && keepDeployedTree(mstEdges)) {
+        		changedIds.clear();
+        	} else {
+        		// Following topology events are applied incrementally, starting from this tree
+        		dynamicTree.reset(topologyCopy, mstEdges);
+        	}
+        	
+        	long now = System.currentTimeMillis();
+        	for (int id = changedIds.nextSetBit(0); id >= 0; id = changedIds.nextSetBit(id + 1)) {
+        		Edge s = Edge.get(id);
+        		toggled(id, now);
+        		
+        		if (newRedundantIds.get(id)) {
+                	logger.trace("Closing edge {}.", s);
+                	
                 	modPort(s.getSrc(), s.getSrcPort(), false);
                 	modPort(s.getDst(), s.getDstPort(), false);
-                }
-            }
-            
-            // Re-open ports in MSP which were closed in previous iterations
-            // (ie edges in the redundantEdges, from previous execution, and not in the current execution)
-            for (LinkWithCost s : oldRedundantEdges) {
-                if (!newRedundantEdges.contains(s)) {
-                	logger.trace("Opening edge {}.", new Object[] { s });
+                	redundantEdges.add(s);
+        		} else {
+        			// Re-open ports in MSP which were closed in previous iterations
+                	logger.trace("Opening edge {}.", s);
                 	
             		modPort(s.getSrc(), s.getSrcPort(), true);
             		modPort(s.getDst(), s.getDstPort(), true);
-                }
-            }
-
-            // Clone redundantEdges in redundantEdges for future iterations
-            this.redundantEdges = newRedundantEdges;
+            		redundantEdges.remove(s);
+        		}
+        	}
+        	
+	        if (!changedIds.isEmpty()) {
+	        	// Keep the new redundant ids for future iterations, the previous set is reused by the next one
+	        	BitSet previousIds = redundantIds;
+	        	redundantIds = newRedundantIds;
+	        	newRedundantIds = previousIds;
+	        }
+	        if (reconcilePorts() || !changedIds.isEmpty()) flushPortMods();
+	        
+	        stats.recomputation(algorithmTime, System.nanoTime() - diffStart);
+	        stats.islandsRecomputed(changedIslands.size(), islands.getIslandCount() - changedIslands.size());
+	        publishSnapshot();
+	        if (logger.isTraceEnabled()) {
+	        	logger.trace("New topoEdges = {}.", printEdges(topoEdges));
+	        	logger.trace("New redundantEdges = {}.", printEdges(redundantEdges));
+	        }
         }
         
-        logger.trace("New topoEdges = {}.", new Object[] { printEdges(topoEdges) });
-        logger.trace("New redundantEdges = {}.", new Object[] { printEdges(redundantEdges) });
+        // The copy is not needed until the next computation
+        topologyCopy.clear();
+        keptTreeEdges.clear();
+        changedIslands.clear();
+        deployedEdges.clear();
     }
 	
-	protected HashSet<LinkWithCost> findRedundantEdges(Vector<LinkWithCost> mstEdges) {
-    	HashSet<LinkWithCost> redundantEdges = new HashSet<LinkWithCost>();
+	/**
+	 * Applies the churn damping policy to the tree computed by updateLinks(), returning true if the
+	 * deployed tree is kept. The new tree is postponed until the hold-down of the links it toggles
+	 * expires, when a recomputation is scheduled, and dropped if it does not improve enough on the
+	 * deployed tree; in that case dynamicTree is reset to the deployed tree, so that it is only
+	 * challenged again by a further cost change.
+	 * The deployed tree is always replaced when it is not a spanning forest of the topology any more.
+	 * Must be called holding topologyLock, with changedIds set.
+	 */
+	protected boolean keepDeployedTree(Vector<Edge> mstEdges) {
+		if (minImprovement <= 0 && minImprovementPercent <= 0 && holdDown <= 0) return false;
+		
+		// The open links are a spanning forest if they are as many as the tree links and have no cycle
+		deployedEdges.clear();
+		for (int i = 0; i < topologyCopy.size(); ++i) {
+			if (!redundantIds.get(topologyCopy.get(i).getId())) deployedEdges.add(topologyCopy.get(i));
+		}
+		if (deployedEdges.size() != mstEdges.size()) return false;
+		deployedSwitches.clear();
+		for (int i = 0; i < deployedEdges.size(); ++i) {
+			deployedSwitches.indexOf(deployedEdges.get(i).getSrc());
+			deployedSwitches.indexOf(deployedEdges.get(i).getDst());
+		}
+		deployedComponents.reset(deployedSwitches.size());
+		for (int i = 0; i < deployedEdges.size(); ++i) {
+			Edge edge = deployedEdges.get(i);
+			if (!deployedComponents.union(deployedSwitches.indexOf(edge.getSrc()), deployedSwitches.indexOf(edge.getDst()))) return false;
+		}
+		
+		if (holdDown > 0) {
+			long heldUntil = 0;
+			for (int id = changedIds.nextSetBit(0); id >= 0; id = changedIds.nextSetBit(id + 1)) {
+				if (id < toggleTimes.length && toggleTimes[id] > 0) heldUntil = Math.max(heldUntil, toggleTimes[id] + holdDown);
+			}
+			
+			long delay = heldUntil - System.currentTimeMillis();
+			if (delay > 0) {
+				logger.debug("New tree toggles links held down for {} ms, postponing it.", delay);
+				// Without a scheduler the tree is computed again by the next change
+				if (recomputeExecutor != null) {
+					fullRecomputePending = true;
+					if (pendingRecompute != null) pendingRecompute.cancel(false);
+					pendingRecompute = recomputeExecutor.schedule(new Runnable() {
+						@Override
+						public void run() {
+							recompute();
+						}
+					}, delay, TimeUnit.MILLISECONDS);
+				}
+				stats.treeHeldDown();
+				return true;
+			}
+		}
+		
+		if (minImprovement > 0 || minImprovementPercent > 0) {
+			long deployedCost = 0, newCost = 0;
+			for (int i = 0; i < deployedEdges.size(); ++i) deployedCost += deployedEdges.get(i).getCost();
+			for (int i = 0; i < mstEdges.size(); ++i) newCost += mstEdges.get(i).getCost();
+			
+			long improvement = deployedCost - newCost;
+			if ((minImprovement <= 0 || improvement < minImprovement) && (minImprovementPercent <= 0 || improvement * 100 < minImprovementPercent * deployedCost)) {
+				logger.debug("New tree costs {} against {} of the deployed one, keeping the deployed tree.", new Object[] { newCost, deployedCost });
+				dynamicTree.reset(topologyCopy, deployedEdges);
+				stats.treeDamped();
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Records the time the link has been opened or closed, for the hold-down.
+	 */
+	protected void toggled(int id, long now) {
+		if (holdDown <= 0) return;
+		if (id >= toggleTimes.length) toggleTimes = Arrays.copyOf(toggleTimes, Math.max(id + 1, toggleTimes.length * 2));
+		toggleTimes[id] = now;
+	}
+	
+	/**
+	 * Partitions topologyCopy into islands, and collects in changedIslands those holding a link
+	 * unknown to dynamicTree or whose cost changed, or all of them if dynamicTree is stale. The
+	 * tree links of the other islands are collected in keptTreeEdges: dynamicTree already holds
+	 * a minimum spanning tree of each.
+	 * Must be called holding topologyLock.
+	 */
+	protected void findChangedIslands() {
+		islands.partition(topologyCopy);
+		changedIslands.clear();
+		keptTreeEdges.clear();
+		
+		for (int i = 0; i < islands.getIslandCount(); ++i) {
+			List<Edge> island = islands.getIsland(i);
+			// A stale dynamicTree may miss tree links in any island
+			boolean current = !dynamicTree.isStale();
+			for (int j = 0; j < island.size() && current; ++j) current = dynamicTree.isCurrent(island.get(j));
+			
+			if (!current) {
+				changedIslands.add(island);
+				continue;
+			}
+			for (int j = 0; j < island.size(); ++j) {
+				if (dynamicTree.isTreeEdge(island.get(j))) keptTreeEdges.add(island.get(j));
+			}
+		}
+		
+		logger.debug("{} of {} islands changed.", new Object[] { changedIslands.size(), islands.getIslandCount() });
+	}
+	
+	/**
+	 * Computes the minimum spanning tree of each changed island, the first on the calling thread
+	 * and the others on the island workers, and returns them with the kept tree links.
+	 */
+	protected Vector<Edge> computeForest() throws Exception {
+		List<Future<Vector<Edge>>> futures = null;
+		if (islandExecutor != null && changedIslands.size() > 1) {
+			futures = new ArrayList<Future<Vector<Edge>>>(changedIslands.size() - 1);
+			for (int i = 1; i < changedIslands.size(); ++i) {
+				final List<Edge> island = changedIslands.get(i);
+				futures.add(islandExecutor.submit(new Callable<Vector<Edge>>() {
+					@Override
+					public Vector<Edge> call() throws Exception {
+						return islandAlgorithm.get().perform(island);
+					}
+				}));
+			}
+		}
+		
+		Vector<Edge> mstEdges = changedIslands.isEmpty() ? new Vector<Edge>(Math.max(1, keptTreeEdges.size())) : algorithm.perform(changedIslands.get(0));
+		try {
+			for (int i = 1; i < changedIslands.size(); ++i) {
+				mstEdges.addAll((futures == null) ? algorithm.perform(changedIslands.get(i)) : futures.get(i - 1).get());
+			}
+		} finally {
+			if (futures != null) {
+				for (Future<Vector<Edge>> future : futures) future.cancel(true);
+			}
+		}
+		for (int i = 0; i < keptTreeEdges.size(); ++i) mstEdges.add(keptTreeEdges.get(i));
+		return mstEdges;
+	}
+	
+	/**
+	 * Returns a new instance of the configured algorithm, for the island workers.
+	 */
+	protected IMinimumSpanningTreeAlgorithm newAlgorithm() {
+		if (algorithm instanceof PrimAlgorithm) return new PrimAlgorithm();
+		if (algorithm instanceof ParallelBoruvkaAlgorithm) {
+			ParallelBoruvkaAlgorithm boruvka = (ParallelBoruvkaAlgorithm) algorithm;
+			return new ParallelBoruvkaAlgorithm(boruvka.getParallelThreshold(), boruvka.getPool());
+		}
+		return new KruskalAlgorithm();
+	}
+	
+	/**
+	 * Publishes the current topology and redundant edges for lock-free readers, unless neither the
+	 * topology nor the costs changed since the last snapshot. Must be called holding topologyLock.
+	 */
+	protected void publishSnapshot() {
+		// Read before the costs: a change in between is published again by the next call
+		long costVersion = getCosts().getVersion();
+		if (publishedGeneration == generation.get() && snapshot.getCostVersion() == costVersion) return;
+		
+		publishedGeneration = generation.get();
+		TopologySnapshot previous = snapshot;
+		// The shared cost map is read-only, the snapshot is persisted with the costs it has been built with
+		LinkCostMap costs = getCosts().getCostMap();
+		snapshot = TopologySnapshot.build(previous, costVersion, topoEdges, redundantEdges);
+		stats.setSnapshot(snapshot);
+		deltaHistory.add(TopologyDelta.between(previous, snapshot));
+		persistSnapshot(new PersistedState(snapshot, costs));
+	}
+	
+	/**
+	 * A published snapshot with the configured costs current when it was published.
+	 */
+	protected static final class PersistedState {
+		final TopologySnapshot snapshot;
+		final LinkCostMap costs;
+		
+		PersistedState(TopologySnapshot snapshot, LinkCostMap costs) {
+			this.snapshot = snapshot;
+			this.costs = costs;
+		}
+	}
+	
+	/**
+	 * Writes the snapshot to the snapshot store on the recompute thread. Snapshots published
+	 * before the write starts are coalesced, only the latest one is written.
+	 */
+	protected void persistSnapshot(PersistedState published) {
+		if (snapshotStore == null) return;
+		if (recomputeExecutor == null) {
+			writeSnapshot(published);
+			return;
+		}
+		
+		if (pendingPersist.getAndSet(published) == null) {
+			recomputeExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					PersistedState latest = pendingPersist.getAndSet(null);
+					if (latest != null) writeSnapshot(latest);
+				}
+			});
+		}
+	}
+	
+	private void writeSnapshot(PersistedState published) {
+		try {
+			snapshotStore.write(published.snapshot, published.costs);
+		} catch (IOException e) {
+			logger.error("Error writing snapshot to " + snapshotStore.getFile() + ".", e);
+		}
+	}
+	
+	/**
+	 * Restores the topology, the costs and the redundant links of the last persisted snapshot,
+	 * assuming the switches kept the port states GreenMST deployed. No port is modified.
+	 *
+	 * @return true if a snapshot has been restored.
+	 */
+	protected boolean restoreSnapshot() {
+		SnapshotStore.Contents contents = null;
+		try {
+			contents = snapshotStore.read();
+		} catch (IOException e) {
+			logger.error("Error reading snapshot " + snapshotStore.getFile() + ", starting from an empty topology.", e);
+		}
+		if (contents == null) return false;
+		
+		TopologyCosts costs = getCosts();
+		costs.putAll(new TopologyCosts(contents.getCosts()));
+		
+		synchronized (topologyLock) {
+			for (Edge edge : contents.getRedundantEdges()) {
+				redundantEdges.add(edge);
+				redundantIds.set(edge.getId());
+			}
+			
+			Vector<Edge> mstEdges = new Vector<Edge>();
+			for (Edge edge : contents.getTopoEdges()) {
+				topoEdges.add(edge);
+				// Closed links still forward discovery packets, every link has to be rediscovered
+				restoredEdges.add(edge);
+				if (!redundantIds.get(edge.getId())) mstEdges.add(edge);
+			}
+			
+			dynamicTree.reset(contents.getTopoEdges(), mstEdges);
+			generation.incrementAndGet();
+			publishSnapshot();
+		}
+		
+		logger.info("Restored {} links, {} of them redundant, from snapshot version {}.", new Object[] { contents.getTopoEdges().size(), contents.getRedundantEdges().size(), contents.getVersion() });
+		return true;
+	}
+	
+	/**
+	 * Removes the restored links that have not been rediscovered since the warm start. Topology
+	 * events never remove redundant links, so their ports are opened here as they are forgotten.
+	 */
+	protected void expireRestoredEdges() {
+		boolean changed = false;
+		synchronized (topologyLock) {
+			for (Edge edge : restoredEdges) {
+				logger.debug("Restored link {} has not been rediscovered, removing it.", edge);
+				topoEdges.remove(edge);
+				dynamicTree.remove(edge);
+				if (redundantIds.get(edge.getId())) {
+					redundantEdges.remove(edge);
+					redundantIds.clear(edge.getId());
+					modPort(edge.getSrc(), edge.getSrcPort(), true);
+					modPort(edge.getDst(), edge.getDstPort(), true);
+				}
+				changed = true;
+			}
+			restoredEdges.clear();
+			if (changed) generation.incrementAndGet();
+		}
+		
+		if (changed) scheduleRecompute();
+	}
+	
+	/**
+	 * Records the state of the ports of the links touching the switches connected and of the links
+	 * added since the last call, queueing a port mod for those known to be in a different state.
+	 * Must be called holding topologyLock, after the tree changes have been applied.
+	 *
+	 * @return true if a port mod has been queued.
+	 */
+	protected boolean reconcilePorts() {
+		boolean queued = false;
+		if (portModDispatcher != null) {
+			if (!reconcileSwitches.isEmpty()) {
+				for (Edge edge : topoEdges) {
+					if (reconcileSwitches.contains(edge.getSrc()) || reconcileSwitches.contains(edge.getDst())) reconcileEdges.add(edge);
+				}
+			}
+			
+			for (Edge edge : reconcileEdges) {
+				if (!topoEdges.contains(edge)) continue;
+				boolean open = !redundantIds.get(edge.getId());
+				queued |= portModDispatcher.reconcile(edge.getSrc(), edge.getSrcPort(), open);
+				queued |= portModDispatcher.reconcile(edge.getDst(), edge.getDstPort(), open);
+			}
+		}
+		
+		reconcileSwitches.clear();
+		reconcileEdges.clear();
+		return queued;
+	}
+	
+	protected HashSet<Edge> findRedundantEdges(Vector<Edge> mstEdges) {
+		return findRedundantEdges(new MinimumSpanningTree(mstEdges), new BitSet());
+	}
+	
+	/**
+	 * Returns the edges of topoEdges not in the tree, and marks their ids in redundantIds.
+	 */
+	protected HashSet<Edge> findRedundantEdges(MinimumSpanningTree mst, BitSet redundantIds) {
+    	HashSet<Edge> redundantEdges = new HashSet<Edge>();
     	
-    	for (LinkWithCost lt: topoEdges) {
-    		LinkWithCost ltInverse = lt.getInverse();
-    		if (!mstEdges.contains(lt) && !mstEdges.contains(ltInverse)) {
+    	for (Edge lt: topoEdges) {
+    		if (!mst.contains(lt)) {
     			redundantEdges.add(lt);
+    			redundantIds.set(lt.getId());
     		}
         }
     	
     	return redundantEdges;
     }
     
+	/**
+	 * Queues the port mod, it is sent to the switch with the rest of the batch by flushPortMods().
+	 */
 	protected void modPort(long switchId, short portNum, boolean open) {
-		try {
-	    	OFPortMod portMod = new OFPortMod();
-	    	IOFSwitch sw = floodlightProvider.getAllSwitchMap().get(switchId);
-	
-	    	// Search ports for finding hardware address
-	    	// portMod.setHardwareAddress(sw.getPort(portNum).getHardwareAddress());
-	    	try {
-	    		portMod.setHardwareAddress(sw.getPort(portNum).getHardwareAddress());
-	    	} catch (Exception e) {
-	    		logger.error("Error while retrieving port hardware address from switch. Try using switch address.");
-	    		throw e;
-	    	}
-	
-	    	portMod.setPortNumber(portNum);
-	    	//portMod.setMask(OFPortConfig.OFPPC_PORT_DOWN.getValue());
-	    	portMod.setMask(OFPortConfig.OFPPC_NO_FLOOD.getValue());
-	    	
-	    	portMod.setConfig((open == true) ? 0 : 63);
-	    	
-	    	if (portMod.getHardwareAddress() != null) logger.info("Sending ModPort command to switch {} - {} port {} (hw address {}).", new Object[] { switchId, ((open == true) ? "opening" : "closing"), portNum, HexString.toHexString(portMod.getHardwareAddress())});
-	    	else logger.info("Sending ModPort command to switch {} - {} port {}.", new Object[] { switchId, ((open == true) ? "opening" : "closing"), portNum});
-	    	
-	    	sw.write(portMod, null);
-		}
-		catch (Exception e) {
-			logger.error("Error while {} port {} on switch {}.", new Object[] { (open) ? "opening" : "closing", switchId, portNum }, e);
-		}
-    }
+		if (portModDispatcher != null) portModDispatcher.queue(switchId, portNum, open);
+	}
+	
+	protected void flushPortMods() {
+		if (portModDispatcher != null) portModDispatcher.flush();
+	}
     
-	protected String printEdges(Iterable<LinkWithCost> edges) {
-    	String s  = "";
-    	for (LinkWithCost e: edges) {
-    		if (!s.equals("")) s += "\n";
-    		s += e.toString();
+	/**
+	 * Renders the edges one per line; callers only invoke it when the log level is enabled.
+	 */
+	protected String printEdges(Iterable<Edge> edges) {
+    	StringBuilder s = new StringBuilder();
+    	for (Edge e: edges) {
+    		if (s.length() > 0) s.append('\n');
+    		s.append(e);
     	}
-    	return s;
+    	return s.toString();
 	}
     
 	@Override
@@ -223,34 +793,195 @@ public class GreenMST implements IFloodlightModule, IGreenMSTService, ITopologyL
 		floodlightProvider = context.getServiceImpl(IFloodlightProviderService.class);
 		restApi = context.getServiceImpl(IRestApiService.class);
 		topology = context.getServiceImpl(ITopologyService.class);
+		portModDispatcher = new PortModDispatcher(floodlightProvider, stats);
+		
+		Map<String, String> configOptions = context.getConfigParams(this);
+		if (configOptions != null) {
+			algorithm = parseAlgorithm(configOptions.get("algorithm"), (int) parseOption(configOptions, "parallelThreshold", ParallelBoruvkaAlgorithm.DEFAULT_PARALLEL_THRESHOLD),
+					(int) parseOption(configOptions, "parallelThreads", DEFAULT_PARALLEL_THREADS), algorithm);
+			recomputeDelay = parseOption(configOptions, "recomputeDelay", recomputeDelay);
+			recomputeMaxDelay = parseOption(configOptions, "recomputeMaxDelay", recomputeMaxDelay);
+			islandThreads = (int) parseOption(configOptions, "islandThreads", islandThreads);
+			String snapshotFile = configOptions.get("snapshotFile");
+			if (snapshotFile != null && !snapshotFile.trim().isEmpty()) snapshotStore = new SnapshotStore(Paths.get(snapshotFile.trim()));
+			warmStartTimeout = parseOption(configOptions, "warmStartTimeout", warmStartTimeout);
+			String costsFile = configOptions.get("costsFile");
+			if (costsFile != null && !costsFile.trim().isEmpty()) costFileWatcher = new CostFileWatcher(Paths.get(costsFile.trim()), this);
+			minImprovement = parseOption(configOptions, "minImprovement", minImprovement);
+			minImprovementPercent = parseOption(configOptions, "minImprovementPercent", minImprovementPercent);
+			holdDown = parseOption(configOptions, "holdDown", holdDown);
+			trafficPollInterval = parseOption(configOptions, "trafficPollInterval", trafficPollInterval);
+			if (trafficPollInterval > 0) {
+				trafficCostProvider = new TrafficCostProvider(floodlightProvider, this);
+				trafficCostProvider.setBatchSize((int) parseOption(configOptions, "trafficBatchSize", TrafficCostProvider.DEFAULT_BATCH_SIZE));
+				trafficCostProvider.setLinkCapacity(parseOption(configOptions, "trafficLinkCapacity", TrafficCostProvider.DEFAULT_LINK_CAPACITY));
+				trafficCostProvider.setSmoothing((int) parseOption(configOptions, "trafficSmoothing", TrafficCostProvider.DEFAULT_SMOOTHING),
+						(int) parseOption(configOptions, "trafficHysteresis", TrafficCostProvider.DEFAULT_HYSTERESIS));
+				trafficCostProvider.setCostWeight((int) parseOption(configOptions, "trafficCostWeight", TrafficCostProvider.DEFAULT_COST_WEIGHT));
+			}
+			deltaHistory = new TopologyDeltaHistory((int) parseOption(configOptions, "deltaHistorySize", TopologyDeltaHistory.DEFAULT_CAPACITY));
+			portModDispatcher.setRate((int) parseOption(configOptions, "portModRate", PortModDispatcher.DEFAULT_RATE),
+					(int) parseOption(configOptions, "portModBurst", PortModDispatcher.DEFAULT_BURST));
+		}
+	}
+	
+	private IMinimumSpanningTreeAlgorithm parseAlgorithm(String option, int parallelThreshold, int parallelThreads, IMinimumSpanningTreeAlgorithm defaultValue) {
+		if (option == null) return defaultValue;
+		
+		String name = option.trim().toLowerCase();
+		if (name.equals("kruskal")) return new KruskalAlgorithm();
+		if (name.equals("prim")) return new PrimAlgorithm();
+		if (name.equals("boruvka")) {
+			// Workers are started by the first parallel computation, and stop when idle
+			parallelPool = new ForkJoinPool(Math.max(1, parallelThreads));
+			return new ParallelBoruvkaAlgorithm(parallelThreshold, parallelPool);
+		}
+		
+		logger.error("Unknown MST algorithm {}, using {}.", new Object[] { option, defaultValue.getClass().getSimpleName() });
+		return defaultValue;
+	}
+	
+	private long parseOption(Map<String, String> configOptions, String name, long defaultValue) {
+		// Values are trimmed, an empty value leaves the option unset
+		String option = configOptions.get(name);
+		if (option == null || option.trim().isEmpty()) return defaultValue;
+		
+		try {
+			return Long.parseLong(option.trim());
+		} catch (NumberFormatException e) {
+			logger.error("Invalid value {} for {}, using default {}.", new Object[] { option, name, defaultValue });
+			return defaultValue;
+		}
 	}
 
 	@Override
 	public void startUp(FloodlightModuleContext context) {
+		recomputeExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GreenMST-recompute");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		if (islandThreads > 1) {
+			islandExecutor = Executors.newFixedThreadPool(islandThreads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "GreenMST-island");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		
+		portModDispatcher.setExecutor(recomputeExecutor);
+		if (floodlightProvider != null) {
+			floodlightProvider.addOFMessageListener(OFType.BARRIER_REPLY, portModDispatcher);
+			floodlightProvider.addOFSwitchListener(this);
+		}
+		
+		// The restored state is in place before the first topology event is received
+		if (snapshotStore != null && restoreSnapshot()) {
+			recomputeExecutor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					expireRestoredEdges();
+				}
+			}, warmStartTimeout, TimeUnit.MILLISECONDS);
+		}
+		
+		// Costs of the file override the restored ones
+		if (costFileWatcher != null) {
+			try {
+				costFileWatcher.start();
+			} catch (IOException e) {
+				logger.error("Error watching link cost file " + costFileWatcher.getFile() + ", costs will not be reloaded.", e);
+			}
+		}
+		if (trafficCostProvider != null) trafficCostProvider.start(trafficPollInterval);
+		
 		if (topology != null) topology.addListener(this);
 		if (restApi != null) restApi.addRestletRoutable(new GreenMSTWebRoutable());
 	}
 	
+	/**
+	 * Stops the threads of the module: the recompute and island executors, the pool of the
+	 * boruvka algorithm, the cost file watcher and the traffic poller. Floodlight does not stop
+	 * modules, this is meant for the code embedding the controller and for tests.
+	 */
+	public void shutDown() {
+		if (costFileWatcher != null) costFileWatcher.stop();
+		if (trafficCostProvider != null) trafficCostProvider.stop();
+		if (recomputeExecutor != null) recomputeExecutor.shutdownNow();
+		if (islandExecutor != null) islandExecutor.shutdownNow();
+		if (parallelPool != null) parallelPool.shutdownNow();
+	}
+	
+	@Override
+	public void switchAdded(long switchId) {
+	}
+	
+	@Override
+	public void switchActivated(long switchId) {
+		// The port states of the features reply are compared with the tree by the next recomputation
+		portModDispatcher.switchConnected(switchId);
+		synchronized (topologyLock) {
+			reconcileSwitches.add(switchId);
+		}
+		scheduleRecompute();
+	}
+	
+	@Override
+	public void switchRemoved(long switchId) {
+		portModDispatcher.switchDisconnected(switchId);
+	}
+	
+	@Override
+	public void switchPortChanged(long switchId, ImmutablePort port, IOFSwitch.PortChangeType type) {
+		portModDispatcher.portChanged(switchId, port, type == IOFSwitch.PortChangeType.DELETE);
+	}
+	
+	@Override
+	public void switchChanged(long switchId) {
+	}
+	
+	@Override
+	public TopologySnapshot getSnapshot() {
+		return snapshot;
+	}
+	
+	@Override
+	public GreenMSTStats getStats() {
+		return stats;
+	}
+	
+	@Override
+	public TopologyDeltaHistory getDeltaHistory() {
+		return deltaHistory;
+	}
+	
 	@Override
 	public Set<LinkWithCost> getTopoEdges() {
-		return topoEdges;
+		return snapshot.getTopoEdges();
 	}
 	
-	protected void setTopoEdges(HashSet<LinkWithCost> topoEdges) {
-		this.topoEdges = topoEdges;
+	protected void setTopoEdges(HashSet<Edge> topoEdges) {
+		synchronized (topologyLock) {
+			this.topoEdges = topoEdges;
+			generation.incrementAndGet();
+		}
 	}
 	
-	@SuppressWarnings("unchecked")
 	@Override
     public Set<LinkWithCost> getMSTEdges(){
-		HashSet<LinkWithCost> mstEdges = (HashSet<LinkWithCost>) topoEdges.clone();
-		mstEdges.removeAll(redundantEdges);
-    	return mstEdges;
+		return snapshot.getMSTEdges();
     }
 	
 	@Override
     public Set<LinkWithCost> getRedundantEdges(){
-    	return redundantEdges;
+		return snapshot.getRedundantEdges();
     }
 	
 	@Override
@@ -260,10 +991,45 @@ public class GreenMST implements IFloodlightModule, IGreenMSTService, ITopologyL
 	
 	@Override
 	public void setCosts(TopologyCosts newCosts) {
-		TopologyCosts costs = getCosts();
-		//costs.getCosts().clear();
-		costs.getCosts().putAll(newCosts.getCosts());
+		updateCosts(newCosts, null);
+	}
+	
+	@Override
+	public void setTrafficCosts(LinkCostMap trafficCosts) {
+		updateCosts(null, trafficCosts);
+	}
+	
+	/**
+	 * Applies the configured costs of newCosts, or else replaces the traffic costs, and deploys their effect.
+	 */
+	protected void updateCosts(TopologyCosts newCosts, LinkCostMap trafficCosts) {
+		synchronized (topologyLock) {
+			// The whole update is published at once, a computation running meanwhile is superseded
+			TopologyCosts costs = getCosts();
+			if (newCosts != null) costs.putAll(newCosts);
+			else costs.setTrafficCosts(trafficCosts);
+			
+			// Changes are classified against the costs the current tree has been built with
+			int changed = dynamicTree.countCostChanges(false);
+			if (changed == 0 && !fullRecomputePending) {
+				stats.costUpdate(0, 0, false);
+				return;
+			}
+			
+			int sensitive = dynamicTree.countCostChanges(true);
+			// With churn damping, changes that may alter the tree are checked against the policy by a full computation
+			boolean damping = minImprovement > 0 || minImprovementPercent > 0 || holdDown > 0;
+			if (fullRecomputePending || (damping && sensitive > 0) || sensitive * FULL_RECOMPUTE_RATIO > topoEdges.size()) {
+				fullRecomputePending = true;
+			} else {
+				// Swaps are queued as tree changes, deployed by the next recomputation without running the algorithm
+				dynamicTree.updateCosts();
+				if (dynamicTree.isStale()) fullRecomputePending = true;
+			}
+			stats.costUpdate(changed, sensitive, fullRecomputePending);
+			generation.incrementAndGet();
+		}
 		
-		updateLinks();
+		scheduleRecompute();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,254 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.types.LatencyHistogram;
+import it.garr.greenmst.types.TopologySnapshot;
+import it.garr.greenmst.web.serializers.GreenMSTStatsJSONSerializer;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Runtime counters and latency histograms of the GreenMST module.
+ *
+ * Every counter is an atomic updated in place, so that instrumenting the topology
+ * listener, the recomputations and the port mod dispatcher costs a few atomic
+ * increments and two System.nanoTime() calls per recomputation. The topology size
+ * is taken from the snapshot published after each recomputation.
+ *
+ * @see it.garr.greenmst.GreenMST
+ * @see it.garr.greenmst.web.StatsResource
+ *
+ */
+
+@JsonSerialize(using=GreenMSTStatsJSONSerializer.class)
+public class GreenMSTStats {
+
+	public static class SwitchStats {
+		private final AtomicLong portModsSent = new AtomicLong();
+		private final AtomicLong portModsFailed = new AtomicLong();
+		private final AtomicLong portModsConfirmed = new AtomicLong();
+		private final AtomicLong portModsSkipped = new AtomicLong();
+		private final AtomicLong portModsRetried = new AtomicLong();
+
+		public long getPortModsSent() {
+			return portModsSent.get();
+		}
+
+		public long getPortModsFailed() {
+			return portModsFailed.get();
+		}
+
+		public long getPortModsConfirmed() {
+			return portModsConfirmed.get();
+		}
+
+		public long getPortModsSkipped() {
+			return portModsSkipped.get();
+		}
+
+		public long getPortModsRetried() {
+			return portModsRetried.get();
+		}
+	}
+
+	private final long startTime = System.currentTimeMillis();
+
+	private final AtomicLong eventsReceived = new AtomicLong();
+	private final AtomicLong eventsIgnored = new AtomicLong();
+	private final AtomicLong incrementalUpdates = new AtomicLong();
+	private final AtomicLong recomputations = new AtomicLong();
+	private final AtomicLong recomputationsSuperseded = new AtomicLong();
+	private final AtomicLong recomputationsFailed = new AtomicLong();
+	private final AtomicLong islandsRecomputed = new AtomicLong();
+	private final AtomicLong islandsKept = new AtomicLong();
+	private final AtomicLong treesDamped = new AtomicLong();
+	private final AtomicLong treesHeldDown = new AtomicLong();
+	private final AtomicLong costUpdates = new AtomicLong();
+	private final AtomicLong costChanges = new AtomicLong();
+	private final AtomicLong sensitiveCostChanges = new AtomicLong();
+	private final AtomicLong fullCostUpdates = new AtomicLong();
+
+	private final LatencyHistogram algorithmTime = new LatencyHistogram();
+	private final LatencyHistogram diffTime = new LatencyHistogram();
+
+	private final ConcurrentHashMap<Long, SwitchStats> switches = new ConcurrentHashMap<Long, SwitchStats>();
+
+	private volatile TopologySnapshot snapshot = TopologySnapshot.EMPTY;
+
+	public void eventsReceived(int received, int ignored) {
+		eventsReceived.addAndGet(received);
+		eventsIgnored.addAndGet(ignored);
+	}
+
+	public void incrementalUpdate(long diffNanos) {
+		incrementalUpdates.incrementAndGet();
+		diffTime.record(diffNanos);
+	}
+
+	public void recomputation(long algorithmNanos, long diffNanos) {
+		recomputations.incrementAndGet();
+		algorithmTime.record(algorithmNanos);
+		diffTime.record(diffNanos);
+	}
+
+	public void recomputationSuperseded(long algorithmNanos) {
+		recomputationsSuperseded.incrementAndGet();
+		algorithmTime.record(algorithmNanos);
+	}
+
+	public void recomputationFailed() {
+		recomputationsFailed.incrementAndGet();
+	}
+
+	/**
+	 * Records the islands of a full computation whose tree has been computed again, and those whose tree has been kept.
+	 */
+	public void islandsRecomputed(int recomputed, int kept) {
+		islandsRecomputed.addAndGet(recomputed);
+		islandsKept.addAndGet(kept);
+	}
+
+	/**
+	 * Records a full computation whose tree has not been deployed, for not improving enough on the deployed one.
+	 */
+	public void treeDamped() {
+		treesDamped.incrementAndGet();
+	}
+
+	/**
+	 * Records a full computation whose tree has been postponed, for toggling links still held down.
+	 */
+	public void treeHeldDown() {
+		treesHeldDown.incrementAndGet();
+	}
+
+	/**
+	 * Records a cost update changing the cost of changed links, of which sensitive may alter the tree.
+	 */
+	public void costUpdate(int changed, int sensitive, boolean full) {
+		costUpdates.incrementAndGet();
+		costChanges.addAndGet(changed);
+		sensitiveCostChanges.addAndGet(sensitive);
+		if (full) fullCostUpdates.incrementAndGet();
+	}
+
+	public void portModsSent(long switchId, int count) {
+		getSwitch(switchId).portModsSent.addAndGet(count);
+	}
+
+	public void portModsFailed(long switchId, int count) {
+		getSwitch(switchId).portModsFailed.addAndGet(count);
+	}
+
+	public void portModsConfirmed(long switchId, int count) {
+		getSwitch(switchId).portModsConfirmed.addAndGet(count);
+	}
+
+	/**
+	 * Records port mods not sent because the port was already in the requested state.
+	 */
+	public void portModsSkipped(long switchId, int count) {
+		getSwitch(switchId).portModsSkipped.addAndGet(count);
+	}
+
+	public void portModsRetried(long switchId, int count) {
+		getSwitch(switchId).portModsRetried.addAndGet(count);
+	}
+
+	public void setSnapshot(TopologySnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	private SwitchStats getSwitch(long switchId) {
+		SwitchStats stats = switches.get(switchId);
+		if (stats == null) {
+			SwitchStats previous = switches.putIfAbsent(switchId, stats = new SwitchStats());
+			if (previous != null) stats = previous;
+		}
+		return stats;
+	}
+
+	public long getUptime() {
+		return System.currentTimeMillis() - startTime;
+	}
+
+	public long getEventsReceived() {
+		return eventsReceived.get();
+	}
+
+	public long getEventsIgnored() {
+		return eventsIgnored.get();
+	}
+
+	public long getIncrementalUpdates() {
+		return incrementalUpdates.get();
+	}
+
+	public long getRecomputations() {
+		return recomputations.get();
+	}
+
+	public long getRecomputationsSuperseded() {
+		return recomputationsSuperseded.get();
+	}
+
+	public long getRecomputationsFailed() {
+		return recomputationsFailed.get();
+	}
+
+	public long getIslandsRecomputed() {
+		return islandsRecomputed.get();
+	}
+
+	public long getIslandsKept() {
+		return islandsKept.get();
+	}
+
+	public long getTreesDamped() {
+		return treesDamped.get();
+	}
+
+	public long getTreesHeldDown() {
+		return treesHeldDown.get();
+	}
+
+	public long getCostUpdates() {
+		return costUpdates.get();
+	}
+
+	public long getCostChanges() {
+		return costChanges.get();
+	}
+
+	public long getSensitiveCostChanges() {
+		return sensitiveCostChanges.get();
+	}
+
+	public long getFullCostUpdates() {
+		return fullCostUpdates.get();
+	}
+
+	public LatencyHistogram getAlgorithmTime() {
+		return algorithmTime;
+	}
+
+	public LatencyHistogram getDiffTime() {
+		return diffTime;
+	}
+
+	/**
+	 * Returns the counters of every switch that has been sent port mods, by dpid.
+	 */
+	public Map<Long, SwitchStats> getSwitches() {
+		return new TreeMap<Long, SwitchStats>(switches);
+	}
+
+	public TopologySnapshot getSnapshot() {
+		return snapshot;
+	}
+
+}
@@ -1,8 +1,11 @@
 package it.garr.greenmst;
 
 
+import it.garr.greenmst.types.LinkCostMap;
 import it.garr.greenmst.types.LinkWithCost;
 import it.garr.greenmst.types.TopologyCosts;
+import it.garr.greenmst.types.TopologyDeltaHistory;
+import it.garr.greenmst.types.TopologySnapshot;
 
 import java.util.Set;
 
@@ -22,10 +25,26 @@ import net.floodlightcontroller.core.module.IFloodlightService;
 
 public interface IGreenMSTService extends IFloodlightService {
 	
+	/**
+	 * Returns the state published after the last recomputation; it never changes once returned.
+	 */
+	public TopologySnapshot getSnapshot();
+	/**
+	 * Returns the runtime counters and latencies of the module, updated in place.
+	 */
+	public GreenMSTStats getStats();
+	/**
+	 * Returns the latest changes between published snapshots, tagged with their versions.
+	 */
+	public TopologyDeltaHistory getDeltaHistory();
 	public Set<LinkWithCost> getMSTEdges();
 	public Set<LinkWithCost> getTopoEdges();
     public Set<LinkWithCost> getRedundantEdges();
 	public TopologyCosts getCosts();
 	public void setCosts(TopologyCosts costs);
+	/**
+	 * Replaces the load-dependent costs added to the configured ones, see {@link TopologyCosts#setTrafficCosts(LinkCostMap)}.
+	 */
+	public void setTrafficCosts(LinkCostMap trafficCosts);
     
 }
\ No newline at end of file
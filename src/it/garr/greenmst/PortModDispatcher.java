@@ -0,0 +1,491 @@
+package it.garr.greenmst;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import net.floodlightcontroller.core.FloodlightContext;
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFMessageListener;
+import net.floodlightcontroller.core.IOFSwitch;
+import net.floodlightcontroller.core.ImmutablePort;
+
+import org.openflow.protocol.OFBarrierRequest;
+import org.openflow.protocol.OFMessage;
+import org.openflow.protocol.OFPhysicalPort.OFPortConfig;
+import org.openflow.protocol.OFPortMod;
+import org.openflow.protocol.OFType;
+import org.openflow.util.HexString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends port modifications to the switches in per-switch batches.
+ *
+ * Port mods are queued with {@link #queue(long, short, boolean)} and sent by {@link #flush()}:
+ * each switch is looked up once, its mods are written with a single call followed by a
+ * barrier request, and the barrier reply confirms that the whole batch has been applied.
+ * If the same port is queued more than once before a flush only the last state is sent.
+ *
+ * Messages are paced per switch with a token bucket of burst tokens refilled at rate tokens
+ * per second. Mods exceeding the available tokens stay queued and are sent by a later flush,
+ * scheduled on the executor; without an executor every queued mod is sent right away.
+ *
+ * The dispatcher keeps, for each port, the state GreenMST wants and the state last observed
+ * on the switch, as reported by features replies and port-status messages or set by a mod
+ * sent. A mod is only sent when the two differ, and when a switch connects or reports a
+ * port change the ports that drifted from the wanted state are set again. Failed writes
+ * are retried after a delay doubling from INITIAL_RETRY_DELAY up to MAX_RETRY_DELAY.
+ *
+ * Batches are taken out of the queues holding the dispatcher lock, and written to the switch
+ * after releasing it, so that a slow control channel does not delay barrier replies and
+ * the batches of the other switches. A switch gets one write at a time: mods queued while a
+ * batch is being written are sent when the write returns.
+ *
+ * @see it.garr.greenmst.GreenMST
+ *
+ */
+
+public class PortModDispatcher implements IOFMessageListener {
+
+	protected static Logger logger = LoggerFactory.getLogger(PortModDispatcher.class);
+
+	public static final int DEFAULT_RATE = 500;
+	public static final int DEFAULT_BURST = 100;
+	// Delays (milliseconds) of the retries of a failed write
+	public static final long INITIAL_RETRY_DELAY = 100;
+	public static final long MAX_RETRY_DELAY = 10000;
+
+	private static class SwitchQueue {
+		// Requested state for each port (true if open), in queueing order
+		final LinkedHashMap<Short, Boolean> pending = new LinkedHashMap<Short, Boolean>();
+		// Number of port mods sent with each barrier still waiting for its reply
+		final HashMap<Integer, Integer> unconfirmed = new HashMap<Integer, Integer>();
+		// State wanted for each port, and state last observed on the switch or sent to it
+		final HashMap<Short, Boolean> desired = new HashMap<Short, Boolean>();
+		final HashMap<Short, Boolean> known = new HashMap<Short, Boolean>();
+		double tokens;
+		long lastRefill;
+		boolean flushScheduled = false;
+		// A batch is being written, outside the dispatcher lock
+		boolean writing = false;
+		// Delay of the last retry (0 after a successful write), and System.nanoTime() before which nothing is sent
+		long retryDelay = 0;
+		long retryAt = 0;
+
+		SwitchQueue(int burst) {
+			tokens = burst;
+			lastRefill = System.nanoTime();
+		}
+	}
+
+	// Port mods taken out of a queue, with the barrier closing them
+	private static class Batch {
+		final long switchId;
+		final SwitchQueue queue;
+		final IOFSwitch sw;
+		final List<OFMessage> messages;
+		final Map<Short, Boolean> requests;
+		final int barrierXid;
+
+		Batch(long switchId, SwitchQueue queue, IOFSwitch sw, List<OFMessage> messages, Map<Short, Boolean> requests, int barrierXid) {
+			this.switchId = switchId;
+			this.queue = queue;
+			this.sw = sw;
+			this.messages = messages;
+			this.requests = requests;
+			this.barrierXid = barrierXid;
+		}
+	}
+
+	private final IFloodlightProviderService floodlightProvider;
+	private final GreenMSTStats stats;
+	private ScheduledExecutorService executor = null;
+	private int rate = DEFAULT_RATE;
+	private int burst = DEFAULT_BURST;
+
+	private final HashMap<Long, SwitchQueue> queues = new HashMap<Long, SwitchQueue>();
+
+	public PortModDispatcher(IFloodlightProviderService floodlightProvider) {
+		this(floodlightProvider, new GreenMSTStats());
+	}
+
+	public PortModDispatcher(IFloodlightProviderService floodlightProvider, GreenMSTStats stats) {
+		this.floodlightProvider = floodlightProvider;
+		this.stats = stats;
+	}
+
+	public void setExecutor(ScheduledExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the pacing of each switch: at most burst mods at once, and rate mods per second on average.
+	 */
+	public synchronized void setRate(int rate, int burst) {
+		this.rate = Math.max(1, rate);
+		this.burst = Math.max(1, burst);
+	}
+
+	/**
+	 * Queues the port mod, replacing any mod for the same port not sent yet.
+	 */
+	public synchronized void queue(long switchId, short portNum, boolean open) {
+		SwitchQueue queue = getQueue(switchId);
+		queue.desired.put(portNum, open);
+		queue.pending.remove(portNum);
+		queue.pending.put(portNum, open);
+	}
+	
+	/**
+	 * Records the state wanted for the port, and queues a mod only if the port is known to be in
+	 * a different state and no mod is queued for it yet.
+	 *
+	 * @return true if a port mod has been queued.
+	 */
+	public synchronized boolean reconcile(long switchId, short portNum, boolean open) {
+		SwitchQueue queue = getQueue(switchId);
+		queue.desired.put(portNum, open);
+		Boolean observed = queue.known.get(portNum);
+		if (observed == null || observed == open || queue.pending.containsKey(portNum)) return false;
+		
+		logger.debug("Port {} of switch {} is {}, queueing a port mod.", new Object[] { portNum, HexString.toHexString(switchId), (observed) ? "open" : "closed" });
+		queue.pending.put(portNum, open);
+		return true;
+	}
+	
+	/**
+	 * Takes the port states reported by a switch that just connected, and sets again the ports
+	 * whose state differs from the wanted one.
+	 */
+	public void switchConnected(long switchId) {
+		Batch batch = null;
+		synchronized (this) {
+			SwitchQueue queue = getQueue(switchId);
+			queue.known.clear();
+			queue.unconfirmed.clear();
+			queue.retryDelay = 0;
+			queue.retryAt = 0;
+
+			IOFSwitch sw = floodlightProvider.getAllSwitchMap().get(switchId);
+			Collection<ImmutablePort> ports = (sw == null) ? null : sw.getPorts();
+			if (ports == null) return;
+			for (ImmutablePort port : ports) {
+				Boolean open = isOpen(port);
+				if (open != null) queue.known.put(port.getPortNumber(), open);
+			}
+
+			int queued = 0;
+			for (Map.Entry<Short, Boolean> entry : queue.desired.entrySet()) {
+				Boolean observed = queue.known.get(entry.getKey());
+				if (observed != null && !observed.equals(entry.getValue()) && !queue.pending.containsKey(entry.getKey())) {
+					queue.pending.put(entry.getKey(), entry.getValue());
+					++queued;
+				}
+			}
+			if (queued > 0) logger.info("Switch {} connected with {} ports in the wrong state.", new Object[] { sw.getStringId(), queued });
+			if (!queue.pending.isEmpty() && !queue.flushScheduled) batch = takeBatch(switchId, queue);
+		}
+		write(batch);
+	}
+	
+	/**
+	 * Forgets the observed port states of a switch that disconnected, they are read again when it connects.
+	 */
+	public synchronized void switchDisconnected(long switchId) {
+		SwitchQueue queue = queues.get(switchId);
+		if (queue == null) return;
+		queue.known.clear();
+		queue.unconfirmed.clear();
+	}
+	
+	/**
+	 * Takes the state of a port reported by a port-status message, and sets it again if it
+	 * differs from the wanted one.
+	 */
+	public void portChanged(long switchId, ImmutablePort port, boolean deleted) {
+		Batch batch = null;
+		synchronized (this) {
+			SwitchQueue queue = queues.get(switchId);
+			if (queue == null) return;
+
+			short portNum = port.getPortNumber();
+			Boolean open = (deleted) ? null : isOpen(port);
+			if (open == null) {
+				queue.known.remove(portNum);
+				return;
+			}
+
+			queue.known.put(portNum, open);
+			Boolean wanted = queue.desired.get(portNum);
+			if (wanted == null || wanted.equals(open) || queue.pending.containsKey(portNum)) return;
+
+			logger.info("Port {} of switch {} has been {}, setting it again.", new Object[] { portNum, HexString.toHexString(switchId), (open) ? "opened" : "closed" });
+			queue.pending.put(portNum, wanted);
+			if (!queue.flushScheduled) batch = takeBatch(switchId, queue);
+		}
+		write(batch);
+	}
+
+	/**
+	 * Sends one batch to every switch with queued mods, within the tokens available.
+	 */
+	public void flush() {
+		List<Batch> batches = new ArrayList<Batch>();
+		synchronized (this) {
+			for (Map.Entry<Long, SwitchQueue> entry : queues.entrySet()) {
+				SwitchQueue queue = entry.getValue();
+				if (queue.pending.isEmpty() || queue.flushScheduled) continue;
+				Batch batch = takeBatch(entry.getKey(), queue);
+				if (batch != null) batches.add(batch);
+			}
+		}
+		for (Batch batch : batches) write(batch);
+	}
+
+	/**
+	 * Returns the number of port mods queued and not sent yet, on every switch.
+	 */
+	public synchronized int getQueuedCount() {
+		int count = 0;
+		for (SwitchQueue queue : queues.values()) count += queue.pending.size();
+		return count;
+	}
+	
+	/**
+	 * Returns the number of batches sent to the switch whose barrier has not been answered yet.
+	 */
+	public synchronized int getUnconfirmedBatches(long switchId) {
+		SwitchQueue queue = queues.get(switchId);
+		return (queue == null) ? 0 : queue.unconfirmed.size();
+	}
+
+	private SwitchQueue getQueue(long switchId) {
+		SwitchQueue queue = queues.get(switchId);
+		if (queue == null) {
+			queue = new SwitchQueue(burst);
+			queues.put(switchId, queue);
+		}
+		return queue;
+	}
+
+	/**
+	 * Returns true if the port floods, false if it has been closed, null if its config is not known.
+	 */
+	private static Boolean isOpen(ImmutablePort port) {
+		Collection<OFPortConfig> config = port.getConfig();
+		return (config == null) ? null : !config.contains(OFPortConfig.OFPPC_NO_FLOOD);
+	}
+
+	/**
+	 * Takes the next batch of the switch out of its queue, within the tokens available. Must be
+	 * called holding the dispatcher lock; the batch is then written by {@link #write(Batch)}.
+	 *
+	 * @return the batch, or null if there is nothing to write now.
+	 */
+	private Batch takeBatch(final long switchId, SwitchQueue queue) {
+		// The mods are sent once the write in progress returns
+		if (queue.writing) return null;
+
+		IOFSwitch sw = floodlightProvider.getAllSwitchMap().get(switchId);
+		if (sw == null) {
+			logger.error("Switch {} is not connected, dropping {} port mods.", new Object[] { HexString.toHexString(switchId), queue.pending.size() });
+			stats.portModsFailed(switchId, queue.pending.size());
+			queue.pending.clear();
+			return null;
+		}
+
+		// Ports already in the requested state are not touched
+		int skipped = 0;
+		Iterator<Map.Entry<Short, Boolean>> it = queue.pending.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Short, Boolean> request = it.next();
+			if (request.getValue().equals(queue.known.get(request.getKey()))) {
+				it.remove();
+				++skipped;
+			}
+		}
+		if (skipped > 0) stats.portModsSkipped(switchId, skipped);
+
+		int count = queue.pending.size();
+		if (count == 0) return null;
+		if (executor != null) {
+			long wait = queue.retryAt - System.nanoTime();
+			if (wait > 0) {
+				// Backing off after a failed write
+				scheduleFlush(switchId, queue, wait / 1000 + 1);
+				return null;
+			}
+			
+			refill(queue);
+			count = Math.min(count, (int) queue.tokens);
+			queue.tokens -= count;
+			// Less than one token is left, wait until the next one is available
+			if (count < queue.pending.size()) scheduleFlush(switchId, queue, (long) Math.ceil((1 - queue.tokens) * 1e6 / rate));
+			if (count == 0) return null;
+		}
+
+		List<OFMessage> batch = new ArrayList<OFMessage>(count + 1);
+		LinkedHashMap<Short, Boolean> requests = new LinkedHashMap<Short, Boolean>();
+		it = queue.pending.entrySet().iterator();
+		for (int i = 0; i < count; ++i) {
+			Map.Entry<Short, Boolean> request = it.next();
+			it.remove();
+
+			OFPortMod portMod = buildPortMod(sw, request.getKey(), request.getValue());
+			if (portMod != null) {
+				batch.add(portMod);
+				requests.put(request.getKey(), request.getValue());
+			} else stats.portModsFailed(switchId, 1);
+		}
+		if (batch.isEmpty()) return null;
+
+		OFBarrierRequest barrier = new OFBarrierRequest();
+		barrier.setXid(sw.getNextTransactionId());
+		batch.add(barrier);
+
+		// Registered before writing, the reply may come back before write returns
+		queue.unconfirmed.put(barrier.getXid(), batch.size() - 1);
+		queue.writing = true;
+		return new Batch(switchId, queue, sw, batch, requests, barrier.getXid());
+	}
+
+	/**
+	 * Writes the batch without holding the dispatcher lock, then records its outcome and writes
+	 * the mods queued for the switch meanwhile. Does nothing if batch is null.
+	 */
+	private void write(Batch batch) {
+		while (batch != null) {
+			int count = batch.messages.size() - 1;
+			boolean sent = false;
+			try {
+				batch.sw.write(batch.messages, null);
+				batch.sw.flush();
+				sent = true;
+				logger.debug("Sent {} port mods to switch {}.", new Object[] { count, batch.sw.getStringId() });
+			} catch (Exception e) {
+				logger.error("Error while sending {} port mods to switch {}.", new Object[] { count, batch.sw.getStringId() }, e);
+			}
+
+			synchronized (this) {
+				SwitchQueue queue = batch.queue;
+				queue.writing = false;
+				if (sent) {
+					stats.portModsSent(batch.switchId, count);
+					queue.known.putAll(batch.requests);
+					queue.retryDelay = 0;
+				} else {
+					queue.unconfirmed.remove(batch.barrierXid);
+					stats.portModsFailed(batch.switchId, count);
+					retry(batch.switchId, queue, batch.requests);
+				}
+				// After a failure the retry is left to the backoff, or to the next flush
+				batch = (sent && !queue.pending.isEmpty() && !queue.flushScheduled) ? takeBatch(batch.switchId, queue) : null;
+			}
+		}
+	}
+
+	/**
+	 * Queues again the mods of a failed write, unless newer ones have been queued meanwhile, and
+	 * delays the next write to the switch. Without an executor they are sent by the next flush.
+	 */
+	private void retry(long switchId, SwitchQueue queue, Map<Short, Boolean> requests) {
+		int retried = 0;
+		for (Map.Entry<Short, Boolean> request : requests.entrySet()) {
+			// The write may have been partially applied, the state of the ports is not known any more
+			queue.known.remove(request.getKey());
+			if (!queue.pending.containsKey(request.getKey())) {
+				queue.pending.put(request.getKey(), request.getValue());
+				++retried;
+			}
+		}
+		stats.portModsRetried(switchId, retried);
+		if (executor == null) return;
+
+		queue.retryDelay = (queue.retryDelay == 0) ? INITIAL_RETRY_DELAY : Math.min(MAX_RETRY_DELAY, queue.retryDelay * 2);
+		queue.retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(queue.retryDelay);
+		logger.info("Retrying {} port mods to switch {} in {} ms.", new Object[] { retried, HexString.toHexString(switchId), queue.retryDelay });
+		if (!queue.flushScheduled) scheduleFlush(switchId, queue, TimeUnit.MILLISECONDS.toMicros(queue.retryDelay));
+	}
+
+	private OFPortMod buildPortMod(IOFSwitch sw, short portNum, boolean open) {
+		OFPortMod portMod = new OFPortMod();
+
+		// Search ports for finding hardware address
+		ImmutablePort port = sw.getPort(portNum);
+		if (port == null) {
+			logger.error("Error while {} port {} on switch {}: port not found.", new Object[] { (open) ? "opening" : "closing", portNum, sw.getStringId() });
+			return null;
+		}
+		portMod.setHardwareAddress(port.getHardwareAddress());
+
+		portMod.setPortNumber(portNum);
+		//portMod.setMask(OFPortConfig.OFPPC_PORT_DOWN.getValue());
+		portMod.setMask(OFPortConfig.OFPPC_NO_FLOOD.getValue());
+
+		portMod.setConfig((open == true) ? 0 : 63);
+
+		if (portMod.getHardwareAddress() != null) logger.info("Sending ModPort command to switch {} - {} port {} (hw address {}).", new Object[] { sw.getStringId(), ((open == true) ? "opening" : "closing"), portNum, HexString.toHexString(portMod.getHardwareAddress())});
+		else logger.info("Sending ModPort command to switch {} - {} port {}.", new Object[] { sw.getStringId(), ((open == true) ? "opening" : "closing"), portNum});
+
+		return portMod;
+	}
+
+	private void refill(SwitchQueue queue) {
+		long now = System.nanoTime();
+		queue.tokens = Math.min(burst, queue.tokens + (now - queue.lastRefill) * rate / 1e9);
+		queue.lastRefill = now;
+	}
+
+	private void scheduleFlush(final long switchId, final SwitchQueue queue, long delay) {
+		queue.flushScheduled = true;
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				Batch batch = null;
+				synchronized (PortModDispatcher.this) {
+					queue.flushScheduled = false;
+					if (!queue.pending.isEmpty()) batch = takeBatch(switchId, queue);
+				}
+				write(batch);
+			}
+		}, delay, TimeUnit.MICROSECONDS);
+	}
+
+	@Override
+	public String getName() {
+		return "greenmst";
+	}
+
+	@Override
+	public boolean isCallbackOrderingPrereq(OFType type, String name) {
+		return false;
+	}
+
+	@Override
+	public boolean isCallbackOrderingPostreq(OFType type, String name) {
+		return false;
+	}
+
+	@Override
+	public Command receive(IOFSwitch sw, OFMessage msg, FloodlightContext cntx) {
+		if (msg.getType() != OFType.BARRIER_REPLY) return Command.CONTINUE;
+
+		synchronized (this) {
+			SwitchQueue queue = queues.get(sw.getId());
+			Integer count = (queue == null) ? null : queue.unconfirmed.remove(msg.getXid());
+			if (count != null) {
+				logger.debug("Switch {} confirmed {} port mods.", new Object[] { sw.getStringId(), count });
+				stats.portModsConfirmed(sw.getId(), count);
+			}
+		}
+		return Command.CONTINUE;
+	}
+
+}
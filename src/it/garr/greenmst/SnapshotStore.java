@@ -0,0 +1,191 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.types.Edge;
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.LinkWithCost;
+import it.garr.greenmst.types.TopologySnapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the state deployed by GreenMST in a compact binary file, so that a restarted
+ * controller can start from the links, costs and redundant links it left.
+ *
+ * The file holds the link costs (two dpids and the cost each), then the links of the
+ * topology (dpids, ports and a redundant flag each), followed by a CRC32 of the whole
+ * content. It is written through a memory-mapped temporary file, forced to disk and
+ * moved over the previous one, so that a crash never leaves a partially written file.
+ *
+ * @see it.garr.greenmst.GreenMST
+ * @see it.garr.greenmst.types.TopologySnapshot
+ *
+ */
+
+public class SnapshotStore {
+
+	protected static Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+	// "GMST" and the version of the file format
+	private static final int MAGIC = 0x474D5354;
+	private static final int FORMAT = 1;
+
+	private static final int HEADER_SIZE = 4 + 4 + 8;
+	private static final int COST_SIZE = 8 + 8 + 4;
+	private static final int EDGE_SIZE = 8 + 2 + 8 + 2 + 1;
+	private static final int CHECKSUM_SIZE = 8;
+
+	/**
+	 * State read back from a snapshot file.
+	 */
+	public static class Contents {
+		private final long version;
+		private final LinkCostMap costs;
+		private final List<Edge> topoEdges;
+		private final List<Edge> redundantEdges;
+
+		private Contents(long version, LinkCostMap costs, List<Edge> topoEdges, List<Edge> redundantEdges) {
+			this.version = version;
+			this.costs = costs;
+			this.topoEdges = topoEdges;
+			this.redundantEdges = redundantEdges;
+		}
+
+		/**
+		 * Returns the version of the snapshot that has been written.
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		public LinkCostMap getCosts() {
+			return costs;
+		}
+
+		public List<Edge> getTopoEdges() {
+			return topoEdges;
+		}
+
+		public List<Edge> getRedundantEdges() {
+			return redundantEdges;
+		}
+	}
+
+	private final Path file;
+	private final Path temporaryFile;
+
+	public SnapshotStore(Path file) {
+		this.file = file;
+		this.temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+	}
+
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Writes the snapshot and the costs, replacing the previous file atomically.
+	 */
+	public void write(TopologySnapshot snapshot, LinkCostMap costs) throws IOException {
+		Set<LinkWithCost> topoEdges = snapshot.getTopoEdges(), redundantEdges = snapshot.getRedundantEdges();
+		long size = HEADER_SIZE + 4 + (long) costs.size() * COST_SIZE + 4 + (long) topoEdges.size() * EDGE_SIZE + CHECKSUM_SIZE;
+
+		FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			buffer.putInt(MAGIC).putInt(FORMAT).putLong(snapshot.getVersion());
+
+			buffer.putInt(costs.size());
+			for (int slot = costs.nextSlot(-1); slot >= 0; slot = costs.nextSlot(slot)) {
+				buffer.putLong(costs.firstAt(slot)).putLong(costs.secondAt(slot)).putInt(costs.valueAt(slot));
+			}
+
+			buffer.putInt(topoEdges.size());
+			for (LinkWithCost link : topoEdges) {
+				buffer.putLong(link.getSrc()).putShort(link.getSrcPort()).putLong(link.getDst()).putShort(link.getDstPort());
+				buffer.put((byte) (redundantEdges.contains(link) ? 1 : 0));
+			}
+
+			buffer.putLong(checksum(buffer, (int) size - CHECKSUM_SIZE));
+			buffer.force();
+		} finally {
+			channel.close();
+		}
+
+		Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		logger.debug("Written snapshot version {} to {}.", snapshot.getVersion(), file);
+	}
+
+	/**
+	 * Reads the last snapshot written.
+	 *
+	 * @return the contents of the file, or null if there is none.
+	 * @throws IOException if the file cannot be read or is not a valid snapshot.
+	 */
+	public Contents read() throws IOException {
+		if (!Files.exists(file)) return null;
+
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if (size < HEADER_SIZE + 4 + 4 + CHECKSUM_SIZE || size > Integer.MAX_VALUE) throw new IOException("Snapshot " + file + " has an invalid size of " + size + " bytes.");
+
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buffer.getLong((int) size - CHECKSUM_SIZE) != checksum(buffer, (int) size - CHECKSUM_SIZE)) throw new IOException("Snapshot " + file + " is corrupted.");
+			if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT) throw new IOException("Snapshot " + file + " is not in a known format.");
+			long version = buffer.getLong();
+
+			int costCount = readCount(buffer, COST_SIZE);
+			LinkCostMap costs = new LinkCostMap(costCount);
+			for (int i = 0; i < costCount; ++i) {
+				costs.put(buffer.getLong(), buffer.getLong(), buffer.getInt(), 0);
+			}
+
+			int edgeCount = readCount(buffer, EDGE_SIZE);
+			List<Edge> topoEdges = new ArrayList<Edge>(edgeCount), redundantEdges = new ArrayList<Edge>();
+			for (int i = 0; i < edgeCount; ++i) {
+				Edge edge = Edge.valueOf(buffer.getLong(), buffer.getShort(), buffer.getLong(), buffer.getShort());
+				topoEdges.add(edge);
+				if (buffer.get() != 0) redundantEdges.add(edge);
+			}
+
+			return new Contents(version, costs, topoEdges, redundantEdges);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private int readCount(MappedByteBuffer buffer, int entrySize) throws IOException {
+		int count = buffer.getInt();
+		if (count < 0 || (long) count * entrySize > buffer.remaining() - CHECKSUM_SIZE) throw new IOException("Snapshot " + file + " has an invalid entry count " + count + ".");
+		return count;
+	}
+
+	private static long checksum(MappedByteBuffer buffer, int length) {
+		CRC32 crc = new CRC32();
+		ByteBuffer content = buffer.duplicate();
+		content.position(0);
+		byte[] chunk = new byte[8192];
+		for (int remaining = length; remaining > 0; remaining -= chunk.length) {
+			int count = Math.min(remaining, chunk.length);
+			content.get(chunk, 0, count);
+			crc.update(chunk, 0, count);
+		}
+		return crc.getValue();
+	}
+
+}
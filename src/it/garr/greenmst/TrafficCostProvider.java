@@ -0,0 +1,309 @@
+package it.garr.greenmst;
+
+import it.garr.greenmst.types.Edge;
+import it.garr.greenmst.types.LinkCostMap;
+import it.garr.greenmst.types.LinkWithCost;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.floodlightcontroller.core.IFloodlightProviderService;
+import net.floodlightcontroller.core.IOFSwitch;
+
+import org.openflow.protocol.OFPort;
+import org.openflow.protocol.OFStatisticsRequest;
+import org.openflow.protocol.statistics.OFPortStatisticsReply;
+import org.openflow.protocol.statistics.OFPortStatisticsRequest;
+import org.openflow.protocol.statistics.OFStatistics;
+import org.openflow.protocol.statistics.OFStatisticsType;
+import org.openflow.util.HexString;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Derives link costs from the traffic measured on the switches.
+ *
+ * Port statistics are requested periodically from every switch, batchSize switches at a
+ * time. The transmit rate of the two ports of each link gives its utilization (the busier
+ * direction over the link capacity), smoothed with an exponentially weighted moving average.
+ * Utilization is mapped to LEVELS levels, and a pair of switches moves to another level only
+ * when the utilization of its busiest link crosses the level boundary by the hysteresis
+ * margin, so that small fluctuations never change a cost.
+ *
+ * A pair at level l gets a traffic cost of l * costWeight / LEVELS, added to its configured
+ * cost when links are read. Traffic costs are a separate layer, replaced as a whole through
+ * {@link IGreenMSTService#setTrafficCosts(LinkCostMap)} when a level changes: the configured
+ * costs, persisted and exported by the REST api, are never changed.
+ *
+ * @see it.garr.greenmst.GreenMST
+ * @see it.garr.greenmst.types.TopologyCosts
+ *
+ */
+
+public class TrafficCostProvider implements Runnable {
+
+	protected static Logger logger = LoggerFactory.getLogger(TrafficCostProvider.class);
+
+	public static final int DEFAULT_BATCH_SIZE = 16;
+	// Megabits per second
+	public static final long DEFAULT_LINK_CAPACITY = 1000;
+	// Weight of the last sample in the moving average, and hysteresis margin, in percent
+	public static final int DEFAULT_SMOOTHING = 30;
+	public static final int DEFAULT_HYSTERESIS = 5;
+	// Cost added to a fully used link
+	public static final int DEFAULT_COST_WEIGHT = 10;
+	public static final int LEVELS = 10;
+	// Milliseconds waited for the statistics of a switch
+	public static final long REPLY_TIMEOUT = 5000;
+
+	private static class PortCounter {
+		long transmitBytes;
+		long time;
+		// Bits per second between the last two samples, -1 if not known
+		double rate = -1;
+
+		PortCounter(long transmitBytes, long time) {
+			this.transmitBytes = transmitBytes;
+			this.time = time;
+		}
+	}
+
+	private final IFloodlightProviderService floodlightProvider;
+	private final IGreenMSTService service;
+	private int batchSize = DEFAULT_BATCH_SIZE;
+	private double linkCapacity = DEFAULT_LINK_CAPACITY * 1e6;
+	private double smoothing = DEFAULT_SMOOTHING / 100.0;
+	private int hysteresis = DEFAULT_HYSTERESIS * 10;
+	private int costWeight = DEFAULT_COST_WEIGHT;
+
+	private ScheduledExecutorService executor = null;
+
+	// Port counters by switch, smoothed utilization of each link
+	private final HashMap<Long, HashMap<Short, PortCounter>> counters = new HashMap<Long, HashMap<Short, PortCounter>>();
+	private HashMap<Edge, Double> utilizations = new HashMap<Edge, Double>();
+	// By pair of switches: load level and traffic cost applied
+	private LinkCostMap levels = new LinkCostMap(), trafficCosts = new LinkCostMap();
+
+	public TrafficCostProvider(IFloodlightProviderService floodlightProvider, IGreenMSTService service) {
+		this.floodlightProvider = floodlightProvider;
+		this.service = service;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Sets the capacity of the links, in megabits per second.
+	 */
+	public void setLinkCapacity(long linkCapacity) {
+		this.linkCapacity = Math.max(1, linkCapacity) * 1e6;
+	}
+
+	/**
+	 * Sets the weight of the last sample in the moving average, and the hysteresis margin, in percent.
+	 */
+	public void setSmoothing(int smoothing, int hysteresis) {
+		this.smoothing = Math.min(100, Math.max(1, smoothing)) / 100.0;
+		this.hysteresis = Math.min(100, Math.max(0, hysteresis)) * 10;
+	}
+
+	public void setCostWeight(int costWeight) {
+		this.costWeight = Math.max(0, costWeight);
+	}
+
+	/**
+	 * Polls the switches every interval milliseconds, on a thread of its own.
+	 */
+	public synchronized void start(long interval) {
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "GreenMST-traffic");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(this, interval, interval, TimeUnit.MILLISECONDS);
+		logger.info("Polling port statistics every {} ms.", interval);
+	}
+
+	public synchronized void stop() {
+		if (executor == null) return;
+		executor.shutdownNow();
+		executor = null;
+	}
+
+	@Override
+	public void run() {
+		try {
+			poll();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			// An exception would cancel the following polls
+			logger.error("Error deriving link costs from port statistics.", e);
+		}
+	}
+
+	/**
+	 * Collects the port statistics of every switch and applies the costs that changed.
+	 *
+	 * @return the number of link costs changed.
+	 */
+	public int poll() throws InterruptedException {
+		return poll(System.nanoTime());
+	}
+
+	protected synchronized int poll(long now) throws InterruptedException {
+		collect(now);
+		return updateCosts();
+	}
+
+	/**
+	 * Queries the switches batchSize at a time, waiting for the replies of a batch before the next one.
+	 */
+	private void collect(long now) throws InterruptedException {
+		long start = System.nanoTime();
+		Map<Long, IOFSwitch> switchMap = floodlightProvider.getAllSwitchMap();
+		List<IOFSwitch> switches = new ArrayList<IOFSwitch>(switchMap.values());
+		counters.keySet().retainAll(switchMap.keySet());
+
+		List<Future<List<OFStatistics>>> replies = new ArrayList<Future<List<OFStatistics>>>(batchSize);
+		for (int from = 0; from < switches.size(); from += batchSize) {
+			int to = Math.min(switches.size(), from + batchSize);
+			replies.clear();
+			for (int i = from; i < to; ++i) replies.add(query(switches.get(i)));
+			long time = now + (System.nanoTime() - start);
+
+			for (int i = from; i < to; ++i) {
+				Future<List<OFStatistics>> reply = replies.get(i - from);
+				if (reply == null) continue;
+				IOFSwitch sw = switches.get(i);
+				try {
+					record(sw.getId(), reply.get(REPLY_TIMEOUT, TimeUnit.MILLISECONDS), time);
+				} catch (TimeoutException e) {
+					reply.cancel(true);
+					logger.warn("Switch {} did not send its port statistics within {} ms.", new Object[] { sw.getStringId(), REPLY_TIMEOUT });
+				} catch (ExecutionException e) {
+					logger.error("Error collecting port statistics of switch " + sw.getStringId() + ".", e.getCause());
+				}
+			}
+		}
+	}
+
+	private Future<List<OFStatistics>> query(IOFSwitch sw) {
+		OFStatisticsRequest request = new OFStatisticsRequest();
+		request.setStatisticType(OFStatisticsType.PORT);
+		OFPortStatisticsRequest portRequest = new OFPortStatisticsRequest();
+		portRequest.setPortNumber(OFPort.OFPP_NONE.getValue());
+		request.setStatistics(Collections.singletonList((OFStatistics) portRequest));
+		request.setLengthU(request.getLengthU() + portRequest.getLength());
+
+		try {
+			return sw.queryStatistics(request);
+		} catch (Exception e) {
+			logger.error("Error requesting port statistics of switch " + sw.getStringId() + ".", e);
+			return null;
+		}
+	}
+
+	private void record(long switchId, List<OFStatistics> statistics, long time) {
+		if (statistics == null) return;
+		HashMap<Short, PortCounter> ports = counters.get(switchId);
+		if (ports == null) {
+			ports = new HashMap<Short, PortCounter>();
+			counters.put(switchId, ports);
+		}
+
+		for (OFStatistics entry : statistics) {
+			if (!(entry instanceof OFPortStatisticsReply)) continue;
+			OFPortStatisticsReply reply = (OFPortStatisticsReply) entry;
+			PortCounter counter = ports.get(reply.getPortNumber());
+			if (counter == null) {
+				ports.put(reply.getPortNumber(), new PortCounter(reply.getTransmitBytes(), time));
+				continue;
+			}
+
+			// A counter going back has been reset, the rate is known again at the next sample
+			long bytes = reply.getTransmitBytes();
+			counter.rate = (bytes >= counter.transmitBytes && time > counter.time) ? (bytes - counter.transmitBytes) * 8e9 / (time - counter.time) : -1;
+			counter.transmitBytes = bytes;
+			counter.time = time;
+		}
+	}
+
+	private double rateOf(long switchId, short portNum) {
+		HashMap<Short, PortCounter> ports = counters.get(switchId);
+		PortCounter counter = (ports == null) ? null : ports.get(portNum);
+		return (counter == null) ? -1 : counter.rate;
+	}
+
+	/**
+	 * Updates the utilization of every link and applies the traffic costs if a level changed.
+	 */
+	private int updateCosts() {
+		// Utilization of the busiest link of each pair, in thousandths
+		HashMap<Edge, Double> smoothed = new HashMap<Edge, Double>();
+		LinkCostMap load = new LinkCostMap();
+		for (LinkWithCost link : service.getTopoEdges()) {
+			Edge edge = Edge.valueOf(link);
+			Double utilization = utilizations.get(edge);
+			double rate = Math.max(rateOf(link.getSrc(), link.getSrcPort()), rateOf(link.getDst(), link.getDstPort()));
+			if (rate >= 0) {
+				double sample = Math.min(1, rate / linkCapacity);
+				utilization = (utilization == null) ? sample : utilization + smoothing * (sample - utilization);
+			}
+			if (utilization == null) continue;
+
+			smoothed.put(edge, utilization);
+			int thousandths = (int) Math.round(utilization * 1000);
+			if (thousandths >= load.get(link.getSrc(), link.getDst(), 0)) load.put(link.getSrc(), link.getDst(), thousandths, 0);
+		}
+		utilizations = smoothed;
+
+		int changed = 0;
+		LinkCostMap newLevels = new LinkCostMap(load.size()), newTrafficCosts = new LinkCostMap(load.size());
+		int step = 1000 / LEVELS;
+		for (int slot = load.nextSlot(-1); slot >= 0; slot = load.nextSlot(slot)) {
+			long source = load.firstAt(slot), destination = load.secondAt(slot);
+			int thousandths = load.valueAt(slot);
+
+			// The level only moves once the utilization is past the boundary by the hysteresis margin
+			int level = levels.get(source, destination, 0);
+			int up = Math.min(LEVELS, (thousandths - hysteresis) / step), down = (thousandths + hysteresis) / step;
+			if (up > level) level = up;
+			else if (down < level) level = down;
+
+			int cost = level * costWeight / LEVELS, previous = trafficCosts.get(source, destination, 0);
+			if (cost != previous) {
+				logger.debug("Link {}-{} is {}% used, traffic cost {} becomes {}.", new Object[] { HexString.toHexString(source), HexString.toHexString(destination), thousandths / 10, previous, cost });
+				++changed;
+			}
+
+			if (level > 0) newLevels.put(source, destination, level, 0);
+			if (cost > 0) newTrafficCosts.put(source, destination, cost, 0);
+		}
+
+		// Pairs no longer measured lose their traffic cost
+		for (int slot = trafficCosts.nextSlot(-1); slot >= 0; slot = trafficCosts.nextSlot(slot)) {
+			if (!load.containsKey(trafficCosts.firstAt(slot), trafficCosts.secondAt(slot))) ++changed;
+		}
+		levels = newLevels;
+		trafficCosts = newTrafficCosts;
+
+		if (changed > 0) service.setTrafficCosts(newTrafficCosts);
+		return changed;
+	}
+
+}
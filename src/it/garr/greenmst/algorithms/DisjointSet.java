@@ -0,0 +1,87 @@
+package it.garr.greenmst.algorithms;
+
+/**
+ * Disjoint-set forest (union-find) over dense integer indices, with path
+ * compression and union by rank. Both operations run in near-constant
+ * amortized time, so a Kruskal pass over E edges is dominated by the sort.
+ *
+ * @see it.garr.greenmst.algorithms.KruskalAlgorithm
+ *
+ */
+
+public class DisjointSet {
+
+	private int[] parent;
+	private byte[] rank;
+	private int size;
+	private int components;
+
+	public DisjointSet(int size) {
+		parent = new int[size];
+		rank = new byte[size];
+		reset(size);
+	}
+
+	/**
+	 * Makes every element a singleton again, over size elements. The arrays are only reallocated if they are too small.
+	 */
+	public void reset(int size) {
+		if (parent.length < size) {
+			parent = new int[size];
+			rank = new byte[size];
+		}
+		for (int i = 0; i < size; ++i) {
+			parent[i] = i;
+			rank[i] = 0;
+		}
+		this.size = size;
+		components = size;
+	}
+
+	public int find(int element) {
+		int root = element;
+		while (parent[root] != root) root = parent[root];
+
+		// Compress the path so that every visited node points to the root
+		while (parent[element] != root) {
+			int next = parent[element];
+			parent[element] = root;
+			element = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Merges the sets containing the two elements.
+	 *
+	 * @return true if the elements were in different sets, false if they were already joined.
+	 */
+	public boolean union(int first, int second) {
+		int firstRoot = find(first), secondRoot = find(second);
+		if (firstRoot == secondRoot) return false;
+
+		if (rank[firstRoot] < rank[secondRoot]) {
+			parent[firstRoot] = secondRoot;
+		} else if (rank[firstRoot] > rank[secondRoot]) {
+			parent[secondRoot] = firstRoot;
+		} else {
+			parent[secondRoot] = firstRoot;
+			rank[firstRoot]++;
+		}
+		components--;
+		return true;
+	}
+
+	public boolean connected(int first, int second) {
+		return find(first) == find(second);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getComponentCount() {
+		return components;
+	}
+
+}
@@ -0,0 +1,478 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.types.Edge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.Vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Minimum spanning forest maintained incrementally over edge insertions and removals.
+ *
+ * The forest is kept in a {@link LinkCutTree}, where every tree edge is a node between
+ * its two switches. Inserting an edge only compares it with the heaviest edge on the
+ * tree path between its endpoints and swaps them if the new edge is cheaper. Removing
+ * a tree edge only looks for the cheapest non-tree edge reconnecting the two halves.
+ *
+ * Changes to the set of redundant (non-tree) edges are accumulated until they are
+ * collected with {@link #drainChanges(Collection, Collection)}, so callers can close
+ * and open only the ports that actually changed.
+ *
+ * Resetting the structure to the forest it already holds only refreshes the edge costs
+ * in place, which allocates nothing when no cost changed.
+ *
+ * Cost changes are applied with {@link #updateCosts()}. By the cut property a tree edge
+ * getting cheaper stays in the tree, and by the cycle property a non-tree edge getting
+ * more expensive stays out of it: both only update the stored cost. A tree edge getting
+ * more expensive is compared with the non-tree edges crossing its cut, a non-tree edge
+ * getting cheaper with the heaviest edge on its tree path, and only those are swapped.
+ *
+ * Edges are ordered by cost, then by id, as the full computations order them when they
+ * get the topology edges by increasing id (see {@link EdgeCostSorter}): with equal costs
+ * both pick the same tree.
+ *
+ * Looking for a replacement edge scans the non-tree edges in that order, with a
+ * connectivity query of amortized O(log V) each, until one crosses the cut: O(E log V)
+ * in the worst case. After scanLimit candidates the search gives up and the structure
+ * is marked stale ({@link #isStale()}): its forest may then miss a link, and the caller
+ * has to run a full computation and {@link #reset(Collection, Collection)} it.
+ *
+ * @see it.garr.greenmst.algorithms.LinkCutTree
+ * @see it.garr.greenmst.GreenMST
+ *
+ */
+
+public class DynamicMinimumSpanningTree {
+
+	protected static Logger logger = LoggerFactory.getLogger(DynamicMinimumSpanningTree.class);
+
+	private static class Vertex {
+		final long switchId;
+		int node;
+		int degree = 0;
+
+		Vertex(long switchId) {
+			this.switchId = switchId;
+		}
+	}
+
+	private static class EdgeState implements Comparable<EdgeState> {
+		final Edge edge;
+		int cost;
+		// Cost and id packed in the order of the full computations, the value of tree edges in the forest
+		long key;
+		Vertex src, dst;
+		int node = LinkCutTree.NIL;
+		boolean present = true;
+
+		// Redundancy before the first change since the last drain, null if untouched
+		Boolean wasRedundant = null;
+
+		EdgeState(Edge edge, int cost) {
+			this.edge = edge;
+			setCost(cost);
+		}
+
+		void setCost(int cost) {
+			this.cost = cost;
+			key = EdgeCostSorter.key(cost, edge.getId(), false);
+		}
+
+		boolean inTree() {
+			return node != LinkCutTree.NIL;
+		}
+
+		boolean isRedundant() {
+			return present && !inTree();
+		}
+
+		@Override
+		public int compareTo(EdgeState other) {
+			return (key < other.key) ? -1 : ((key == other.key) ? 0 : 1);
+		}
+	}
+
+	private LinkCutTree forest = new LinkCutTree();
+	private HashMap<Long, Vertex> vertices = new HashMap<Long, Vertex>();
+	// States indexed by Edge id, and by link-cut tree node for tree edges
+	private EdgeState[] states = new EdgeState[64];
+	private EdgeState[] nodeStates = new EdgeState[64];
+	private TreeSet<EdgeState> nonTreeEdges = new TreeSet<EdgeState>();
+	private int edgeCount = 0, treeEdgeCount = 0;
+
+	// Non-tree edges looked at by a replacement search before giving up
+	public static final int DEFAULT_SCAN_LIMIT = 1024;
+	private int scanLimit = DEFAULT_SCAN_LIMIT;
+	private boolean stale = false;
+
+	private ArrayList<EdgeState> touched = new ArrayList<EdgeState>();
+
+	/**
+	 * Rebuilds the structure from a full topology and one of its minimum spanning forests,
+	 * as computed by an {@link IMinimumSpanningTreeAlgorithm}. The forest is kept as given,
+	 * other edges only join it where they connect two of its trees. No change is reported.
+	 */
+	public void reset(Collection<Edge> topoEdges, Collection<Edge> mstEdges) {
+		stale = false;
+		if (holds(topoEdges, mstEdges)) {
+			refreshCosts();
+			clearTouched();
+			return;
+		}
+		
+		forest = new LinkCutTree();
+		edgeCount = treeEdgeCount = 0;
+		Arrays.fill(states, null);
+		Arrays.fill(nodeStates, null);
+		vertices.clear();
+		nonTreeEdges.clear();
+
+		for (Edge edge : mstEdges) {
+			EdgeState state = register(edge);
+			if (state != null) place(state, false);
+		}
+		for (Edge edge : topoEdges) {
+			EdgeState state = register(edge);
+			if (state != null) place(state, false);
+		}
+		clearTouched();
+	}
+
+	/**
+	 * Returns true if the structure holds exactly the given edges, with the given tree edges.
+	 */
+	private boolean holds(Collection<Edge> topoEdges, Collection<Edge> mstEdges) {
+		if (topoEdges.size() != edgeCount || mstEdges.size() != treeEdgeCount) return false;
+		for (Edge edge : topoEdges) {
+			if (stateOf(edge) == null) return false;
+		}
+		for (Edge edge : mstEdges) {
+			if (!isTreeEdge(edge)) return false;
+		}
+		return true;
+	}
+
+	private void refreshCosts() {
+		for (EdgeState state : states) {
+			if (state == null) continue;
+			int cost = state.edge.getCost();
+			if (cost == state.cost) continue;
+
+			if (state.inTree()) {
+				state.setCost(cost);
+				forest.setValue(state.node, state.key);
+			} else {
+				// The position in nonTreeEdges depends on the cost
+				nonTreeEdges.remove(state);
+				state.setCost(cost);
+				nonTreeEdges.add(state);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of known edges whose cost differs from the one in the forest. If
+	 * sensitiveOnly is set, only the changes that may alter the forest are counted: tree
+	 * edges getting more expensive and non-tree edges getting cheaper.
+	 */
+	public int countCostChanges(boolean sensitiveOnly) {
+		int count = 0;
+		for (EdgeState state : states) {
+			if (state == null) continue;
+			int cost = state.edge.getCost();
+			if (cost == state.cost) continue;
+			if (!sensitiveOnly || isSensitive(state, cost)) count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Applies the current cost of every known edge, swapping tree and non-tree edges only where a change requires it.
+	 *
+	 * @return the number of swaps.
+	 */
+	public int updateCosts() {
+		int swaps = 0;
+		for (EdgeState state : states) {
+			if (state == null) continue;
+			int cost = state.edge.getCost();
+			if (cost == state.cost) continue;
+			if (updateCost(state, cost)) swaps++;
+		}
+		return swaps;
+	}
+
+	private static boolean isSensitive(EdgeState state, int cost) {
+		if (state.inTree()) return cost > state.cost;
+		return cost < state.cost && state.src != state.dst;
+	}
+
+	private boolean updateCost(EdgeState state, int cost) {
+		boolean sensitive = isSensitive(state, cost);
+
+		if (state.inTree()) {
+			state.setCost(cost);
+			if (!sensitive) {
+				forest.setValue(state.node, state.key);
+				return false;
+			}
+
+			// Looks for a cheaper non-tree edge joining the two sides of the cut, the edge goes back with its new cost otherwise
+			removeFromTree(state);
+			EdgeState candidate = findReplacement(state.key);
+			if (candidate != null) {
+				logger.trace("Edge {} replaces tree edge {} after a cost change.", candidate.edge, state.edge);
+				touch(state, false);
+				touch(candidate, true);
+				nonTreeEdges.remove(candidate);
+				addToTree(candidate);
+				nonTreeEdges.add(state);
+				return true;
+			}
+			addToTree(state);
+			return false;
+		}
+
+		// The position in nonTreeEdges depends on the cost
+		nonTreeEdges.remove(state);
+		state.setCost(cost);
+		if (sensitive) {
+			EdgeState heaviest = nodeStates[forest.pathMax(state.src.node, state.dst.node)];
+			if (heaviest != null && heaviest.key > state.key) {
+				logger.trace("Edge {} replaces tree edge {} after a cost change.", state.edge, heaviest.edge);
+				touch(heaviest, false);
+				touch(state, true);
+				removeFromTree(heaviest);
+				nonTreeEdges.add(heaviest);
+				addToTree(state);
+				return true;
+			}
+		}
+		nonTreeEdges.add(state);
+		return false;
+	}
+
+	/**
+	 * Adds an edge, replacing the heaviest tree edge on the path between its switches if cheaper.
+	 *
+	 * @return false if the edge was already known.
+	 */
+	public boolean insert(Edge edge) {
+		EdgeState state = register(edge);
+		if (state == null) return false;
+
+		touch(state, false);
+		place(state, true);
+		return true;
+	}
+
+	/**
+	 * Creates the state of an edge, outside both the forest and nonTreeEdges.
+	 *
+	 * @return the new state, or null if the edge was already known.
+	 */
+	private EdgeState register(Edge edge) {
+		if (stateOf(edge) != null) return null;
+
+		EdgeState state = new EdgeState(edge, edge.getCost());
+		state.src = vertex(edge.getSrc());
+		state.dst = vertex(edge.getDst());
+		state.src.degree++;
+		state.dst.degree++;
+		if (edge.getId() >= states.length) states = Arrays.copyOf(states, Math.max(states.length * 2, edge.getId() + 1));
+		states[edge.getId()] = state;
+		edgeCount++;
+		return state;
+	}
+
+	/**
+	 * Adds a registered edge to the forest if it joins two of its trees, or if swap is set and
+	 * it is cheaper than the heaviest tree edge on the path between its switches; to nonTreeEdges otherwise.
+	 */
+	private void place(EdgeState state, boolean swap) {
+		if (state.src == state.dst) {
+			nonTreeEdges.add(state);
+		} else if (!forest.connected(state.src.node, state.dst.node)) {
+			addToTree(state);
+		} else {
+			EdgeState heaviest = (swap) ? nodeStates[forest.pathMax(state.src.node, state.dst.node)] : null;
+			if (heaviest != null && heaviest.key > state.key) {
+				logger.trace("Edge {} replaces tree edge {}.", state.edge, heaviest.edge);
+				touch(heaviest, false);
+				removeFromTree(heaviest);
+				nonTreeEdges.add(heaviest);
+				addToTree(state);
+			} else {
+				nonTreeEdges.add(state);
+			}
+		}
+	}
+
+	/**
+	 * Removes an edge; if it was in the tree, the cheapest edge reconnecting the two sides takes its place.
+	 *
+	 * @return false if the edge was unknown.
+	 */
+	public boolean remove(Edge edge) {
+		EdgeState state = stateOf(edge);
+		if (state == null) return false;
+
+		states[edge.getId()] = null;
+		edgeCount--;
+		touch(state, state.isRedundant());
+		state.present = false;
+
+		if (!state.inTree()) {
+			nonTreeEdges.remove(state);
+		} else {
+			removeFromTree(state);
+
+			EdgeState candidate = findReplacement(Long.MAX_VALUE);
+			if (candidate != null) {
+				logger.trace("Edge {} reconnects the tree after removal of {}.", candidate.edge, edge);
+				touch(candidate, true);
+				nonTreeEdges.remove(candidate);
+				addToTree(candidate);
+			}
+		}
+
+		release(state.src);
+		release(state.dst);
+		return true;
+	}
+
+	/**
+	 * Returns the cheapest non-tree edge joining two trees of the forest whose key is lower than
+	 * maxKey, or null. After scanLimit candidates the search gives up and marks the structure stale.
+	 */
+	private EdgeState findReplacement(long maxKey) {
+		int scanned = 0;
+		for (EdgeState candidate : nonTreeEdges) {
+			if (candidate.key >= maxKey) return null;
+			if (++scanned > scanLimit) {
+				logger.debug("No replacement edge within {} candidates, a full computation is needed.", scanLimit);
+				stale = true;
+				return null;
+			}
+			if (candidate.src != candidate.dst && !forest.connected(candidate.src.node, candidate.dst.node)) return candidate;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if a replacement search gave up since the last reset: the forest may not
+	 * be a minimum spanning forest of the edges, nor span them.
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+
+	public int getScanLimit() {
+		return scanLimit;
+	}
+
+	public void setScanLimit(int scanLimit) {
+		this.scanLimit = scanLimit;
+	}
+
+	public boolean contains(Edge edge) {
+		return stateOf(edge) != null;
+	}
+
+	/**
+	 * Returns true if the edge is known and its current cost is the one the forest has been built with.
+	 */
+	public boolean isCurrent(Edge edge) {
+		EdgeState state = stateOf(edge);
+		return state != null && state.cost == edge.getCost();
+	}
+
+	public boolean isTreeEdge(Edge edge) {
+		EdgeState state = stateOf(edge);
+		return state != null && state.inTree();
+	}
+
+	public Vector<Edge> getTreeEdges() {
+		Vector<Edge> treeEdges = new Vector<Edge>();
+		for (EdgeState state : states) {
+			if (state != null && state.inTree()) treeEdges.add(state.edge);
+		}
+		return treeEdges;
+	}
+
+	/**
+	 * Collects the net changes since the last call: edges that became redundant (to be
+	 * closed) and edges that are no longer redundant (to be opened). Edges inserted as
+	 * tree edges or removed are not reported.
+	 */
+	public void drainChanges(Collection<Edge> closed, Collection<Edge> opened) {
+		for (int i = 0; i < touched.size(); ++i) {
+			EdgeState state = touched.get(i);
+			boolean wasRedundant = state.wasRedundant;
+
+			if (state.isRedundant() && !wasRedundant) closed.add(state.edge);
+			else if (state.present && !state.isRedundant() && wasRedundant) opened.add(state.edge);
+		}
+		clearTouched();
+	}
+
+	private EdgeState stateOf(Edge edge) {
+		int id = edge.getId();
+		return (id < states.length) ? states[id] : null;
+	}
+
+	private void touch(EdgeState state, boolean wasRedundant) {
+		if (state.wasRedundant == null) {
+			state.wasRedundant = wasRedundant;
+			touched.add(state);
+		}
+	}
+
+	private void clearTouched() {
+		for (int i = 0; i < touched.size(); ++i) touched.get(i).wasRedundant = null;
+		touched.clear();
+	}
+
+	private void addToTree(EdgeState state) {
+		state.node = forest.newNode(state.key);
+		if (state.node >= nodeStates.length) nodeStates = Arrays.copyOf(nodeStates, Math.max(nodeStates.length * 2, state.node + 1));
+		nodeStates[state.node] = state;
+		treeEdgeCount++;
+		forest.link(state.node, state.src.node);
+		forest.link(state.node, state.dst.node);
+	}
+
+	private void removeFromTree(EdgeState state) {
+		forest.cut(state.src.node, state.node);
+		forest.cut(state.node, state.dst.node);
+		nodeStates[state.node] = null;
+		treeEdgeCount--;
+		forest.freeNode(state.node);
+		state.node = LinkCutTree.NIL;
+	}
+
+	private Vertex vertex(long switchId) {
+		Vertex vertex = vertices.get(switchId);
+		if (vertex == null) {
+			vertex = new Vertex(switchId);
+			// Switches never win a path maximum query against an edge
+			vertex.node = forest.newNode(Long.MIN_VALUE);
+			vertices.put(switchId, vertex);
+		}
+		return vertex;
+	}
+
+	private void release(Vertex vertex) {
+		if (--vertex.degree > 0) return;
+
+		vertices.remove(vertex.switchId);
+		forest.freeNode(vertex.node);
+	}
+
+}
@@ -0,0 +1,118 @@
+package it.garr.greenmst.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Sorts edge indices by a snapshot of their costs.
+ *
+ * Costs are read once by the caller into a primitive array, so sorting does not go
+ * back to the topology costs on every comparison. When the cost range is small
+ * compared to the number of edges a counting sort is used, otherwise (cost, index)
+ * pairs are packed into longs and sorted with a primitive sort. Both paths are
+ * stable: edges with the same cost keep their original relative order.
+ *
+ * A {@link Workspace} holds the buffers of the sort; when one is reused across
+ * calls, sorting allocates nothing once the buffers fit the largest input.
+ *
+ * @see it.garr.greenmst.algorithms.KruskalAlgorithm
+ *
+ */
+
+public final class EdgeCostSorter {
+
+	// Counting sort is used while the count array stays within this many slots per edge (plus a fixed allowance)
+	private static final int COUNTING_RANGE_PER_EDGE = 4;
+	private static final int COUNTING_RANGE_MIN = 1 << 12;
+
+	private EdgeCostSorter() {}
+
+	/**
+	 * Buffers of a sort, grown on demand and kept for the following ones. Not thread-safe.
+	 */
+	public static final class Workspace {
+		private int[] order = new int[0];
+		private int[] starts = new int[0];
+		private long[] keys = new long[0];
+	}
+
+	/**
+	 * Returns the indices of costs ordered by increasing cost, or decreasing cost if reverse is set.
+	 */
+	public static int[] sort(int[] costs, boolean reverse) {
+		return sort(costs, costs.length, reverse, new Workspace());
+	}
+
+	/**
+	 * Sorts the first n costs, as {@link #sort(int[], boolean)}, in the buffers of the workspace.
+	 *
+	 * @return the order buffer of the workspace, whose first n entries are the sorted indices.
+	 */
+	public static int[] sort(int[] costs, int n, boolean reverse, Workspace workspace) {
+		if (workspace.order.length < n) workspace.order = new int[n];
+		if (n == 0) return workspace.order;
+
+		int min = costs[0], max = costs[0];
+		for (int i = 1; i < n; ++i) {
+			if (costs[i] < min) min = costs[i];
+			else if (costs[i] > max) max = costs[i];
+		}
+
+		long range = (long) max - min + 1;
+		if (range <= COUNTING_RANGE_MIN + (long) COUNTING_RANGE_PER_EDGE * n) {
+			return countingSort(costs, n, min, (int) range, reverse, workspace);
+		}
+		return packedSort(costs, n, reverse, workspace);
+	}
+
+	private static int[] countingSort(int[] costs, int n, int min, int range, boolean reverse, Workspace workspace) {
+		if (workspace.starts.length < range + 1) workspace.starts = new int[range + 1];
+		int[] starts = workspace.starts;
+		Arrays.fill(starts, 0, range + 1, 0);
+		for (int i = 0; i < n; ++i) {
+			starts[bucket(costs[i], min, range, reverse) + 1]++;
+		}
+		for (int b = 0; b < range; ++b) {
+			starts[b + 1] += starts[b];
+		}
+
+		int[] order = workspace.order;
+		for (int i = 0; i < n; ++i) {
+			order[starts[bucket(costs[i], min, range, reverse)]++] = i;
+		}
+		return order;
+	}
+
+	private static int bucket(int cost, int min, int range, boolean reverse) {
+		return reverse ? range - 1 - (cost - min) : cost - min;
+	}
+
+	/**
+	 * Packs cost and index in a positive long ordered as the indices returned by {@link #sort(int[], boolean)}.
+	 */
+	public static long key(int cost, int index, boolean reverse) {
+		// Maps the signed cost to an unsigned 32 bit value keeping its order
+		long unsigned = (cost ^ Integer.MIN_VALUE) & 0xFFFFFFFFL;
+		if (reverse) unsigned = 0xFFFFFFFFL - unsigned;
+		return (unsigned << 31) | index;
+	}
+	
+	public static int indexOf(long key) {
+		return (int) (key & Integer.MAX_VALUE);
+	}
+	
+	private static int[] packedSort(int[] costs, int n, boolean reverse, Workspace workspace) {
+		if (workspace.keys.length < n) workspace.keys = new long[n];
+		long[] keys = workspace.keys;
+		for (int i = 0; i < n; ++i) {
+			keys[i] = key(costs[i], i, reverse);
+		}
+		Arrays.sort(keys, 0, n);
+
+		int[] order = workspace.order;
+		for (int i = 0; i < n; ++i) {
+			order[i] = indexOf(keys[i]);
+		}
+		return order;
+	}
+
+}
@@ -1,13 +1,13 @@
 package it.garr.greenmst.algorithms;
 
-import it.garr.greenmst.types.LinkWithCost;
+import it.garr.greenmst.types.Edge;
 
 import java.util.List;
 import java.util.Vector;
 
 public interface IMinimumSpanningTreeAlgorithm {
 
-	public Vector<LinkWithCost> perform(List<LinkWithCost> topoEdges) throws Exception;
-	public Vector<LinkWithCost> perform(List<LinkWithCost> topoEdges, boolean reverse) throws Exception;
+	public Vector<Edge> perform(List<Edge> topoEdges) throws Exception;
+	public Vector<Edge> perform(List<Edge> topoEdges, boolean reverse) throws Exception;
 
 }
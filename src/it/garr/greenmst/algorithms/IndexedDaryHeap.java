@@ -0,0 +1,133 @@
+package it.garr.greenmst.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Indexed d-ary min-heap over the items 0..capacity-1, each with a long key.
+ *
+ * The position of every item in the heap is tracked, so the key of an item already
+ * queued can be lowered in O(log_d n) with {@link #decreaseKey(int, long)}. A larger
+ * arity makes the heap shallower, trading cheaper decrease-key operations (the common
+ * case on dense graphs) for more comparisons on {@link #poll()}.
+ *
+ * @see it.garr.greenmst.algorithms.PrimAlgorithm
+ *
+ */
+
+public class IndexedDaryHeap {
+
+	public static final int DEFAULT_ARITY = 4;
+
+	private final int arity;
+	private final int[] heap;
+	private final int[] position;
+	private final long[] keys;
+	private int size = 0;
+
+	public IndexedDaryHeap(int capacity) {
+		this(capacity, DEFAULT_ARITY);
+	}
+
+	public IndexedDaryHeap(int capacity, int arity) {
+		if (arity < 2) throw new IllegalArgumentException("Heap arity must be at least 2.");
+
+		this.arity = arity;
+		heap = new int[capacity];
+		position = new int[capacity];
+		keys = new long[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public boolean contains(int item) {
+		return position[item] >= 0;
+	}
+
+	public long getKey(int item) {
+		return keys[item];
+	}
+
+	public void insert(int item, long key) {
+		if (contains(item)) throw new IllegalArgumentException("Item " + item + " is already in the heap.");
+
+		keys[item] = key;
+		heap[size] = item;
+		position[item] = size;
+		siftUp(size++);
+	}
+
+	/**
+	 * Lowers the key of a queued item; keys not lower than the current one are ignored.
+	 *
+	 * @return true if the key has been lowered.
+	 */
+	public boolean decreaseKey(int item, long key) {
+		if (key >= keys[item]) return false;
+
+		keys[item] = key;
+		siftUp(position[item]);
+		return true;
+	}
+
+	/**
+	 * Removes and returns the item with the lowest key.
+	 */
+	public int poll() {
+		int top = heap[0];
+		position[top] = -1;
+
+		if (--size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int index) {
+		int item = heap[index];
+		long key = keys[item];
+
+		while (index > 0) {
+			int parent = (index - 1) / arity;
+			if (keys[heap[parent]] <= key) break;
+
+			heap[index] = heap[parent];
+			position[heap[index]] = index;
+			index = parent;
+		}
+		heap[index] = item;
+		position[item] = index;
+	}
+
+	private void siftDown(int index) {
+		int item = heap[index];
+		long key = keys[item];
+
+		while (true) {
+			int first = index * arity + 1;
+			if (first >= size) break;
+
+			int last = Math.min(first + arity, size);
+			int min = first;
+			for (int child = first + 1; child < last; ++child) {
+				if (keys[heap[child]] < keys[heap[min]]) min = child;
+			}
+			if (keys[heap[min]] >= key) break;
+
+			heap[index] = heap[min];
+			position[heap[index]] = index;
+			index = min;
+		}
+		heap[index] = item;
+		position[item] = index;
+	}
+
+}
@@ -0,0 +1,83 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.types.Edge;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits a topology into islands, the sets of links of each connected component.
+ *
+ * The minimum spanning forest of a topology is the union of the minimum spanning trees
+ * of its islands, which can therefore be computed independently. Like the algorithms,
+ * the partition keeps its buffers (switch index, disjoint sets and island lists) and
+ * reuses them, so that partitioning a topology of unchanged size allocates nothing.
+ *
+ * @see it.garr.greenmst.algorithms.DisjointSet
+ * @see it.garr.greenmst.GreenMST
+ *
+ */
+
+public class IslandPartition {
+
+	private final SwitchIndex nodes = new SwitchIndex();
+	private final DisjointSet components = new DisjointSet(0);
+	// Island of each disjoint-set root, -1 if not assigned yet
+	private int[] islandOfRoot = new int[0];
+	private final ArrayList<ArrayList<Edge>> islands = new ArrayList<ArrayList<Edge>>();
+	private int islandCount = 0;
+
+	/**
+	 * Partitions the edges, replacing the previous islands. Islands are numbered in the order
+	 * their first edge appears in edges, and keep the order of their edges.
+	 */
+	public void partition(List<Edge> edges) {
+		int n = edges.size();
+		nodes.clear();
+		for (int i = 0; i < n; ++i) {
+			Edge edge = edges.get(i);
+			nodes.indexOf(edge.getSrc());
+			nodes.indexOf(edge.getDst());
+		}
+
+		components.reset(nodes.size());
+		for (int i = 0; i < n; ++i) {
+			Edge edge = edges.get(i);
+			components.union(nodes.indexOf(edge.getSrc()), nodes.indexOf(edge.getDst()));
+		}
+
+		if (islandOfRoot.length < nodes.size()) islandOfRoot = new int[nodes.size()];
+		Arrays.fill(islandOfRoot, 0, nodes.size(), -1);
+
+		int previousCount = islandCount;
+		islandCount = 0;
+		for (int i = 0; i < n; ++i) {
+			Edge edge = edges.get(i);
+			int root = components.find(nodes.indexOf(edge.getSrc()));
+			if (islandOfRoot[root] < 0) {
+				islandOfRoot[root] = islandCount;
+				if (islands.size() == islandCount) islands.add(new ArrayList<Edge>());
+				else islands.get(islandCount).clear();
+				++islandCount;
+			}
+			islands.get(islandOfRoot[root]).add(edge);
+		}
+
+		// Islands not used any more do not keep their edges
+		for (int i = islandCount; i < previousCount; ++i) islands.get(i).clear();
+	}
+
+	public int getIslandCount() {
+		return islandCount;
+	}
+
+	/**
+	 * Returns the edges of the island, valid until the next partition.
+	 */
+	public List<Edge> getIsland(int island) {
+		if (island >= islandCount) throw new IndexOutOfBoundsException("Island " + island + " of " + islandCount + ".");
+		return islands.get(island);
+	}
+
+}
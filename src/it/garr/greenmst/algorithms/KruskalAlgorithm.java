@@ -1,147 +1,106 @@
 package it.garr.greenmst.algorithms;
 
-import it.garr.greenmst.types.LinkWithCost;
+import it.garr.greenmst.types.Edge;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Vector;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Kruskal's algorithm over a disjoint-set forest.
+ *
+ * The buffers of a computation (edges, costs, sort order, switch index and disjoint
+ * sets) are kept by the instance and reused, so that once they fit the topology the
+ * only allocation of a computation is the returned tree. Computations on the same
+ * instance are serialized.
+ *
+ * @see it.garr.greenmst.algorithms.IMinimumSpanningTreeAlgorithm
+ * @see it.garr.greenmst.algorithms.DisjointSet
+ *
+ */
+
 public class KruskalAlgorithm implements IMinimumSpanningTreeAlgorithm {
 	
 	protected static Logger logger = LoggerFactory.getLogger(KruskalAlgorithm.class);
+	
+	private Edge[] edges = new Edge[0];
+	private int[] costs = new int[0];
+	private final EdgeCostSorter.Workspace sortWorkspace = new EdgeCostSorter.Workspace();
+	private final SwitchIndex nodes = new SwitchIndex();
+	private final DisjointSet components = new DisjointSet(0);
 
 	@Override
-	public Vector<LinkWithCost> perform(List<LinkWithCost> topoEdges) throws Exception {
+	public Vector<Edge> perform(List<Edge> topoEdges) throws Exception {
 		return perform(topoEdges, false);
 	}
 	
 	@Override
 	// KRUSKAL ALGORITHM -- COLUMBIA UNIV. IMPL.
-    public Vector<LinkWithCost> perform(List<LinkWithCost> topoEdges, boolean reverse) throws Exception {
+    public synchronized Vector<Edge> perform(List<Edge> topoEdges, boolean reverse) throws Exception {
 		logger.debug("Starting to perform Kruskal algorithm...");
 		
-		if (reverse) {
-			Collections.sort(topoEdges, new Comparator<LinkWithCost>() {
-				public int compare(LinkWithCost link1, LinkWithCost link2) {
-					return new Integer(link2.getCost()).compareTo(link1.getCost());
-				}
-			});
-		} else {
-			Collections.sort(topoEdges, new Comparator<LinkWithCost>() {
-				public int compare(LinkWithCost link1, LinkWithCost link2) {
-					return new Integer(link1.getCost()).compareTo(link2.getCost());
-				}
-			});
+		// Reads each cost once, then sorts edge indices on the snapshot
+		int n = topoEdges.size();
+		if (edges.length < n) {
+			edges = new Edge[n];
+			costs = new int[n];
 		}
+		for (int i = 0; i < n; ++i) {
+			edges[i] = topoEdges.get(i);
+			costs[i] = edges[i].getCost();
+		}
+		int[] order = EdgeCostSorter.sort(costs, n, reverse, sortWorkspace);
 		
-		logger.trace("Kruskal performed on the following topoEdges: " + printEdges(topoEdges));
+		if (logger.isTraceEnabled()) logger.trace("Kruskal performed on the following topoEdges: {}", printEdges(topoEdges));
 		
-		HashMap<Long, HashSet<Long>> nodes = new HashMap<Long, HashSet<Long>>();
+		// Assigns a dense index to each switch, used as element of the disjoint-set forest
+		nodes.clear();
+		for (int i = 0; i < n; ++i) {
+			nodes.indexOf(edges[i].getSrc());
+			nodes.indexOf(edges[i].getDst());
+		}
 		
-        // Generates nodes Hashmap containing one entry for each switch
-        for (LinkWithCost lt: topoEdges) {
-            if (!nodes.containsKey(lt.getSrc())) {
-            	// Create set of connect components [singleton] for this node
-                nodes.put(lt.getSrc(), new HashSet<Long>());
-                nodes.get(lt.getSrc()).add(lt.getSrc());
-            }
-            
-            if (!nodes.containsKey(lt.getDst())) {
-            	// Create set of connect components [singleton] for this node
-                nodes.put(lt.getDst(), new HashSet<Long>());
-                nodes.get(lt.getDst()).add(lt.getDst());
-            }
-        }
-        
-        logger.trace("Kruskal generated the following nodes structure: " + printNodes(nodes));
-    	
-    	Vector<LinkWithCost> mstEdges = new Vector<LinkWithCost>();
-    	Vector<LinkWithCost> edgesDone = new Vector<LinkWithCost>();
-    	
-    	logger.trace("Entering Kruskal cycle...");
-    	for (LinkWithCost curEdge: topoEdges) {
-    		logger.trace("curEdge = {}", new Object[] { curEdge });
-    		
-	        if (edgesDone.contains(curEdge)) {
-	        	logger.trace("Edge already computed by Kruskal. Not computing again!");
-	        } else {
-	        	edgesDone.add(curEdge); // This way the same edge will not be processed two times (if present two times in topoEdges)
-	        	if (nodes.get(curEdge.getSrc()).equals(nodes.get(curEdge.getDst()))) {
-	        		logger.trace("Edge has source set equal to destination set. Not considering for MST!");
-	        	} else {
-	        		HashSet<Long> src = null, dst = null;
-	        		Long dstHashSetIndex = 0L;
-	        		
-	        		logger.trace("Comparing size of source and destination of curEdge: (src = {}, dst = {}).", new Object[] {nodes.get(curEdge.getSrc()).size(), nodes.get(curEdge.getDst()).size()});
-	        		if (nodes.get(curEdge.getSrc()).size() > nodes.get(curEdge.getDst()).size()) {
-	        			// have to transfer all nodes including curEdge.to
-	        			src = nodes.get(curEdge.getDst());
-	        			dst = nodes.get(dstHashSetIndex = curEdge.getSrc());
-	        		} else {
-	        			// have to transfer all nodes including curEdge.from
-	        			src = nodes.get(curEdge.getSrc());
-	        			dst = nodes.get(dstHashSetIndex = curEdge.getDst());
-	        		}
-	        		logger.trace("Set src = {}, dst = {}.", new Object[] {printHash(src), printHash(dst)});
-	        		
-	        		Object[] srcArray = src.toArray();
-	        		int transferSize = srcArray.length;
-	        		
-	        		logger.trace("Moving each node from set: src into set: dst.");
-	        		logger.trace("Updating appropriate index in array: nodes.");
-	        		for (int j = 0; j < transferSize; j++) {
-	        			if (src.remove(srcArray[j])) {
-	        				dst.add((Long) srcArray[j]);
-	        				nodes.put((Long) srcArray[j], nodes.get(dstHashSetIndex));
-	        			} else {
-	        				logger.error("Error while removing element {} from array {}.", new Object[] {srcArray[j], src});
-	        				throw new Exception("Kruskal - Error performing Kruskal algorithm (set union).");
-	        			}
-	        		}
-	        		logger.trace("Kruskal updated the nodes structure: " + printNodes(nodes));
-	        		
-	        		logger.trace("Kruskal add the edge {} to mstEdges.", new Object[] {curEdge});
-	        		mstEdges.add(curEdge);
-	        	}
-	        }
-    	}
-    	logger.trace("End of Kruskal cycle.");
-    	logger.debug("Computed MST by Kruskal: "  + printEdges(mstEdges));
-    	logger.debug("End of Kruskal algorithm.");
-    	
-    	return mstEdges;
-    }
-	
-	private static String printEdges(Iterable<LinkWithCost> edges) {
-    	String s  = "\n";
-    	for (LinkWithCost e: edges) {
-    		s += e.toString() + "\n";
-    	}
-    	return s;
-    }
-	
-	private static String printNodes(HashMap<Long, HashSet<Long>> nodes) {
-		String s  = "\n";
-    	for (Map.Entry<Long, HashSet<Long>> entry: nodes.entrySet()) {
-    		s += "Node (" + entry.getKey() + "): " + printHash(entry.getValue()) + "\n";
-    	}
-    	return s;
-	}
-	
-	private static String printHash(HashSet<Long> value) {
-		String s  = "(";
-		for (Long set : value) {
-			s += set + ", ";
+		if (logger.isTraceEnabled()) logger.trace("Kruskal indexed {} nodes.", nodes.size());
+		
+		components.reset(nodes.size());
+		Vector<Edge> mstEdges = new Vector<Edge>(Math.max(1, nodes.size() - 1));
+		
+		// Checked once, the cycle runs once per edge
+		boolean trace = logger.isTraceEnabled();
+		logger.trace("Entering Kruskal cycle...");
+		for (int i = 0; i < n; ++i) {
+			Edge curEdge = edges[order[i]];
+			
+			// Once every node is in the same component the tree is complete
+			if (components.getComponentCount() == 1) break;
+			
+			if (trace) logger.trace("curEdge = {}", curEdge);
+			
+			// Duplicated edges (or the inverse of an edge already taken) always fall in this case
+			if (!components.union(nodes.indexOf(curEdge.getSrc()), nodes.indexOf(curEdge.getDst()))) {
+				if (trace) logger.trace("Edge has source set equal to destination set. Not considering for MST!");
+			} else {
+				if (trace) logger.trace("Kruskal add the edge {} to mstEdges.", curEdge);
+				mstEdges.add(curEdge);
+			}
 		}
-		s += ")";
-    	return s;
+		// Edges are not kept beyond the computation
+		Arrays.fill(edges, 0, n, null);
+		
+		logger.trace("End of Kruskal cycle.");
+		if (logger.isDebugEnabled()) logger.debug("Computed MST by Kruskal: {}", printEdges(mstEdges));
+		logger.debug("End of Kruskal algorithm.");
+		
+		return mstEdges;
 	}
+	
+	private static String printEdges(Iterable<Edge> edges) {
+		StringBuilder s = new StringBuilder("\n");
+		for (Edge e: edges) s.append(e).append('\n');
+		return s.toString();
+    }
 
 }
@@ -0,0 +1,224 @@
+package it.garr.greenmst.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Array based link-cut tree (Sleator-Tarjan) over a dynamic forest.
+ *
+ * Each node carries a long value and every preferred path keeps the node with the
+ * maximum value as aggregate, so the heaviest node on the path between two nodes is
+ * found in amortized O(log n). Edges of a weighted graph are represented as nodes
+ * themselves, placed between their two endpoints, so path maximum queries return
+ * the heaviest edge. Nodes are allocated with {@link #newNode(long)} and recycled
+ * with {@link #freeNode(int)}.
+ *
+ * @see it.garr.greenmst.algorithms.DynamicMinimumSpanningTree
+ *
+ */
+
+public class LinkCutTree {
+
+	public static final int NIL = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private int[] left, right, parent;
+	private long[] value;
+	private int[] maxNode;
+	private boolean[] flip;
+	private int[] stack;
+
+	private int allocated = 0;
+	private int[] freeNodes = new int[INITIAL_CAPACITY];
+	private int freeCount = 0;
+
+	public LinkCutTree() {
+		left = new int[INITIAL_CAPACITY];
+		right = new int[INITIAL_CAPACITY];
+		parent = new int[INITIAL_CAPACITY];
+		value = new long[INITIAL_CAPACITY];
+		maxNode = new int[INITIAL_CAPACITY];
+		flip = new boolean[INITIAL_CAPACITY];
+		stack = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Creates a new isolated node and returns its index.
+	 */
+	public int newNode(long nodeValue) {
+		int node;
+		if (freeCount > 0) {
+			node = freeNodes[--freeCount];
+		} else {
+			if (allocated == left.length) grow();
+			node = allocated++;
+		}
+
+		left[node] = right[node] = parent[node] = NIL;
+		value[node] = nodeValue;
+		maxNode[node] = node;
+		flip[node] = false;
+		return node;
+	}
+
+	/**
+	 * Releases a node that has already been cut from every neighbour.
+	 */
+	public void freeNode(int node) {
+		if (freeCount == freeNodes.length) freeNodes = Arrays.copyOf(freeNodes, freeNodes.length * 2);
+		freeNodes[freeCount++] = node;
+	}
+
+	public long getValue(int node) {
+		return value[node];
+	}
+
+	public void setValue(int node, long nodeValue) {
+		// Once accessed, node is the root of its splay tree: no other aggregate includes it
+		access(node);
+		value[node] = nodeValue;
+		update(node);
+	}
+
+	/**
+	 * Adds the tree edge (child, node). The two nodes must be in different trees.
+	 */
+	public void link(int child, int node) {
+		makeRoot(child);
+		parent[child] = node;
+	}
+
+	/**
+	 * Removes the tree edge between two adjacent nodes.
+	 */
+	public void cut(int first, int second) {
+		makeRoot(first);
+		access(second);
+		// first is now the only node preceding second on the preferred path
+		int l = left[second];
+		if (l != NIL) {
+			parent[l] = NIL;
+			left[second] = NIL;
+			update(second);
+		}
+	}
+
+	public boolean connected(int first, int second) {
+		if (first == second) return true;
+		return findRoot(first) == findRoot(second);
+	}
+
+	/**
+	 * Returns the node with the maximum value on the path between two connected nodes.
+	 */
+	public int pathMax(int first, int second) {
+		makeRoot(first);
+		access(second);
+		return maxNode[second];
+	}
+
+	public int findRoot(int node) {
+		access(node);
+		int root = node;
+		push(root);
+		while (left[root] != NIL) {
+			root = left[root];
+			push(root);
+		}
+		splay(root);
+		return root;
+	}
+
+	private void makeRoot(int node) {
+		access(node);
+		flip[node] = !flip[node];
+		push(node);
+	}
+
+	private void access(int node) {
+		int last = NIL;
+		for (int y = node; y != NIL; y = parent[y]) {
+			splay(y);
+			right[y] = last;
+			update(y);
+			last = y;
+		}
+		splay(node);
+	}
+
+	private boolean isRoot(int node) {
+		int p = parent[node];
+		return p == NIL || (left[p] != node && right[p] != node);
+	}
+
+	private void push(int node) {
+		if (flip[node]) {
+			int l = left[node];
+			left[node] = right[node];
+			right[node] = l;
+			if (left[node] != NIL) flip[left[node]] = !flip[left[node]];
+			if (right[node] != NIL) flip[right[node]] = !flip[right[node]];
+			flip[node] = false;
+		}
+	}
+
+	private void update(int node) {
+		int max = node;
+		int l = left[node], r = right[node];
+		if (l != NIL && value[maxNode[l]] > value[max]) max = maxNode[l];
+		if (r != NIL && value[maxNode[r]] > value[max]) max = maxNode[r];
+		maxNode[node] = max;
+	}
+
+	private void splay(int node) {
+		// Pending reversals must be pushed from the top of the splay tree down to node
+		int depth = 0;
+		stack[depth++] = node;
+		for (int y = node; !isRoot(y); y = parent[y]) stack[depth++] = parent[y];
+		while (depth > 0) push(stack[--depth]);
+
+		while (!isRoot(node)) {
+			int y = parent[node];
+			if (!isRoot(y)) {
+				int z = parent[y];
+				rotate(((left[y] == node) == (left[z] == y)) ? y : node);
+			}
+			rotate(node);
+		}
+	}
+
+	private void rotate(int node) {
+		int y = parent[node], z = parent[y];
+		boolean yIsRoot = isRoot(y);
+
+		if (left[y] == node) {
+			left[y] = right[node];
+			if (left[y] != NIL) parent[left[y]] = y;
+			right[node] = y;
+		} else {
+			right[y] = left[node];
+			if (right[y] != NIL) parent[right[y]] = y;
+			left[node] = y;
+		}
+		parent[y] = node;
+		parent[node] = z;
+		if (!yIsRoot) {
+			if (left[z] == y) left[z] = node;
+			else right[z] = node;
+		}
+
+		update(y);
+		update(node);
+	}
+
+	private void grow() {
+		int capacity = left.length * 2;
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		parent = Arrays.copyOf(parent, capacity);
+		value = Arrays.copyOf(value, capacity);
+		maxNode = Arrays.copyOf(maxNode, capacity);
+		flip = Arrays.copyOf(flip, capacity);
+		stack = Arrays.copyOf(stack, capacity);
+	}
+
+}
@@ -0,0 +1,37 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.types.Edge;
+
+import java.util.BitSet;
+import java.util.Vector;
+
+/**
+ * Result of a minimum spanning tree computation, with constant-time membership.
+ *
+ * Tree edges are marked in a BitSet over the {@link Edge} ids, so checking whether an
+ * edge belongs to the tree is a single lookup, and two results can be compared bit by bit.
+ *
+ * @see it.garr.greenmst.algorithms.IMinimumSpanningTreeAlgorithm
+ * @see it.garr.greenmst.types.Edge
+ *
+ */
+
+public class MinimumSpanningTree {
+
+	private final Vector<Edge> edges;
+	private final BitSet edgeIds = new BitSet();
+
+	public MinimumSpanningTree(Vector<Edge> edges) {
+		this.edges = edges;
+		for (Edge edge : edges) edgeIds.set(edge.getId());
+	}
+
+	public Vector<Edge> getEdges() {
+		return edges;
+	}
+
+	public boolean contains(Edge edge) {
+		return edgeIds.get(edge.getId());
+	}
+
+}
@@ -0,0 +1,194 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.types.Edge;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Boruvka's algorithm with each round parallelized on a ForkJoinPool.
+ *
+ * In every round the cheapest edge leaving each component is found by a parallel scan
+ * of the remaining edges, which also drops the edges already internal to a component.
+ * The selected edges are then merged into a {@link DisjointSet}, so the number of
+ * components at least halves at each round. Edges are ordered by the same (cost,
+ * position) key as {@link KruskalAlgorithm}: the minimum spanning forest is unique for
+ * that order, and it is returned in Kruskal's order, so the output is identical.
+ *
+ * Topologies with fewer edges than the parallelism threshold are delegated to
+ * {@link KruskalAlgorithm}, as forking would cost more than it saves.
+ *
+ * The pool is given by the caller, which sizes it and shuts it down: instances created
+ * for the same module share it. The switch index is kept by the instance and reused, so
+ * computations on the same instance are serialized.
+ *
+ * @see it.garr.greenmst.algorithms.KruskalAlgorithm
+ * @see it.garr.greenmst.algorithms.SwitchIndex
+ * @see it.garr.greenmst.algorithms.IMinimumSpanningTreeAlgorithm
+ *
+ */
+
+public class ParallelBoruvkaAlgorithm implements IMinimumSpanningTreeAlgorithm {
+
+	protected static Logger logger = LoggerFactory.getLogger(ParallelBoruvkaAlgorithm.class);
+
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 15;
+	// Edges scanned by a single task
+	private static final int CHUNK_SIZE = 1 << 12;
+	private static final long NONE = Long.MAX_VALUE;
+
+	private final int parallelThreshold;
+	private final ForkJoinPool pool;
+	private final KruskalAlgorithm sequential = new KruskalAlgorithm();
+	private final SwitchIndex nodes = new SwitchIndex();
+
+	public ParallelBoruvkaAlgorithm(ForkJoinPool pool) {
+		this(DEFAULT_PARALLEL_THRESHOLD, pool);
+	}
+
+	public ParallelBoruvkaAlgorithm(int parallelThreshold, ForkJoinPool pool) {
+		this.parallelThreshold = parallelThreshold;
+		this.pool = pool;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	@Override
+	public Vector<Edge> perform(List<Edge> topoEdges) throws Exception {
+		return perform(topoEdges, false);
+	}
+
+	@Override
+	public synchronized Vector<Edge> perform(List<Edge> topoEdges, boolean reverse) throws Exception {
+		if (topoEdges.size() < parallelThreshold) return sequential.perform(topoEdges, reverse);
+
+		logger.debug("Starting to perform parallel Boruvka algorithm on {} edges...", new Object[] { topoEdges.size() });
+
+		Edge[] edges = topoEdges.toArray(new Edge[topoEdges.size()]);
+		nodes.clear();
+		int[] src = new int[edges.length], dst = new int[edges.length];
+		long[] keys = new long[edges.length];
+		for (int i = 0; i < edges.length; ++i) {
+			src[i] = nodes.indexOf(edges[i].getSrc());
+			dst[i] = nodes.indexOf(edges[i].getDst());
+			keys[i] = EdgeCostSorter.key(edges[i].getCost(), i, reverse);
+		}
+
+		int n = nodes.size();
+		DisjointSet components = new DisjointSet(n);
+		int[] label = new int[n];
+		for (int v = 0; v < n; ++v) label[v] = v;
+		AtomicLongArray best = new AtomicLongArray(n);
+
+		// Indices of the edges still joining different components, -1 once dropped
+		int[] live = new int[edges.length];
+		for (int i = 0; i < live.length; ++i) live[i] = i;
+		int liveCount = live.length;
+
+		long[] selected = new long[Math.max(0, n - 1)];
+		int selectedCount = 0;
+		int rounds = 0;
+
+		while (liveCount > 0) {
+			for (int v = 0; v < n; ++v) best.set(v, NONE);
+			pool.invoke(new CheapestEdgeTask(live, 0, liveCount, src, dst, keys, label, best));
+
+			boolean merged = false;
+			for (int c = 0; c < n; ++c) {
+				long key = best.get(c);
+				if (key == NONE) continue;
+
+				int e = EdgeCostSorter.indexOf(key);
+				if (components.union(src[e], dst[e])) {
+					selected[selectedCount++] = key;
+					merged = true;
+				}
+			}
+			if (!merged) break;
+
+			// Components are relabelled sequentially, path compression is not thread safe
+			for (int v = 0; v < n; ++v) label[v] = components.find(v);
+
+			int kept = 0;
+			for (int i = 0; i < liveCount; ++i) {
+				int e = live[i];
+				if (e >= 0 && label[src[e]] != label[dst[e]]) live[kept++] = e;
+			}
+			liveCount = kept;
+			rounds++;
+		}
+
+		// Kruskal takes the edges by increasing key
+		Arrays.sort(selected, 0, selectedCount);
+		Vector<Edge> mstEdges = new Vector<Edge>(selectedCount);
+		for (int i = 0; i < selectedCount; ++i) mstEdges.add(edges[EdgeCostSorter.indexOf(selected[i])]);
+
+		logger.debug("End of parallel Boruvka algorithm, {} edges in {} rounds.", new Object[] { selectedCount, rounds });
+		return mstEdges;
+	}
+
+	/**
+	 * Finds the cheapest edge leaving each component among live[from..to), marking internal edges as dropped.
+	 */
+	private static class CheapestEdgeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] live, src, dst, label;
+		private final long[] keys;
+		private final AtomicLongArray best;
+		private final int from, to;
+
+		CheapestEdgeTask(int[] live, int from, int to, int[] src, int[] dst, long[] keys, int[] label, AtomicLongArray best) {
+			this.live = live;
+			this.from = from;
+			this.to = to;
+			this.src = src;
+			this.dst = dst;
+			this.keys = keys;
+			this.label = label;
+			this.best = best;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > CHUNK_SIZE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new CheapestEdgeTask(live, from, middle, src, dst, keys, label, best),
+						  new CheapestEdgeTask(live, middle, to, src, dst, keys, label, best));
+				return;
+			}
+
+			for (int i = from; i < to; ++i) {
+				int e = live[i];
+				int first = label[src[e]], second = label[dst[e]];
+				if (first == second) {
+					live[i] = -1;
+					continue;
+				}
+				lower(first, keys[e]);
+				lower(second, keys[e]);
+			}
+		}
+
+		private void lower(int component, long key) {
+			long current = best.get(component);
+			while (key < current && !best.compareAndSet(component, current, key)) current = best.get(component);
+		}
+
+	}
+
+}
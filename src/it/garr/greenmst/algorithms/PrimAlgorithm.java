@@ -0,0 +1,114 @@
+package it.garr.greenmst.algorithms;
+
+import it.garr.greenmst.types.Edge;
+
+import java.util.List;
+import java.util.Vector;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prim's algorithm over an indexed d-ary heap, suited to dense topologies.
+ *
+ * Edges are stored in a compact adjacency structure (one array of neighbours and one of
+ * edge indices, with per-switch offsets) and every switch is queued at most once, its key
+ * lowered whenever a cheaper connecting edge is found. Disconnected topologies produce a
+ * spanning forest, as {@link KruskalAlgorithm} does. The switch index is kept by the
+ * instance and reused, so computations on the same instance are serialized.
+ *
+ * @see it.garr.greenmst.algorithms.IndexedDaryHeap
+ * @see it.garr.greenmst.algorithms.SwitchIndex
+ * @see it.garr.greenmst.algorithms.IMinimumSpanningTreeAlgorithm
+ *
+ */
+
+public class PrimAlgorithm implements IMinimumSpanningTreeAlgorithm {
+
+	protected static Logger logger = LoggerFactory.getLogger(PrimAlgorithm.class);
+
+	private static final int NONE = -1;
+
+	private final SwitchIndex nodes = new SwitchIndex();
+
+	@Override
+	public Vector<Edge> perform(List<Edge> topoEdges) throws Exception {
+		return perform(topoEdges, false);
+	}
+
+	@Override
+	public synchronized Vector<Edge> perform(List<Edge> topoEdges, boolean reverse) throws Exception {
+		logger.debug("Starting to perform Prim algorithm...");
+
+		Edge[] edges = topoEdges.toArray(new Edge[topoEdges.size()]);
+
+		// Assigns a dense index to each switch and counts its incident edges
+		nodes.clear();
+		int[] src = new int[edges.length], dst = new int[edges.length];
+		int[] degree = new int[edges.length * 2 + 1];
+		for (int i = 0; i < edges.length; ++i) {
+			src[i] = nodes.indexOf(edges[i].getSrc());
+			dst[i] = nodes.indexOf(edges[i].getDst());
+			if (src[i] == dst[i]) continue;
+			degree[src[i]]++;
+			degree[dst[i]]++;
+		}
+		int n = nodes.size();
+
+		// Adjacency of switch v is in neighbours/incident[offsets[v]..offsets[v+1])
+		int[] offsets = new int[n + 1];
+		for (int v = 0; v < n; ++v) offsets[v + 1] = offsets[v] + degree[v];
+		int[] neighbours = new int[offsets[n]], incident = new int[offsets[n]];
+		int[] fill = new int[n];
+		System.arraycopy(offsets, 0, fill, 0, n);
+		for (int i = 0; i < edges.length; ++i) {
+			if (src[i] == dst[i]) continue;
+			neighbours[fill[src[i]]] = dst[i];
+			incident[fill[src[i]]++] = i;
+			neighbours[fill[dst[i]]] = src[i];
+			incident[fill[dst[i]]++] = i;
+		}
+
+		// Reads each cost once; keys order edges by cost, then by position as Kruskal does
+		long[] edgeKeys = new long[edges.length];
+		for (int i = 0; i < edges.length; ++i) edgeKeys[i] = EdgeCostSorter.key(edges[i].getCost(), i, reverse);
+
+		IndexedDaryHeap heap = new IndexedDaryHeap(n);
+		int[] bestEdge = new int[n];
+		boolean[] inTree = new boolean[n];
+		Vector<Edge> mstEdges = new Vector<Edge>();
+
+		for (int root = 0; root < n; ++root) {
+			if (inTree[root]) continue;
+
+			// Every unreached switch starts a new tree of the forest
+			bestEdge[root] = NONE;
+			heap.insert(root, Long.MIN_VALUE);
+
+			while (!heap.isEmpty()) {
+				int v = heap.poll();
+				inTree[v] = true;
+				if (bestEdge[v] != NONE) {
+					logger.trace("Prim add the edge {} to mstEdges.", new Object[] { edges[bestEdge[v]] });
+					mstEdges.add(edges[bestEdge[v]]);
+				}
+
+				for (int a = offsets[v]; a < offsets[v + 1]; ++a) {
+					int u = neighbours[a], e = incident[a];
+					if (inTree[u]) continue;
+
+					if (!heap.contains(u)) {
+						bestEdge[u] = e;
+						heap.insert(u, edgeKeys[e]);
+					} else if (heap.decreaseKey(u, edgeKeys[e])) {
+						bestEdge[u] = e;
+					}
+				}
+			}
+		}
+
+		logger.debug("End of Prim algorithm, {} edges in the spanning forest.", new Object[] { mstEdges.size() });
+		return mstEdges;
+	}
+
+}
@@ -0,0 +1,78 @@
+package it.garr.greenmst.algorithms;
+
+import java.util.Arrays;
+
+/**
+ * Assigns dense indices 0..size()-1 to switch dpids, in order of first appearance.
+ *
+ * Dpids are kept in a primitive open-addressed table, so lookups neither box nor
+ * allocate, and {@link #clear()} keeps the table: once grown to the largest topology
+ * an index can be rebuilt on every computation without allocating.
+ *
+ * @see it.garr.greenmst.algorithms.KruskalAlgorithm
+ *
+ */
+
+public class SwitchIndex {
+
+	private static final int INITIAL_CAPACITY = 64;
+	private static final int EMPTY = -1;
+
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private int[] indices = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	public SwitchIndex() {
+		Arrays.fill(indices, EMPTY);
+	}
+
+	/**
+	 * Returns the index of the switch, assigning the next free one if the switch is new.
+	 */
+	public int indexOf(long switchId) {
+		int mask = keys.length - 1;
+		int slot = hash(switchId) & mask;
+		while (indices[slot] != EMPTY) {
+			if (keys[slot] == switchId) return indices[slot];
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = switchId;
+		indices[slot] = size++;
+		if (size > keys.length / 2) rehash();
+		return size - 1;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		if (size == 0) return;
+		Arrays.fill(indices, EMPTY);
+		size = 0;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		int[] oldIndices = indices;
+		keys = new long[oldKeys.length * 2];
+		indices = new int[oldKeys.length * 2];
+		Arrays.fill(indices, EMPTY);
+
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; ++i) {
+			if (oldIndices[i] == EMPTY) continue;
+			int slot = hash(oldKeys[i]) & mask;
+			while (indices[slot] != EMPTY) slot = (slot + 1) & mask;
+			keys[slot] = oldKeys[i];
+			indices[slot] = oldIndices[i];
+		}
+	}
+
+	private static int hash(long switchId) {
+		long h = switchId * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
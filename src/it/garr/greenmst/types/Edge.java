@@ -0,0 +1,159 @@
+package it.garr.greenmst.types;
+
+import it.garr.greenmst.TopologyCostsLoader;
+
+import java.util.ArrayList;
+
+/**
+ * Immutable, canonical undirected edge between two switch ports.
+ *
+ * Endpoints are normalized so that (src, srcPort) is never greater than (dst, dstPort),
+ * hence a link and its inverse are the same edge. Edges are interned by
+ * {@link #valueOf(long, int, long, int)}: there is a single instance per (dpid, port,
+ * dpid, port), compared by identity, with a precomputed hash and a dense id that can
+ * index arrays and BitSets. Looking up an already known edge does not allocate.
+ *
+ * This is the representation used internally by GreenMST and by the MST algorithms;
+ * {@link LinkWithCost} is only the view exposed through the REST api.
+ *
+ * @see it.garr.greenmst.types.LinkWithCost
+ *
+ */
+
+public final class Edge {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	// Open-addressed interning table, guarded by the Edge class lock
+	private static Edge[] table = new Edge[INITIAL_CAPACITY];
+	private static ArrayList<Edge> edgesById = new ArrayList<Edge>();
+
+	private final long src, dst;
+	private final short srcPort, dstPort;
+	private final int hash;
+	private final int id;
+
+	private Edge(long src, short srcPort, long dst, short dstPort, int hash, int id) {
+		this.src = src;
+		this.srcPort = srcPort;
+		this.dst = dst;
+		this.dstPort = dstPort;
+		this.hash = hash;
+		this.id = id;
+	}
+
+	/**
+	 * Returns the canonical edge between the two switch ports, in whatever order they are given.
+	 */
+	public static Edge valueOf(long srcId, int srcPort, long dstId, int dstPort) {
+		long src = srcId, dst = dstId;
+		short sPort = (short) srcPort, dPort = (short) dstPort;
+		if (src > dst || (src == dst && sPort > dPort)) {
+			src = dstId;
+			dst = srcId;
+			sPort = (short) dstPort;
+			dPort = (short) srcPort;
+		}
+
+		int hash = hash(src, sPort, dst, dPort);
+		synchronized (Edge.class) {
+			int mask = table.length - 1;
+			int slot = hash & mask;
+			for (Edge e = table[slot]; e != null; e = table[slot]) {
+				if (e.hash == hash && e.src == src && e.dst == dst && e.srcPort == sPort && e.dstPort == dPort) return e;
+				slot = (slot + 1) & mask;
+			}
+
+			Edge edge = new Edge(src, sPort, dst, dPort, hash, edgesById.size());
+			edgesById.add(edge);
+			table[slot] = edge;
+			if (edgesById.size() > table.length / 2) rehash();
+			return edge;
+		}
+	}
+
+	public static Edge valueOf(LinkWithCost link) {
+		return valueOf(link.getSrc(), link.getSrcPort(), link.getDst(), link.getDstPort());
+	}
+
+	/**
+	 * Returns the edge with the given id.
+	 */
+	public static Edge get(int id) {
+		synchronized (Edge.class) {
+			return edgesById.get(id);
+		}
+	}
+
+	public long getSrc() {
+		return src;
+	}
+
+	public short getSrcPort() {
+		return srcPort;
+	}
+
+	public long getDst() {
+		return dst;
+	}
+
+	public short getDstPort() {
+		return dstPort;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getCost() {
+		return TopologyCostsLoader.getTopologyCosts().getEffectiveCost(src, dst);
+	}
+
+	public LinkWithCost toLink() {
+		return new LinkWithCost(src, srcPort, dst, dstPort);
+	}
+	
+	/**
+	 * Returns the REST view of the edge with its current cost fixed, so that later cost changes do not alter it.
+	 */
+	public LinkWithCost toFixedCostLink() {
+		return new LinkWithCost(src, srcPort, dst, dstPort, getCost());
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		// Edges are interned, so there is a single instance for each pair of ports
+		return this == obj;
+	}
+
+	@Override
+	public String toString() {
+		return "Edge (" + src + ", " + dst + ") with cost: " + getCost();
+	}
+
+	private static void rehash() {
+		Edge[] newTable = new Edge[table.length * 2];
+		int mask = newTable.length - 1;
+		for (Edge e : edgesById) {
+			int slot = e.hash & mask;
+			while (newTable[slot] != null) slot = (slot + 1) & mask;
+			newTable[slot] = e;
+		}
+		table = newTable;
+	}
+
+	private static int hash(long src, short srcPort, long dst, short dstPort) {
+		long h = src * 0x9E3779B97F4A7C15L + dst;
+		h = h * 31 + ((srcPort & 0xFFFFL) << 16 | (dstPort & 0xFFFFL));
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+}
@@ -0,0 +1,85 @@
+package it.garr.greenmst.types;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of durations in nanoseconds, with buckets in the style of HdrHistogram.
+ *
+ * Values below 32 have a bucket each; larger values are split in powers of two, each
+ * divided in 16 linear sub-buckets, so that any recorded value is known within 1/16
+ * (about 6%) of its magnitude. Recording is a few atomic increments and never allocates;
+ * readers see a consistent enough view without blocking writers.
+ *
+ * @see it.garr.greenmst.GreenMSTStats
+ *
+ */
+
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		counts.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		sum.addAndGet(nanos);
+
+		long current = max.get();
+		while (nanos > current && !max.compareAndSet(current, nanos)) current = max.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getSum() {
+		return sum.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.get();
+		return (n == 0) ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * Returns the highest value of the bucket holding the given percentile (0-100), never above the maximum recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = count.get();
+		if (n == 0) return 0;
+
+		long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * n));
+		long seen = 0;
+		for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+			seen += counts.get(bucket);
+			if (seen >= rank) return Math.min(highestValueOf(bucket), max.get());
+		}
+		return max.get();
+	}
+
+	static int bucketOf(long value) {
+		if (value < 2 * SUB_BUCKETS) return (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return SUB_BUCKETS * shift + (int) (value >>> shift);
+	}
+
+	static long highestValueOf(int bucket) {
+		if (bucket < 2 * SUB_BUCKETS) return bucket;
+		int shift = bucket / SUB_BUCKETS - 1;
+		long mantissa = bucket - SUB_BUCKETS * shift;
+		return ((mantissa + 1) << shift) - 1;
+	}
+
+}
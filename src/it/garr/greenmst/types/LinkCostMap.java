@@ -0,0 +1,183 @@
+package it.garr.greenmst.types;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressed map from an undirected switch pair to an int cost.
+ *
+ * Keys are normalized as (min dpid, max dpid) and stored in parallel primitive
+ * arrays with linear probing, so lookups neither allocate nor box. Entries can be
+ * visited in place with {@link #nextSlot(int)} and the slot accessors. A map made
+ * read-only with {@link #freeze()} rejects every change, so that it can be shared.
+ *
+ * @see it.garr.greenmst.types.TopologyCosts
+ *
+ */
+
+public class LinkCostMap {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private long[] firsts;
+	private long[] seconds;
+	private int[] values;
+	private boolean[] used;
+	private int size = 0;
+	private boolean frozen = false;
+
+	public LinkCostMap() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public LinkCostMap(int expectedSize) {
+		allocate(capacityFor(expectedSize));
+	}
+
+	public int get(long source, long destination, int defaultValue) {
+		int slot = find(Math.min(source, destination), Math.max(source, destination));
+		return (slot < 0) ? defaultValue : values[slot];
+	}
+
+	public boolean containsKey(long source, long destination) {
+		return find(Math.min(source, destination), Math.max(source, destination)) >= 0;
+	}
+
+	/**
+	 * Associates the cost to the link between the two switches.
+	 *
+	 * @return the previous cost, or defaultValue if the link had none.
+	 */
+	public int put(long source, long destination, int value, int defaultValue) {
+		checkWritable();
+		long first = Math.min(source, destination), second = Math.max(source, destination);
+
+		int mask = used.length - 1;
+		int slot = hash(first, second) & mask;
+		while (used[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second) {
+				int previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		firsts[slot] = first;
+		seconds[slot] = second;
+		values[slot] = value;
+		used[slot] = true;
+		if (++size > used.length / 2) rehash(used.length * 2);
+
+		return defaultValue;
+	}
+
+	public void putAll(LinkCostMap other) {
+		for (int slot = other.nextSlot(-1); slot >= 0; slot = other.nextSlot(slot)) {
+			put(other.firsts[slot], other.seconds[slot], other.values[slot], 0);
+		}
+	}
+
+	public void clear() {
+		checkWritable();
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	/**
+	 * Makes the map read-only, following changes throw UnsupportedOperationException.
+	 */
+	public LinkCostMap freeze() {
+		frozen = true;
+		return this;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the first occupied slot after the given one, or -1 when there are no more.
+	 * Start the visit with -1.
+	 */
+	public int nextSlot(int slot) {
+		for (int i = slot + 1; i < used.length; ++i) {
+			if (used[i]) return i;
+		}
+		return -1;
+	}
+
+	public long firstAt(int slot) {
+		return firsts[slot];
+	}
+
+	public long secondAt(int slot) {
+		return seconds[slot];
+	}
+
+	public int valueAt(int slot) {
+		return values[slot];
+	}
+
+	/**
+	 * Renders the key at the slot in the "source,destination" format used by
+	 * nodecosts.properties and the REST api.
+	 */
+	public String keyAt(int slot) {
+		return firsts[slot] + "," + seconds[slot];
+	}
+
+	private void checkWritable() {
+		if (frozen) throw new UnsupportedOperationException("Link cost map is read-only.");
+	}
+
+	private int find(long first, long second) {
+		int mask = used.length - 1;
+		int slot = hash(first, second) & mask;
+		while (used[slot]) {
+			if (firsts[slot] == first && seconds[slot] == second) return slot;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private void rehash(int capacity) {
+		long[] oldFirsts = firsts, oldSeconds = seconds;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldUsed.length; ++i) {
+			if (oldUsed[i]) put(oldFirsts[i], oldSeconds[i], oldValues[i], 0);
+		}
+	}
+
+	private void allocate(int capacity) {
+		firsts = new long[capacity];
+		seconds = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+	}
+
+	private static int capacityFor(int expectedSize) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < expectedSize * 2) capacity <<= 1;
+		return capacity;
+	}
+
+	private static int hash(long first, long second) {
+		// MurmurHash3 finalizer over the combined pair
+		long h = first * 0x9E3779B97F4A7C15L + second;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return (int) h;
+	}
+
+}
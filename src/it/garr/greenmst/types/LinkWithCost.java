@@ -28,25 +28,31 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 @JsonSerialize(using=LinkWithCostJSONSerializer.class)
 public class LinkWithCost extends Link {
     
-	protected Logger logger = LoggerFactory.getLogger(LinkWithCost.class);
+	protected static Logger logger = LoggerFactory.getLogger(LinkWithCost.class);
+	
+	// Cost fixed at construction, null if read from the current topology costs
+	private final Integer cost;
 	
 	public LinkWithCost(long srcId, int srcPort, long dstId, int dstPort) {
 		super(srcId, srcPort, dstId, dstPort);
+		this.cost = null;
 	}
 	
 	public LinkWithCost(long srcId, int srcPort, long dstId, int dstPort, int cost) {
 		super(srcId, srcPort, dstId, dstPort);
-		TopologyCosts costs = TopologyCostsLoader.getTopologyCosts();
-		costs.getCost(srcId, dstId);
+		this.cost = cost;
 	}
 	
 	public LinkWithCost(IGreenMSTService greenMST, Link l) {
 		super(l.getSrc(), l.getSrcPort(), l.getDst(), l.getDstPort());
+		this.cost = null;
 	}
 	
 	public int getCost() {
+		if (cost != null) return cost;
+		
 		TopologyCosts costs = TopologyCostsLoader.getTopologyCosts();
-		return costs.getCost(this.getSrc(), this.getDst());
+		return costs.getEffectiveCost(this.getSrc(), this.getDst());
 	}
 	
 	@Override
@@ -8,6 +8,7 @@ import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,64 +16,207 @@ import org.slf4j.LoggerFactory;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+/**
+ * Link costs used by GreenMST.
+ *
+ * The instance built by the no-argument constructor is a view on the costs shared by
+ * the whole module, loaded from nodecosts.properties. Instances built on a LinkCostMap
+ * are detached updates, as parsed from the REST api, and become effective only when
+ * merged into the shared costs with {@link #putAll(TopologyCosts)}. Every change of the
+ * shared costs, merges and single costs alike, goes through {@link #publish(LinkCostMap)}:
+ * a merged copy is published at once with a new version, so that readers never see a
+ * partially applied update. Published maps are read-only.
+ *
+ * Load-dependent costs, set with {@link #setTrafficCosts(LinkCostMap)}, are a separate
+ * layer added to the configured costs by {@link #getEffectiveCost(long, long)}, the cost
+ * links are read with. They are never merged into the configured costs, so they are not
+ * persisted, exported or compared with the cost file.
+ *
+ * @see it.garr.greenmst.TopologyCostsLoader
+ * @see it.garr.greenmst.types.LinkCostMap
+ *
+ */
+
 @JsonSerialize(using=TopologyCostsJSONSerializer.class)
 @JsonDeserialize(using=TopologyCostsJSONDeserializer.class)
 public class TopologyCosts {
 	
 	protected static Logger logger = LoggerFactory.getLogger(TopologyCosts.class);
-	private static HashMap<String, Integer> costs = new HashMap<String, Integer>();
+	private static volatile LinkCostMap sharedCosts = new LinkCostMap().freeze();
+	private static volatile LinkCostMap trafficCosts = new LinkCostMap().freeze();
+	// Incremented on every change of the shared costs, traffic costs included
+	private static final AtomicLong version = new AtomicLong();
 	public static final int DEFAULT_COST = 1;
 	
+	// Costs of a detached update, null for the shared costs
+	private final LinkCostMap updateCosts;
+	
 	public TopologyCosts() {
+		this.updateCosts = null;
 		try {
 			//load a properties file from class path, inside static method
 			Properties prop = new Properties(); 
 			prop.load(Thread.currentThread().getContextClassLoader().getResourceAsStream("nodecosts.properties"));
-			 
+			
+			LinkCostMap loaded = new LinkCostMap(prop.size());
 			Enumeration<?> e = prop.propertyNames();
 		    while (e.hasMoreElements()) {
 		      String key = (String) e.nextElement();
-		      Integer value = Integer.parseInt(prop.getProperty(key));
-		      costs.put(key, value);
+		      putCost(loaded, key, Integer.parseInt(prop.getProperty(key)));
 		    }
+		    publish(loaded);
 		}  catch (IOException ex) {
 			logger.error("Error while reading nodecosts.properties file.", ex);
 		}
 	}
 	
+	/**
+	 * Builds a detached update holding the given costs, without reading nor changing the shared ones.
+	 */
+	public TopologyCosts(LinkCostMap updateCosts) {
+		this.updateCosts = updateCosts;
+	}
+	
+	public boolean isUpdate() {
+		return updateCosts != null;
+	}
+	
 	public void setCostsValues(HashMap<String, Integer> map) {
-		//costs.clear();
-		costs.putAll(map);
+		LinkCostMap values = isUpdate() ? updateCosts : new LinkCostMap(map.size());
+		for (Entry<String, Integer> entry : map.entrySet()) {
+			putCost(values, entry.getKey(), entry.getValue());
+		}
+		if (!isUpdate()) publish(values);
+	}
+	
+	/**
+	 * Merges the costs of other into these ones. The shared costs are replaced by a
+	 * merged copy in a single step.
+	 */
+	public void putAll(TopologyCosts other) {
+		LinkCostMap otherCosts = other.getCostMap();
+		if (isUpdate()) updateCosts.putAll(otherCosts);
+		else if (otherCosts != sharedCosts) publish(otherCosts);
+	}
+	
+	/**
+	 * Publishes a read-only copy of the shared costs with the changes applied, and increments
+	 * the version. The copy takes O(links) time: whole updates are merged at once, so that a
+	 * single publication covers every link they change.
+	 */
+	private static void publish(LinkCostMap changes) {
+		if (changes.size() == 0) return;
+		
+		synchronized (TopologyCosts.class) {
+			LinkCostMap merged = new LinkCostMap(sharedCosts.size() + changes.size());
+			merged.putAll(sharedCosts);
+			merged.putAll(changes);
+			sharedCosts = merged.freeze();
+			version.incrementAndGet();
+		}
 	}
 	
+	/**
+	 * Returns a copy of the costs keyed by "source,destination" strings, as
+	 * found in nodecosts.properties and in the REST api.
+	 */
 	public HashMap<String, Integer> getCosts() {
-		return costs;
+		LinkCostMap costs = getCostMap();
+		HashMap<String, Integer> map = new HashMap<String, Integer>();
+		for (int slot = costs.nextSlot(-1); slot >= 0; slot = costs.nextSlot(slot)) {
+			map.put(costs.keyAt(slot), costs.valueAt(slot));
+		}
+		return map;
+	}
+	
+	/**
+	 * Returns the map of these costs. The shared map is read-only and replaced on every
+	 * change, so it should not be kept across updates.
+	 */
+	public LinkCostMap getCostMap() {
+		return isUpdate() ? updateCosts : sharedCosts;
 	}
 	
 	public void setCost(long source, long destination, int cost) {
-		if (costs != null) {
-			if (costs.get(source + "," + destination) != null) costs.put(source + "," + destination, cost);
-			if (costs.get(destination + "," + source) != null) costs.put(destination + "," + source, cost);
+		if (!getCostMap().containsKey(source, destination)) return;
+		
+		if (isUpdate()) {
+			updateCosts.put(source, destination, cost, DEFAULT_COST);
+		} else {
+			LinkCostMap change = new LinkCostMap(1);
+			change.put(source, destination, cost, DEFAULT_COST);
+			publish(change);
 		}
 	}
 	
 	public int getCost(long source, long destination) {
-		if (costs != null) {
-			Integer sCost = costs.get(source + "," + destination);
-			if (sCost == null) sCost = costs.get(destination + "," + source);
-			if (sCost != null) return sCost;
+		return getCostMap().get(source, destination, DEFAULT_COST);
+	}
+	
+	/**
+	 * Returns the configured cost of the link plus its traffic cost, the cost used to compute the tree.
+	 */
+	public int getEffectiveCost(long source, long destination) {
+		int cost = getCost(source, destination);
+		return isUpdate() ? cost : cost + trafficCosts.get(source, destination, 0);
+	}
+	
+	/**
+	 * Returns the read-only traffic costs, added to the configured costs of their links.
+	 */
+	public LinkCostMap getTrafficCostMap() {
+		return trafficCosts;
+	}
+	
+	/**
+	 * Replaces the whole traffic cost layer; links not in costs have no traffic cost.
+	 */
+	public void setTrafficCosts(LinkCostMap costs) {
+		LinkCostMap published = new LinkCostMap(costs.size());
+		published.putAll(costs);
+		synchronized (TopologyCosts.class) {
+			trafficCosts = published.freeze();
+			version.incrementAndGet();
 		}
+	}
+	
+	/**
+	 * Parses a "source,destination" key and associates the cost to the link in costs.
+	 */
+	public static void putCost(LinkCostMap costs, String key, int value) {
+		int separator = key.indexOf(',');
+		if (separator < 0) throw new IllegalArgumentException("Link cost key \"" + key + "\" is not in the form source,destination.");
 		
-		return DEFAULT_COST;
+		long source = parseDpid(key, 0, separator);
+		long destination = parseDpid(key, separator + 1, key.length());
+		costs.put(source, destination, value, DEFAULT_COST);
 	}
 	
-	public String toString() {
-		if (costs == null) return "(null)";
+	// Parses the decimal dpid in key between from and to, ignoring surrounding blanks, without substrings
+	private static long parseDpid(String key, int from, int to) {
+		while (from < to && key.charAt(from) <= ' ') ++from;
+		while (to > from && key.charAt(to - 1) <= ' ') --to;
+		if (from == to) throw new NumberFormatException("Missing switch in link cost key \"" + key + "\".");
 		
+		long dpid = 0;
+		for (int i = from; i < to; ++i) {
+			int digit = key.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || dpid > (Long.MAX_VALUE - digit) / 10) throw new NumberFormatException("Invalid switch in link cost key \"" + key + "\".");
+			dpid = dpid * 10 + digit;
+		}
+		return dpid;
+	}
+	
+	public long getVersion() {
+		return version.get();
+	}
+	
+	public String toString() {
+		LinkCostMap costs = getCostMap();
 		String s = "";
-		for (Entry<String, Integer> curProp: costs.entrySet()) {
+		for (int slot = costs.nextSlot(-1); slot >= 0; slot = costs.nextSlot(slot)) {
 			if (!s.equals("")) s += "\n";
-			s += curProp.getKey() + " => " + curProp.getValue();
+			s += costs.keyAt(slot) + " => " + costs.valueAt(slot);
 		}
 		return s;
 	}
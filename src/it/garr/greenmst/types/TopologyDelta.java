@@ -0,0 +1,102 @@
+package it.garr.greenmst.types;
+
+import it.garr.greenmst.web.serializers.TopologyDeltaJSONSerializer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Immutable difference between two consecutive topology snapshots.
+ *
+ * Opened links are the links of the MST that were not in the previous one, closed
+ * links the redundant links that were not redundant before (links just discovered
+ * appear in one of the two), removed links the ones no longer in the topology. Cost
+ * changes list the links of both snapshots whose cost differs, and are looked for
+ * only when the cost version changed.
+ *
+ * @see it.garr.greenmst.types.TopologySnapshot
+ * @see it.garr.greenmst.types.TopologyDeltaHistory
+ *
+ */
+
+@JsonSerialize(using=TopologyDeltaJSONSerializer.class)
+public final class TopologyDelta {
+
+	private final long version;
+	private final List<LinkWithCost> opened;
+	private final List<LinkWithCost> closed;
+	private final List<LinkWithCost> removed;
+	private final List<LinkWithCost> costChanges;
+
+	private TopologyDelta(long version, List<LinkWithCost> opened, List<LinkWithCost> closed, List<LinkWithCost> removed, List<LinkWithCost> costChanges) {
+		this.version = version;
+		this.opened = opened;
+		this.closed = closed;
+		this.removed = removed;
+		this.costChanges = costChanges;
+	}
+
+	/**
+	 * Returns the changes leading from previous to next, tagged with the version of next.
+	 */
+	public static TopologyDelta between(TopologySnapshot previous, TopologySnapshot next) {
+		List<LinkWithCost> costChanges = Collections.emptyList();
+		if (previous.getCostVersion() != next.getCostVersion()) {
+			HashMap<LinkWithCost, LinkWithCost> previousLinks = new HashMap<LinkWithCost, LinkWithCost>();
+			for (LinkWithCost link : previous.getTopoEdges()) previousLinks.put(link, link);
+
+			costChanges = new ArrayList<LinkWithCost>();
+			for (LinkWithCost link : next.getTopoEdges()) {
+				LinkWithCost previousLink = previousLinks.get(link);
+				if (previousLink != null && previousLink.getCost() != link.getCost()) costChanges.add(link);
+			}
+		}
+
+		return new TopologyDelta(next.getVersion(),
+				difference(next.getMSTEdges(), previous.getMSTEdges()),
+				difference(next.getRedundantEdges(), previous.getRedundantEdges()),
+				difference(previous.getTopoEdges(), next.getTopoEdges()),
+				Collections.unmodifiableList(costChanges));
+	}
+
+	private static List<LinkWithCost> difference(Set<LinkWithCost> links, Set<LinkWithCost> excluded) {
+		ArrayList<LinkWithCost> result = new ArrayList<LinkWithCost>();
+		for (LinkWithCost link : links) {
+			if (!excluded.contains(link)) result.add(link);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Returns the version of the snapshot this delta leads to; the delta follows version - 1.
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public List<LinkWithCost> getOpened() {
+		return opened;
+	}
+
+	public List<LinkWithCost> getClosed() {
+		return closed;
+	}
+
+	public List<LinkWithCost> getRemoved() {
+		return removed;
+	}
+
+	public List<LinkWithCost> getCostChanges() {
+		return costChanges;
+	}
+
+	public boolean isEmpty() {
+		return opened.isEmpty() && closed.isEmpty() && removed.isEmpty() && costChanges.isEmpty();
+	}
+
+}
@@ -0,0 +1,85 @@
+package it.garr.greenmst.types;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded ring buffer of the latest topology deltas, indexed by version.
+ *
+ * Deltas are added in version order by the thread publishing snapshots; readers ask
+ * for the deltas following the last version they have seen, and can wait for new
+ * ones. A reader whose version is older than the oldest delta retained gets null
+ * and has to read the whole snapshot again.
+ *
+ * @see it.garr.greenmst.types.TopologyDelta
+ * @see it.garr.greenmst.web.DeltasResource
+ *
+ */
+
+public class TopologyDeltaHistory {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final TopologyDelta[] deltas;
+	// Version of the latest delta added, 0 when there are none
+	private long latestVersion = 0;
+	// Version of the oldest delta that can be returned
+	private long oldestVersion = 1;
+
+	public TopologyDeltaHistory() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public TopologyDeltaHistory(int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException("Delta history capacity must be positive, got " + capacity + ".");
+		deltas = new TopologyDelta[capacity];
+	}
+
+	/**
+	 * Adds the delta, evicting the oldest one when full, and wakes up waiting readers.
+	 * Versions are expected to follow each other: a gap drops the older deltas.
+	 */
+	public synchronized void add(TopologyDelta delta) {
+		long version = delta.getVersion();
+		if (version <= latestVersion) throw new IllegalArgumentException("Delta version " + version + " does not follow " + latestVersion + ".");
+
+		if (version != latestVersion + 1) oldestVersion = version;
+		latestVersion = version;
+		oldestVersion = Math.max(oldestVersion, version - deltas.length + 1);
+		deltas[(int) (version % deltas.length)] = delta;
+		notifyAll();
+	}
+
+	public synchronized long getLatestVersion() {
+		return latestVersion;
+	}
+
+	public synchronized long getOldestVersion() {
+		return oldestVersion;
+	}
+
+	/**
+	 * Returns the deltas following version, oldest first, or null when some of them are no longer retained.
+	 */
+	public synchronized List<TopologyDelta> since(long version) {
+		if (version < oldestVersion - 1 || version > latestVersion) return null;
+
+		ArrayList<TopologyDelta> result = new ArrayList<TopologyDelta>((int) (latestVersion - version));
+		for (long v = version + 1; v <= latestVersion; ++v) result.add(deltas[(int) (v % deltas.length)]);
+		return result;
+	}
+
+	/**
+	 * Waits until a delta following version is added or the timeout expires.
+	 *
+	 * @return the latest version.
+	 */
+	public synchronized long awaitAfter(long version, long timeoutMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		for (long remaining = timeoutMillis; latestVersion <= version && remaining > 0; remaining = deadline - System.currentTimeMillis()) {
+			wait(remaining);
+		}
+		return latestVersion;
+	}
+
+}
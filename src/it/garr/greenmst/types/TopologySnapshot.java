@@ -0,0 +1,90 @@
+package it.garr.greenmst.types;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable view of the state deployed by GreenMST after a recomputation.
+ *
+ * Holds the known topology, the edges of the minimum spanning tree and the redundant
+ * (closed) edges, with the costs they had when the snapshot was taken. Snapshots are
+ * published through a single volatile reference, so readers such as the REST resources
+ * never lock nor copy. The version is incremented with every published snapshot, the
+ * cost version is the one of the topology costs used to build it.
+ *
+ * @see it.garr.greenmst.GreenMST
+ * @see it.garr.greenmst.types.LinkWithCost
+ *
+ */
+
+public final class TopologySnapshot {
+
+	public static final TopologySnapshot EMPTY = new TopologySnapshot(0, 0, 0, Collections.<LinkWithCost>emptySet(), Collections.<LinkWithCost>emptySet(), Collections.<LinkWithCost>emptySet());
+
+	private final long version;
+	private final long costVersion;
+	private final int switchCount;
+	private final Set<LinkWithCost> topoEdges;
+	private final Set<LinkWithCost> mstEdges;
+	private final Set<LinkWithCost> redundantEdges;
+
+	private TopologySnapshot(long version, long costVersion, int switchCount, Set<LinkWithCost> topoEdges, Set<LinkWithCost> mstEdges, Set<LinkWithCost> redundantEdges) {
+		this.version = version;
+		this.costVersion = costVersion;
+		this.switchCount = switchCount;
+		this.topoEdges = topoEdges;
+		this.mstEdges = mstEdges;
+		this.redundantEdges = redundantEdges;
+	}
+
+	/**
+	 * Builds the snapshot following previous from the current topology and redundant edges.
+	 */
+	public static TopologySnapshot build(TopologySnapshot previous, long costVersion, Set<Edge> topoEdges, Set<Edge> redundantEdges) {
+		HashSet<LinkWithCost> topoLinks = new HashSet<LinkWithCost>(),
+							  mstLinks = new HashSet<LinkWithCost>(),
+							  redundantLinks = new HashSet<LinkWithCost>();
+		HashSet<Long> switches = new HashSet<Long>();
+
+		for (Edge edge : topoEdges) {
+			LinkWithCost link = edge.toFixedCostLink();
+			topoLinks.add(link);
+			switches.add(edge.getSrc());
+			switches.add(edge.getDst());
+			if (redundantEdges.contains(edge)) redundantLinks.add(link);
+			else mstLinks.add(link);
+		}
+
+		return new TopologySnapshot(previous.version + 1, costVersion, switches.size(),
+				Collections.unmodifiableSet(topoLinks), Collections.unmodifiableSet(mstLinks), Collections.unmodifiableSet(redundantLinks));
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getCostVersion() {
+		return costVersion;
+	}
+
+	/**
+	 * Returns the number of switches with at least one link in the topology.
+	 */
+	public int getSwitchCount() {
+		return switchCount;
+	}
+
+	public Set<LinkWithCost> getTopoEdges() {
+		return topoEdges;
+	}
+
+	public Set<LinkWithCost> getMSTEdges() {
+		return mstEdges;
+	}
+
+	public Set<LinkWithCost> getRedundantEdges() {
+		return redundantEdges;
+	}
+
+}
@@ -0,0 +1,109 @@
+package it.garr.greenmst.web;
+
+import it.garr.greenmst.IGreenMSTService;
+import it.garr.greenmst.types.TopologyDelta;
+import it.garr.greenmst.types.TopologyDeltaHistory;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.restlet.data.MediaType;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Class describing the deltas resource for the GreenMST REST api: a long-polling view
+ * of the changes of the topology snapshot.
+ *
+ * A request with the after query parameter gets the deltas following that version as
+ * soon as there are any, or an empty list once the timeout expires; without it, it waits
+ * for the next delta. When the deltas asked for are no longer retained the response is a
+ * reset, and the client has to read the edge lists again. At most MAX_WAITING requests
+ * wait at the same time, each one holding a web server thread: the others are answered
+ * at once, and poll again.
+ *
+ * @see org.restlet.resource.ServerResource
+ * @see it.garr.greenmst.types.TopologyDeltaHistory
+ * @see it.garr.greenmst.IGreenMSTService
+ *
+ */
+
+public class DeltasResource extends ServerResource {
+
+	protected static Logger logger = LoggerFactory.getLogger(DeltasResource.class);
+
+	public static final long DEFAULT_TIMEOUT = 25000;
+	public static final long MAX_TIMEOUT = 60000;
+	public static final int MAX_WAITING = 16;
+
+	private static final Semaphore waiting = new Semaphore(MAX_WAITING);
+	private static final ObjectMapper mapper = new ObjectMapper();
+
+    @Get("json")
+    public Representation retrieve() throws IOException {
+        IGreenMSTService service = (IGreenMSTService) getContext().getAttributes().get(IGreenMSTService.class.getCanonicalName());
+        TopologyDeltaHistory history = service.getDeltaHistory();
+        long after = parseLong(getQueryValue("after"), history.getLatestVersion());
+        long timeout = Math.max(0, Math.min(MAX_TIMEOUT, parseLong(getQueryValue("timeout"), DEFAULT_TIMEOUT)));
+
+        try {
+        	await(history, after, timeout);
+        } catch (InterruptedException e) {
+        	Thread.currentThread().interrupt();
+        }
+        return new ByteArrayRepresentation(mapper.writeValueAsBytes(deltasAfter(history, after)), MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Waits up to timeout milliseconds for a delta following version, unless there is one
+     * already or MAX_WAITING requests are waiting.
+     */
+    protected static void await(TopologyDeltaHistory history, long version, long timeout) throws InterruptedException {
+    	if (timeout <= 0 || history.getLatestVersion() > version) return;
+    	if (!waiting.tryAcquire()) {
+    		logger.debug("Too many clients waiting for topology deltas, answering at once.");
+    		return;
+    	}
+    	try {
+    		history.awaitAfter(version, timeout);
+    	} finally {
+    		waiting.release();
+    	}
+    }
+
+    /**
+     * Returns the response listing the deltas following version, or the reset when they are no longer retained.
+     */
+    protected static Map<String, Object> deltasAfter(TopologyDeltaHistory history, long version) {
+    	Map<String, Object> result = new LinkedHashMap<String, Object>();
+    	List<TopologyDelta> deltas = history.since(version);
+    	if (deltas == null) {
+    		result.put("version", history.getLatestVersion());
+    		result.put("reset", true);
+    	} else {
+    		result.put("version", (deltas.isEmpty()) ? version : deltas.get(deltas.size() - 1).getVersion());
+    		result.put("reset", false);
+    		result.put("deltas", deltas);
+    	}
+    	return result;
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+    	if (value == null) return defaultValue;
+    	try {
+    		return Long.parseLong(value.trim());
+    	} catch (NumberFormatException e) {
+    		return defaultValue;
+    	}
+    }
+
+}
@@ -17,6 +17,8 @@ import org.restlet.routing.Router;
  * @see net.floodlightcontroller.restserver.RestletRoutable
  * @see it.garr.greenmst.web.TopoEdgesResource
  * @see it.garr.greenmst.web.RedundantEdgesResource
+ * @see it.garr.greenmst.web.StatsResource
+ * @see it.garr.greenmst.web.DeltasResource
  *
  */
 
@@ -28,6 +30,9 @@ public class GreenMSTWebRoutable implements RestletRoutable {
         router.attach("/mstedges/json", MSTEdgesResource.class);
         router.attach("/topoedges/json", TopoEdgesResource.class);
         router.attach("/redundantedges/json", RedundantEdgesResource.class);
+        router.attach("/stats/json", StatsResource.class);
+        router.attach("/stats/prometheus", PrometheusStatsResource.class);
+        router.attach("/deltas/json", DeltasResource.class);
         return router;
     }
 
@@ -0,0 +1,116 @@
+package it.garr.greenmst.web;
+
+import it.garr.greenmst.GreenMSTStats;
+import it.garr.greenmst.GreenMSTStats.SwitchStats;
+import it.garr.greenmst.IGreenMSTService;
+import it.garr.greenmst.types.LatencyHistogram;
+import it.garr.greenmst.types.TopologySnapshot;
+
+import java.util.Map;
+
+import org.openflow.util.HexString;
+import org.restlet.data.MediaType;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+/**
+ * Class describing the stats resource for the GreenMST REST api, in the Prometheus text exposition format.
+ * 
+ * @see org.restlet.resource.ServerResource
+ * @see it.garr.greenmst.GreenMSTStats
+ * @see it.garr.greenmst.IGreenMSTService
+ *
+ */
+
+public class PrometheusStatsResource extends ServerResource {
+	
+	private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+	
+    @Get
+    public Representation retrieve() {
+        IGreenMSTService service = (IGreenMSTService) getContext().getAttributes().get(IGreenMSTService.class.getCanonicalName());
+        return new StringRepresentation(format(service.getStats()), MediaType.TEXT_PLAIN);
+    }
+    
+    protected static String format(GreenMSTStats stats) {
+    	StringBuilder out = new StringBuilder();
+    	
+    	metric(out, "greenmst_uptime_seconds", "gauge", "Time since the module started.");
+    	sample(out, "greenmst_uptime_seconds", null, stats.getUptime() / 1e3);
+    	
+    	metric(out, "greenmst_topology_events_received_total", "counter", "Link updates received from the topology service.");
+    	sample(out, "greenmst_topology_events_received_total", null, stats.getEventsReceived());
+    	metric(out, "greenmst_topology_events_ignored_total", "counter", "Link updates that did not change the known topology.");
+    	sample(out, "greenmst_topology_events_ignored_total", null, stats.getEventsIgnored());
+    	
+    	metric(out, "greenmst_recomputations_total", "counter", "Deployments of a new tree, by kind.");
+    	sample(out, "greenmst_recomputations_total", "kind=\"full\"", stats.getRecomputations());
+    	sample(out, "greenmst_recomputations_total", "kind=\"incremental\"", stats.getIncrementalUpdates());
+    	sample(out, "greenmst_recomputations_total", "kind=\"superseded\"", stats.getRecomputationsSuperseded());
+    	sample(out, "greenmst_recomputations_total", "kind=\"failed\"", stats.getRecomputationsFailed());
+    	sample(out, "greenmst_recomputations_total", "kind=\"damped\"", stats.getTreesDamped());
+    	sample(out, "greenmst_recomputations_total", "kind=\"held_down\"", stats.getTreesHeldDown());
+    	metric(out, "greenmst_islands_total", "counter", "Islands of the full computations, by whether their tree has been computed again or kept.");
+    	sample(out, "greenmst_islands_total", "kind=\"recomputed\"", stats.getIslandsRecomputed());
+    	sample(out, "greenmst_islands_total", "kind=\"kept\"", stats.getIslandsKept());
+    	
+    	metric(out, "greenmst_cost_updates_total", "counter", "Cost updates received, and those applied by a full computation.");
+    	sample(out, "greenmst_cost_updates_total", "kind=\"received\"", stats.getCostUpdates());
+    	sample(out, "greenmst_cost_updates_total", "kind=\"full\"", stats.getFullCostUpdates());
+    	metric(out, "greenmst_link_cost_changes_total", "counter", "Link cost changes, and those that may alter the tree.");
+    	sample(out, "greenmst_link_cost_changes_total", "kind=\"any\"", stats.getCostChanges());
+    	sample(out, "greenmst_link_cost_changes_total", "kind=\"sensitive\"", stats.getSensitiveCostChanges());
+    	
+    	summary(out, "greenmst_algorithm_seconds", "Time spent computing the minimum spanning tree.", stats.getAlgorithmTime());
+    	summary(out, "greenmst_diff_seconds", "Time spent finding and queueing the port mods of a new tree.", stats.getDiffTime());
+    	
+    	Map<Long, SwitchStats> switches = stats.getSwitches();
+    	metric(out, "greenmst_port_mods_sent_total", "counter", "Port mods written to the switch.");
+    	for (Map.Entry<Long, SwitchStats> entry : switches.entrySet()) sample(out, "greenmst_port_mods_sent_total", switchLabel(entry.getKey()), entry.getValue().getPortModsSent());
+    	metric(out, "greenmst_port_mods_failed_total", "counter", "Port mods that could not be sent to the switch.");
+    	for (Map.Entry<Long, SwitchStats> entry : switches.entrySet()) sample(out, "greenmst_port_mods_failed_total", switchLabel(entry.getKey()), entry.getValue().getPortModsFailed());
+    	metric(out, "greenmst_port_mods_confirmed_total", "counter", "Port mods confirmed by a barrier reply.");
+    	for (Map.Entry<Long, SwitchStats> entry : switches.entrySet()) sample(out, "greenmst_port_mods_confirmed_total", switchLabel(entry.getKey()), entry.getValue().getPortModsConfirmed());
+    	metric(out, "greenmst_port_mods_skipped_total", "counter", "Port mods not sent because the port was already in the requested state.");
+    	for (Map.Entry<Long, SwitchStats> entry : switches.entrySet()) sample(out, "greenmst_port_mods_skipped_total", switchLabel(entry.getKey()), entry.getValue().getPortModsSkipped());
+    	metric(out, "greenmst_port_mods_retried_total", "counter", "Port mods queued again after a failed write.");
+    	for (Map.Entry<Long, SwitchStats> entry : switches.entrySet()) sample(out, "greenmst_port_mods_retried_total", switchLabel(entry.getKey()), entry.getValue().getPortModsRetried());
+    	
+    	TopologySnapshot snapshot = stats.getSnapshot();
+    	metric(out, "greenmst_topology_switches", "gauge", "Switches in the known topology.");
+    	sample(out, "greenmst_topology_switches", null, snapshot.getSwitchCount());
+    	metric(out, "greenmst_topology_links", "gauge", "Links in the known topology, by state.");
+    	sample(out, "greenmst_topology_links", "state=\"mst\"", snapshot.getMSTEdges().size());
+    	sample(out, "greenmst_topology_links", "state=\"redundant\"", snapshot.getRedundantEdges().size());
+    	
+    	return out.toString();
+    }
+    
+    private static void summary(StringBuilder out, String name, String help, LatencyHistogram histogram) {
+    	metric(out, name, "summary", help);
+    	for (double quantile : QUANTILES) sample(out, name, "quantile=\"" + quantile + "\"", histogram.getValueAtPercentile(quantile * 100) / 1e9);
+    	sample(out, name + "_sum", null, histogram.getSum() / 1e9);
+    	sample(out, name + "_count", null, histogram.getCount());
+    }
+    
+    private static String switchLabel(long switchId) {
+    	return "switch=\"" + HexString.toHexString(switchId) + "\"";
+    }
+    
+    private static void metric(StringBuilder out, String name, String type, String help) {
+    	out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    	out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+    
+    private static void sample(StringBuilder out, String name, String labels, double value) {
+    	out.append(name);
+    	if (labels != null) out.append('{').append(labels).append('}');
+    	out.append(' ');
+    	if (value == Math.rint(value) && Math.abs(value) < 1e15) out.append((long) value);
+    	else out.append(value);
+    	out.append('\n');
+    }
+    
+}
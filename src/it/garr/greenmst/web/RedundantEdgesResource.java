@@ -1,13 +1,10 @@
 package it.garr.greenmst.web;
 
-import it.garr.greenmst.IGreenMSTService;
 import it.garr.greenmst.types.LinkWithCost;
+import it.garr.greenmst.types.TopologySnapshot;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.restlet.resource.Get;
-import org.restlet.resource.ServerResource;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Class describing the redundantEdges resource for the GreenMST REST api.
@@ -17,20 +14,24 @@ import org.restlet.resource.ServerResource;
  * @author Fabio Farina <fabio.farina@garr.it>
  * 
  * @version 0.8
- * @see org.restlet.resource.ServerResource
+ * @see it.garr.greenmst.web.SnapshotEdgesResource
  * @see it.garr.greenmst.types.LinkWithCost
  * @see it.garr.greenmst.IGreenMSTService
  *
  */
 
-public class RedundantEdgesResource extends ServerResource {
+public class RedundantEdgesResource extends SnapshotEdgesResource {
+	
+	private static final AtomicReference<SerializedEdges> cache = new AtomicReference<SerializedEdges>();
 	
-    @Get("json")
-    public List<LinkWithCost> retrieve() {
-        IGreenMSTService service = (IGreenMSTService) getContext().getAttributes().get(IGreenMSTService.class.getCanonicalName());
-        List<LinkWithCost> l = new ArrayList<LinkWithCost>();
-        l.addAll(service.getRedundantEdges());
-        return l;
+    @Override
+    protected Set<LinkWithCost> getEdges(TopologySnapshot snapshot) {
+        return snapshot.getRedundantEdges();
+    }
+    
+    @Override
+    protected AtomicReference<SerializedEdges> getCache() {
+        return cache;
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,112 @@
+package it.garr.greenmst.web;
+
+import it.garr.greenmst.IGreenMSTService;
+import it.garr.greenmst.types.LinkWithCost;
+import it.garr.greenmst.types.TopologySnapshot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.restlet.data.Conditions;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.EmptyRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Base class of the resources listing a set of edges of the current topology snapshot.
+ *
+ * Snapshots are immutable, so the JSON of the edges is serialized once per snapshot
+ * and the same bytes are returned to every following request. Responses carry an
+ * ETag made of the snapshot version, and requests whose If-None-Match holds the
+ * current tag are answered with 304 Not Modified, without any body.
+ *
+ * @see org.restlet.resource.ServerResource
+ * @see it.garr.greenmst.types.TopologySnapshot
+ * @see it.garr.greenmst.IGreenMSTService
+ *
+ */
+
+public abstract class SnapshotEdgesResource extends ServerResource {
+	
+	/**
+	 * Edges of a snapshot serialized to JSON, with the tag identifying them.
+	 */
+	protected static final class SerializedEdges {
+		private final TopologySnapshot snapshot;
+		private final Tag tag;
+		private final byte[] json;
+		
+		private SerializedEdges(TopologySnapshot snapshot, Tag tag, byte[] json) {
+			this.snapshot = snapshot;
+			this.tag = tag;
+			this.json = json;
+		}
+	}
+	
+	// Snapshot versions restart with the controller, the start time keeps tags of different runs apart
+	private static final String EPOCH = Long.toString(System.currentTimeMillis(), 36);
+	
+	private static final ObjectMapper mapper = new ObjectMapper();
+	
+	/**
+	 * Returns the edges of the snapshot listed by this resource.
+	 */
+	protected abstract Set<LinkWithCost> getEdges(TopologySnapshot snapshot);
+	
+	/**
+	 * Returns the cache of the last serialized edges, shared by the instances of the resource.
+	 */
+	protected abstract AtomicReference<SerializedEdges> getCache();
+	
+    @Get("json")
+    public Representation retrieve() throws IOException {
+        IGreenMSTService service = (IGreenMSTService) getContext().getAttributes().get(IGreenMSTService.class.getCanonicalName());
+        TopologySnapshot snapshot = service.getSnapshot();
+        
+        SerializedEdges serialized = getCache().get();
+        if (serialized == null || serialized.snapshot != snapshot) {
+        	// Concurrent requests may serialize the same snapshot twice, the result is the same
+        	serialized = new SerializedEdges(snapshot, tagOf(snapshot), mapper.writeValueAsBytes(getEdges(snapshot)));
+        	getCache().set(serialized);
+        }
+        
+        if (isNotModified(serialized.tag)) {
+        	setStatus(Status.REDIRECTION_NOT_MODIFIED);
+        	Representation notModified = new EmptyRepresentation();
+        	notModified.setTag(serialized.tag);
+        	return notModified;
+        }
+        
+        Representation representation = new ByteArrayRepresentation(serialized.json, MediaType.APPLICATION_JSON);
+        representation.setTag(serialized.tag);
+        return representation;
+    }
+    
+    private boolean isNotModified(Tag tag) {
+    	Conditions conditions = getRequest().getConditions();
+    	List<Tag> noneMatch = (conditions == null) ? null : conditions.getNoneMatch();
+    	if (noneMatch == null) return false;
+    	
+    	for (Tag candidate : noneMatch) {
+    		if ("*".equals(candidate.getName()) || tag.equals(candidate, false)) return true;
+    	}
+    	return false;
+    }
+    
+    /**
+     * Returns the strong tag of the edges of the snapshot, which changes with the topology and the costs.
+     */
+    protected static Tag tagOf(TopologySnapshot snapshot) {
+    	return new Tag(EPOCH + "-" + snapshot.getVersion(), false);
+    }
+    
+}
@@ -0,0 +1,26 @@
+package it.garr.greenmst.web;
+
+import it.garr.greenmst.GreenMSTStats;
+import it.garr.greenmst.IGreenMSTService;
+
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+
+/**
+ * Class describing the stats resource for the GreenMST REST api.
+ * 
+ * @see org.restlet.resource.ServerResource
+ * @see it.garr.greenmst.GreenMSTStats
+ * @see it.garr.greenmst.IGreenMSTService
+ *
+ */
+
+public class StatsResource extends ServerResource {
+	
+    @Get("json")
+    public GreenMSTStats retrieve() {
+        IGreenMSTService service = (IGreenMSTService) getContext().getAttributes().get(IGreenMSTService.class.getCanonicalName());
+        return service.getStats();
+    }
+    
+}
@@ -1,21 +1,30 @@
 package it.garr.greenmst.web;
 
 import it.garr.greenmst.IGreenMSTService;
+import it.garr.greenmst.types.LinkCostMap;
 import it.garr.greenmst.types.TopologyCosts;
+import it.garr.greenmst.web.serializers.TopologyCostsJSONDeserializer;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.restlet.representation.Representation;
 import org.restlet.resource.Get;
 import org.restlet.resource.Post;
 import org.restlet.resource.ServerResource;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- * Class describing the topoEdges resource for the GreenMST REST api.
+ * Class describing the topoCosts resource for the GreenMST REST api.
+ *
+ * Posted costs are parsed while the body is streamed, either as a JSON object or as
+ * newline delimited JSON objects, into a detached update that is applied to the
+ * topology as a whole, with a single recomputation.
  * 
  * @author Luca Prete <luca.prete@garr.it>
  * @author Andrea Biancini <andrea.biancini@garr.it>
@@ -31,6 +40,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class TopoCostsResource extends ServerResource {
 	
 	protected Logger logger = LoggerFactory.getLogger(TopoCostsResource.class);
+	// Shared by all requests, the mapper is thread safe once configured
+	private static final ObjectMapper mapper = new ObjectMapper();
 	
     @Get("json")
     public List<TopologyCosts> retrieve() {
@@ -41,15 +52,23 @@ public class TopoCostsResource extends ServerResource {
     }
     
     @Post
-    public String handlePost(String fmJson) {
+    public String handlePost(Representation entity) {
         try {
-        	ObjectMapper mapper = new ObjectMapper();
-        	TopologyCosts costs = mapper.readValue(fmJson, TopologyCosts.class);
+        	if (entity == null) throw new IOException("Missing topology costs.");
+        	
+        	LinkCostMap costs = new LinkCostMap();
+        	int count = 0;
+        	JsonParser jParser = mapper.getFactory().createParser(entity.getStream());
+        	try {
+        		count = TopologyCostsJSONDeserializer.read(jParser, costs);
+        	} finally {
+        		jParser.close();
+        	}
         	
         	IGreenMSTService service = (IGreenMSTService) getContext().getAttributes().get(IGreenMSTService.class.getCanonicalName());
-        	service.setCosts(costs);
+        	service.setCosts(new TopologyCosts(costs));
     		
-        	logger.debug("Loaded new node costs.\n{}", new Object[]{costs});
+        	logger.debug("Loaded {} new link costs.", count);
     		return ("{\"status\" : \"new topology costs set\"}");
         } catch (Exception e) {
             logger.error("Error parsing new topology costs.", e);
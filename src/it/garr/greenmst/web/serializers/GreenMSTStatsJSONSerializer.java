@@ -0,0 +1,126 @@
+package it.garr.greenmst.web.serializers;
+
+import it.garr.greenmst.GreenMSTStats;
+import it.garr.greenmst.GreenMSTStats.SwitchStats;
+import it.garr.greenmst.types.LatencyHistogram;
+import it.garr.greenmst.types.TopologySnapshot;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.openflow.util.HexString;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Class that serializes the runtime statistics of the GreenMST service.
+ *
+ * @see com.fasterxml.jackson.databind.JsonSerializer
+ * @see it.garr.greenmst.GreenMSTStats
+ *
+ */
+
+public class GreenMSTStatsJSONSerializer extends JsonSerializer<GreenMSTStats> {
+
+    @Override
+    public void serialize(GreenMSTStats stats, JsonGenerator jGen, SerializerProvider sProvider)
+    		throws IOException, JsonProcessingException {
+    	
+        jGen.writeStartObject();
+        jGen.writeNumberField("uptime", stats.getUptime());
+        
+        jGen.writeFieldName("events");
+        jGen.writeStartObject();
+        jGen.writeNumberField("received", stats.getEventsReceived());
+        jGen.writeNumberField("ignored", stats.getEventsIgnored());
+        jGen.writeEndObject();
+        
+        jGen.writeFieldName("recomputations");
+        jGen.writeStartObject();
+        jGen.writeNumberField("full", stats.getRecomputations());
+        jGen.writeNumberField("incremental", stats.getIncrementalUpdates());
+        jGen.writeNumberField("superseded", stats.getRecomputationsSuperseded());
+        jGen.writeNumberField("failed", stats.getRecomputationsFailed());
+        jGen.writeNumberField("islandsRecomputed", stats.getIslandsRecomputed());
+        jGen.writeNumberField("islandsKept", stats.getIslandsKept());
+        jGen.writeNumberField("damped", stats.getTreesDamped());
+        jGen.writeNumberField("heldDown", stats.getTreesHeldDown());
+        jGen.writeEndObject();
+        
+        jGen.writeFieldName("costUpdates");
+        jGen.writeStartObject();
+        jGen.writeNumberField("received", stats.getCostUpdates());
+        jGen.writeNumberField("linkChanges", stats.getCostChanges());
+        jGen.writeNumberField("sensitiveLinkChanges", stats.getSensitiveCostChanges());
+        jGen.writeNumberField("full", stats.getFullCostUpdates());
+        jGen.writeEndObject();
+        
+        writeHistogram(jGen, "algorithmTime", stats.getAlgorithmTime());
+        writeHistogram(jGen, "diffTime", stats.getDiffTime());
+        
+        long sent = 0, failed = 0, confirmed = 0, skipped = 0, retried = 0;
+        jGen.writeFieldName("portMods");
+        jGen.writeStartObject();
+        jGen.writeFieldName("switches");
+        jGen.writeStartObject();
+        for (Map.Entry<Long, SwitchStats> entry : stats.getSwitches().entrySet()) {
+        	SwitchStats switchStats = entry.getValue();
+        	jGen.writeFieldName(HexString.toHexString(entry.getKey()));
+        	jGen.writeStartObject();
+        	jGen.writeNumberField("sent", switchStats.getPortModsSent());
+        	jGen.writeNumberField("failed", switchStats.getPortModsFailed());
+        	jGen.writeNumberField("confirmed", switchStats.getPortModsConfirmed());
+        	jGen.writeNumberField("skipped", switchStats.getPortModsSkipped());
+        	jGen.writeNumberField("retried", switchStats.getPortModsRetried());
+        	jGen.writeEndObject();
+        	
+        	sent += switchStats.getPortModsSent();
+        	failed += switchStats.getPortModsFailed();
+        	confirmed += switchStats.getPortModsConfirmed();
+        	skipped += switchStats.getPortModsSkipped();
+        	retried += switchStats.getPortModsRetried();
+        }
+        jGen.writeEndObject();
+        jGen.writeNumberField("sent", sent);
+        jGen.writeNumberField("failed", failed);
+        jGen.writeNumberField("confirmed", confirmed);
+        jGen.writeNumberField("skipped", skipped);
+        jGen.writeNumberField("retried", retried);
+        jGen.writeEndObject();
+        
+        TopologySnapshot snapshot = stats.getSnapshot();
+        jGen.writeFieldName("topology");
+        jGen.writeStartObject();
+        jGen.writeNumberField("version", snapshot.getVersion());
+        jGen.writeNumberField("switches", snapshot.getSwitchCount());
+        jGen.writeNumberField("links", snapshot.getTopoEdges().size());
+        jGen.writeNumberField("mstLinks", snapshot.getMSTEdges().size());
+        jGen.writeNumberField("redundantLinks", snapshot.getRedundantEdges().size());
+        jGen.writeEndObject();
+        
+        jGen.writeEndObject();
+    }
+    
+    private void writeHistogram(JsonGenerator jGen, String name, LatencyHistogram histogram) throws IOException {
+    	// Durations in microseconds
+    	jGen.writeFieldName(name);
+    	jGen.writeStartObject();
+    	jGen.writeNumberField("count", histogram.getCount());
+    	jGen.writeNumberField("mean", histogram.getMean() / 1e3);
+    	jGen.writeNumberField("p50", histogram.getValueAtPercentile(50) / 1e3);
+    	jGen.writeNumberField("p90", histogram.getValueAtPercentile(90) / 1e3);
+    	jGen.writeNumberField("p99", histogram.getValueAtPercentile(99) / 1e3);
+    	jGen.writeNumberField("p999", histogram.getValueAtPercentile(99.9) / 1e3);
+    	jGen.writeNumberField("max", histogram.getMax() / 1e3);
+    	jGen.writeEndObject();
+    }
+
+    @Override
+    public Class<GreenMSTStats> handledType() {
+        return GreenMSTStats.class;
+    }
+
+}
@@ -1,9 +1,9 @@
 package it.garr.greenmst.web.serializers;
 
+import it.garr.greenmst.types.LinkCostMap;
 import it.garr.greenmst.types.TopologyCosts;
 
 import java.io.IOException;
-import java.util.HashMap;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -12,15 +12,20 @@ import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
 /**
- * Class that serializes the ComparableLink type of the GreenMST service.
+ * Class that deserializes the TopologyCosts type of the GreenMST service.
+ *
+ * Costs are read as a stream of tokens straight into the LinkCostMap of a detached
+ * update: one or more objects mapping "source,destination" to the cost, as a single
+ * object, as an array of objects (the format returned by GET) or as newline delimited
+ * JSON (one object per line).
  *
  * @author Luca Prete <luca.prete@garr.it>
  * @author Andrea Biancini <andrea.biancini@garr.it>
  * @author Fabio Farina <fabio.farina@garr.it>
  * 
  * @version 0.8
- * @see org.codehaus.jackson.map.JsonSerializer
- * @see it.garr.greenmst.types.LinkWithCost
+ * @see com.fasterxml.jackson.databind.JsonDeserializer
+ * @see it.garr.greenmst.types.TopologyCosts
  *
  */
 
@@ -30,26 +35,54 @@ public class TopologyCostsJSONDeserializer extends JsonDeserializer<TopologyCost
 	public TopologyCosts deserialize(JsonParser jParser, DeserializationContext context)
 			throws IOException, JsonProcessingException {
 		
-		HashMap<String, Integer> map = new HashMap<String, Integer>();
-		jParser.nextToken();
-        
-        if (jParser.getCurrentToken() != JsonToken.START_OBJECT) throw new IOException("Expected START_OBJECT");
-
-        while (jParser.nextToken() != JsonToken.END_OBJECT) {
-            if (jParser.getCurrentToken() != JsonToken.FIELD_NAME) throw new IOException("Expected FIELD_NAME");
-
-            String name = jParser.getCurrentName();
-            jParser.nextToken();
-            if (jParser.getText().equals("")) continue;
-            Integer value = Integer.parseInt(jParser.getText());
-            
-            map.put(name, value);
-        }
-    	
-        TopologyCosts costs = new TopologyCosts();
-		costs.setCostsValues(map);
+		LinkCostMap costs = new LinkCostMap();
+		readObject(jParser, costs);
+		return new TopologyCosts(costs);
+	}
+	
+	/**
+	 * Reads every cost object of the stream into costs.
+	 *
+	 * @return the number of costs read.
+	 */
+	public static int read(JsonParser jParser, LinkCostMap costs) throws IOException {
+		int count = 0;
+		for (JsonToken token = jParser.nextToken(); token != null; token = jParser.nextToken()) {
+			if (token == JsonToken.START_ARRAY || token == JsonToken.END_ARRAY) continue;
+			count += readObject(jParser, costs);
+		}
+		return count;
+	}
+	
+	// Reads the object starting at the current token, skipping the parser start and an enclosing array
+	private static int readObject(JsonParser jParser, LinkCostMap costs) throws IOException {
+		if (jParser.getCurrentToken() == null) jParser.nextToken();
+		if (jParser.getCurrentToken() == JsonToken.START_ARRAY) jParser.nextToken();
+		if (jParser.getCurrentToken() != JsonToken.START_OBJECT) throw new IOException("Expected START_OBJECT");
 		
-		return costs;
+		int count = 0;
+		while (jParser.nextToken() != JsonToken.END_OBJECT) {
+			if (jParser.getCurrentToken() != JsonToken.FIELD_NAME) throw new IOException("Expected FIELD_NAME");
+			
+			String name = jParser.getCurrentName();
+			int value;
+			switch (jParser.nextToken()) {
+			case VALUE_NUMBER_INT:
+				value = jParser.getIntValue();
+				break;
+			case VALUE_STRING:
+				String text = jParser.getText();
+				if (text.equals("")) continue;
+				value = Integer.parseInt(text.trim());
+				break;
+			default:
+				throw new IOException("Expected an integer cost for link " + name);
+			}
+			
+			TopologyCosts.putCost(costs, name, value);
+			++count;
+		}
+		return count;
 	}
 
-}
\ No newline at end of file
+}
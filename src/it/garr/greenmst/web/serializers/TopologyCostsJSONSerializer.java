@@ -3,11 +3,10 @@
 
 package it.garr.greenmst.web.serializers;
 
+import it.garr.greenmst.types.LinkCostMap;
 import it.garr.greenmst.types.TopologyCosts;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map.Entry;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -35,9 +34,9 @@ public class TopologyCostsJSONSerializer extends JsonSerializer<TopologyCosts> {
     	
         jGen.writeStartObject();
         
-        HashMap<String, Integer> prop = costs.getCosts();
-        for (Entry<String, Integer> curProp : prop.entrySet()) {
-        	jGen.writeNumberField(curProp.getKey(), curProp.getValue()); 
+        LinkCostMap map = costs.getCostMap();
+        for (int slot = map.nextSlot(-1); slot >= 0; slot = map.nextSlot(slot)) {
+        	jGen.writeNumberField(map.keyAt(slot), map.valueAt(slot)); 
         }
         
         jGen.writeEndObject();
@@ -0,0 +1,52 @@
+package it.garr.greenmst.web.serializers;
+
+import it.garr.greenmst.types.LinkWithCost;
+import it.garr.greenmst.types.TopologyDelta;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * Class that serializes the TopologyDelta type of the GreenMST service, links in the
+ * same format as the edge lists.
+ *
+ * @see com.fasterxml.jackson.databind.JsonSerializer
+ * @see it.garr.greenmst.types.TopologyDelta
+ *
+ */
+
+public class TopologyDeltaJSONSerializer extends JsonSerializer<TopologyDelta> {
+	
+	private static final LinkWithCostJSONSerializer linkSerializer = new LinkWithCostJSONSerializer();
+
+    @Override
+    public void serialize(TopologyDelta delta, JsonGenerator jGen, SerializerProvider sProvider)
+    		throws IOException, JsonProcessingException {
+    	
+        jGen.writeStartObject();
+        jGen.writeNumberField("version", delta.getVersion());
+        writeLinks(jGen, sProvider, "opened", delta.getOpened());
+        writeLinks(jGen, sProvider, "closed", delta.getClosed());
+        writeLinks(jGen, sProvider, "removed", delta.getRemoved());
+        writeLinks(jGen, sProvider, "costs", delta.getCostChanges());
+        jGen.writeEndObject();
+    }
+    
+    private void writeLinks(JsonGenerator jGen, SerializerProvider sProvider, String name, List<LinkWithCost> links) throws IOException {
+    	jGen.writeFieldName(name);
+    	jGen.writeStartArray();
+    	for (LinkWithCost link : links) linkSerializer.serialize(link, jGen, sProvider);
+    	jGen.writeEndArray();
+    }
+
+    @Override
+    public Class<TopologyDelta> handledType() {
+        return TopologyDelta.class;
+    }
+
+}